@@ -81,17 +81,25 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.POST, "/api/auth/refresh-token").authenticated()
                         .requestMatchers(HttpMethod.POST, "/api/auth/fix-customer-group").permitAll()
                         
+                        // Xuất catalog cho đối tác: phải đặt TRƯỚC rule GET /api/books/** công khai
+                        .requestMatchers(HttpMethod.GET, "/api/books/export").hasAnyAuthority("ADMIN", "STAFF", "1", "2")
+
                         // Public endpoints - không cần xác thực
                         .requestMatchers(HttpMethod.POST, "/api/auth/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/books/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/categories/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/tz").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/files/**").permitAll()
+                        .requestMatchers(HttpMethod.HEAD, "/files/**").permitAll()
+                        // URL upload của storage local tự mang chữ ký HMAC, FileController kiểm tra
+                        .requestMatchers(HttpMethod.PUT, "/files/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/users/avatar/**").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/users/avatar/**").authenticated()
 
                         // Shopping endpoints - tất cả user đã đăng nhập đều có thể mua hàng
                         .requestMatchers("/api/cart/**").authenticated()
                         .requestMatchers(HttpMethod.GET, "/api/orders/user").authenticated()
+                        .requestMatchers(HttpMethod.GET, "/api/orders/user/counts").authenticated()
                         .requestMatchers(HttpMethod.PUT, "/api/orders/cancel").authenticated()
                         .requestMatchers("/api/payment/**").authenticated()
                         .requestMatchers("/api/vouchers/**").authenticated()
@@ -104,6 +112,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.POST, "/api/books/**").hasAnyAuthority("ADMIN", "STAFF", "1", "2")
                         .requestMatchers(HttpMethod.PUT, "/api/books/**").hasAnyAuthority("ADMIN", "STAFF", "1", "2")
                         .requestMatchers(HttpMethod.DELETE, "/api/books/**").hasAnyAuthority("ADMIN", "STAFF", "1", "2")
+                        .requestMatchers(HttpMethod.POST, "/api/orders/bulk-cancel").hasAnyAuthority("ADMIN", "STAFF", "1", "2")
                         .requestMatchers("/api/orders/**").hasAnyAuthority("ADMIN", "STAFF", "1", "2","CUSTOMER","WARE_HOUSE_STAFF")
                         
                         // Warehouse endpoints
@@ -4,25 +4,45 @@ import com.turkraft.springfilter.boot.Filter;
 import iuh.fit.edu.dto.request.book.ReqCreateBookDTO;
 import iuh.fit.edu.dto.request.book.ReqUpdateBookDTO;
 import iuh.fit.edu.dto.request.book.ReviewRequest;
+import iuh.fit.edu.dto.request.file.ReqConfirmUploadDTO;
+import iuh.fit.edu.dto.request.file.ReqPresignUploadDTO;
 import iuh.fit.edu.dto.response.ResultPaginationDTO;
 import iuh.fit.edu.dto.response.account.UserInfoResponse;
 import iuh.fit.edu.dto.response.book.ResBookDTO;
+import iuh.fit.edu.dto.response.book.ResBookImportDTO;
+import iuh.fit.edu.dto.response.book.ResBookSuggestionDTO;
 import iuh.fit.edu.dto.response.book.ResCreateBookDTO;
 import iuh.fit.edu.dto.response.book.ResUpdateBookDTO;
+import iuh.fit.edu.dto.response.cache.CachedJson;
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
 import iuh.fit.edu.entity.Book;
 import iuh.fit.edu.entity.Review;
+import iuh.fit.edu.entity.constant.BookStatus;
 import iuh.fit.edu.exception.IdInvalidException;
+import iuh.fit.edu.service.BookExportService;
+import iuh.fit.edu.service.BookFacetService;
+import iuh.fit.edu.service.BookImportService;
+import iuh.fit.edu.service.BookSearchService;
 import iuh.fit.edu.service.BookService;
+import iuh.fit.edu.service.BookSuggestService;
+import iuh.fit.edu.service.CatalogCacheService;
+import iuh.fit.edu.service.CoPurchaseService;
+import iuh.fit.edu.service.ImageDerivativeService;
+import iuh.fit.edu.service.StockLedgerService;
 import iuh.fit.edu.util.GetTokenRequest;
 import iuh.fit.edu.util.anotation.ApiMessage;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -34,19 +54,91 @@ import java.util.List;
 @RequestMapping("/api/books")
 public class BookController {
     private final BookService bookService;
+    private final BookSearchService bookSearchService;
+    private final BookSuggestService bookSuggestService;
+    private final BookFacetService bookFacetService;
+    private final BookImportService bookImportService;
+    private final BookExportService bookExportService;
+    private final CoPurchaseService coPurchaseService;
+    private final CatalogCacheService catalogCacheService;
+    private final StockLedgerService stockLedgerService;
+    private final ImageDerivativeService imageDerivativeService;
 
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, BookSearchService bookSearchService,
+                          BookSuggestService bookSuggestService, BookFacetService bookFacetService,
+                          BookImportService bookImportService, BookExportService bookExportService,
+                          CoPurchaseService coPurchaseService, CatalogCacheService catalogCacheService,
+                          StockLedgerService stockLedgerService, ImageDerivativeService imageDerivativeService) {
         this.bookService = bookService;
+        this.bookSearchService = bookSearchService;
+        this.bookSuggestService = bookSuggestService;
+        this.bookFacetService = bookFacetService;
+        this.bookImportService = bookImportService;
+        this.bookExportService = bookExportService;
+        this.coPurchaseService = coPurchaseService;
+        this.catalogCacheService = catalogCacheService;
+        this.stockLedgerService = stockLedgerService;
+        this.imageDerivativeService = imageDerivativeService;
+    }
+
+    @GetMapping("/search")
+    @ApiMessage("Tìm kiếm sách")
+    public ResponseEntity<ResultPaginationDTO> searchBooks(@RequestParam("q") String keyword, Pageable pageable) {
+        return ResponseEntity.ok(this.bookSearchService.search(keyword, pageable));
+    }
+
+    @GetMapping("/suggest")
+    @ApiMessage("Gợi ý sách theo từ khóa")
+    public ResponseEntity<List<ResBookSuggestionDTO>> suggestBooks(
+            @RequestParam("q") String prefix,
+            @RequestParam(value = "limit", defaultValue = "8") int limit
+    ) {
+        return ResponseEntity.ok(this.bookSuggestService.suggest(prefix, limit));
+    }
+
+    @GetMapping("/facets")
+    @ApiMessage("Lọc sách theo facet kèm số lượng")
+    public ResponseEntity<ResultPaginationDTO> getBooksByFacets(
+            @RequestParam(value = "category", required = false) List<Long> categoryIds,
+            @RequestParam(value = "status", required = false) List<BookStatus> statuses,
+            @RequestParam(value = "price", required = false) List<String> priceRanges,
+            @RequestParam(value = "year", required = false) List<String> yearRanges,
+            Pageable pageable
+    ) {
+        return ResponseEntity.ok(this.bookFacetService.search(categoryIds, statuses, priceRanges, yearRanges, pageable));
+    }
+
+    @GetMapping("/summary")
+    @ApiMessage("Lấy danh sách sách rút gọn")
+    public ResponseEntity<ResultPaginationDTO> getBookSummaries(
+            @Filter Specification<Book> spec, Pageable pageable,
+            @RequestParam(value = "filter", required = false) String filter
+    ) {
+        return ResponseEntity.ok(this.bookService.getBookSummaries(spec, pageable, filter));
     }
 
     @GetMapping("/{id}")
     @ApiMessage("Lấy dựa vào id")
-    public ResponseEntity<ResBookDTO> getBookById(@PathVariable Long id) throws IdInvalidException {
-        Book book = this.bookService.findBookById(id);
+    public ResponseEntity<byte[]> getBookById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) throws IdInvalidException {
+        // Trả thẳng byte JSON đã cache (kèm vỏ ApiResponse), FormatApiResponse bỏ qua byte[]
+        CachedJson book = this.catalogCacheService.getBookResponse(id, "Lấy dựa vào id",
+                () -> this.bookService.getBookDetail(id));
         if (book == null) {
             throw new IdInvalidException("Book với id: " + id + " không tồn tại");
         }
-        return ResponseEntity.status(HttpStatus.OK).body(this.bookService.convertToResBookDTO(book));
+        return book.toResponseEntity(ifNoneMatch);
+    }
+
+    @GetMapping("/{id}/related")
+    @ApiMessage("Sách thường được mua cùng")
+    public ResponseEntity<List<BookSummaryResponse>> getRelatedBooks(
+            @PathVariable Long id,
+            @RequestParam(value = "limit", defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(this.coPurchaseService.getRelatedBooks(id, limit));
     }
 
     @PostMapping
@@ -63,6 +155,36 @@ public class BookController {
                 .body(this.bookService.convertToResCreateBookDTO(bookCreate));
     }
 
+    @PostMapping("/import")
+    @ApiMessage("Import sách từ file CSV")
+    public ResponseEntity<ResBookImportDTO> importBooks(
+            @RequestParam("file") MultipartFile file,
+            HttpServletRequest request
+    ) throws IdInvalidException {
+        UserInfoResponse user = GetTokenRequest.getInfoUser(request);
+        return ResponseEntity.ok(this.bookImportService.importCsv(file, user.getEmail()));
+    }
+
+    // StreamingResponseBody không đi qua FormatApiResponse nên dữ liệu được ghi thẳng ra client
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @RequestParam(value = "format", defaultValue = "csv") String format
+    ) throws IdInvalidException {
+        if ("ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books.ndjson\"")
+                    .body(this.bookExportService::exportNdjson);
+        }
+        if ("csv".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books.csv\"")
+                    .body(this.bookExportService::exportCsv);
+        }
+        throw new IdInvalidException("Định dạng xuất không hỗ trợ: " + format);
+    }
+
     @DeleteMapping("/{id}")
     @ApiMessage("Xóa sách (cập nhật trạng thái thành ngừng bán)")
     public ResponseEntity<Void> deleteBook(@PathVariable long id, HttpServletRequest request) throws IdInvalidException {
@@ -78,9 +200,14 @@ public class BookController {
     @GetMapping
     @ApiMessage("Lấy tất cả book")
     public ResponseEntity<ResultPaginationDTO> getAllBooks(
-            @Filter Specification<Book> spec, Pageable pageable
+            @Filter Specification<Book> spec, Pageable pageable,
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "cursor", required = false) String cursor
     ) {
-        return ResponseEntity.ok(this.bookService.getAllBooks(spec, pageable));
+        if (cursor != null) {
+            return ResponseEntity.ok(this.bookService.getAllBooksByCursor(spec, pageable, cursor));
+        }
+        return ResponseEntity.ok(this.bookService.getAllBooks(spec, pageable, filter));
     }
 
     @PutMapping
@@ -118,6 +245,14 @@ public class BookController {
         return ResponseEntity.ok(this.bookService.convertToResUpdateBookDTO(updatedBook));
     }
 
+    // Bật / tắt chế độ flash sale: tồn kho giữ trong bộ nhớ, ghi dồn xuống DB theo lô
+    @PutMapping("/{id}/hot-sku")
+    @ApiMessage("Cập nhật chế độ hot SKU của sách")
+    public ResponseEntity<Void> updateHotSku(@PathVariable Long id, @RequestParam boolean enabled) {
+        this.stockLedgerService.setHot(id, enabled);
+        return ResponseEntity.ok().build();
+    }
+
     @PostMapping("/{id}/images")
     @ApiMessage("Upload ảnh cho sách")
     public ResponseEntity<List<String>> uploadBookImages(
@@ -128,6 +263,34 @@ public class BookController {
         return ResponseEntity.ok(uploadedPaths);
     }
 
+    // Sinh bù thumbnail / medium cho ảnh có từ trước pipeline, chạy nền một lần khi cần thay vì mỗi lần khởi động
+    @PostMapping("/images/backfill")
+    @ApiMessage("Sinh bù ảnh thumbnail cho sách")
+    public ResponseEntity<Void> backfillBookImages() {
+        if (!this.imageDerivativeService.backfillAsync()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping("/{id}/images/presign")
+    @ApiMessage("Tạo URL upload ảnh cho sách")
+    public ResponseEntity<List<ResPresignedUploadDTO>> presignBookImages(
+            @PathVariable Long id,
+            @RequestBody List<ReqPresignUploadDTO> files
+    ) throws IdInvalidException {
+        return ResponseEntity.ok(this.bookService.presignBookImages(id, files));
+    }
+
+    @PostMapping("/{id}/images/confirm")
+    @ApiMessage("Xác nhận ảnh đã upload cho sách")
+    public ResponseEntity<List<String>> confirmBookImages(
+            @PathVariable Long id,
+            @Valid @RequestBody ReqConfirmUploadDTO request
+    ) throws IdInvalidException {
+        return ResponseEntity.ok(this.bookService.attachBookImages(id, request.getKeys()));
+    }
+
     @PostMapping("/{bookId}/reviews")
     @ApiMessage("Tạo đánh giá cho sách")
     public ResponseEntity<ResBookDTO.Review> createReview(
@@ -151,6 +314,12 @@ public class BookController {
         return ResponseEntity.status(HttpStatus.CREATED).body(reviewResponse);
     }
 
+    @GetMapping("/{bookId}/reviews")
+    @ApiMessage("Lấy danh sách đánh giá của sách")
+    public ResponseEntity<ResultPaginationDTO> getReviews(@PathVariable Long bookId, Pageable pageable) throws IdInvalidException {
+        return ResponseEntity.ok(this.bookService.getReviews(bookId, pageable));
+    }
+
     @PutMapping("/{bookId}/reviews")
     @ApiMessage("Cập nhật đánh giá của user")
     public ResponseEntity<ResBookDTO.Review> updateReview(
@@ -1,14 +1,15 @@
 package iuh.fit.edu.controller;
 
+import iuh.fit.edu.dto.response.cache.CachedJson;
 import iuh.fit.edu.entity.Category;
+import iuh.fit.edu.service.CatalogCacheService;
 import iuh.fit.edu.service.impl.CategoryServiceImpl;
 import iuh.fit.edu.util.anotation.ApiMessage;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 /**
  * @author Nguyen Tan Nghi
  * @version 1.0
@@ -17,15 +18,21 @@ import java.util.List;
 @RequestMapping("/api/categories")
 public class CategoryController {
     private final CategoryServiceImpl categoryService;
+    private final CatalogCacheService catalogCacheService;
 
-    public CategoryController(CategoryServiceImpl categoryService) {
+    public CategoryController(CategoryServiceImpl categoryService, CatalogCacheService catalogCacheService) {
         this.categoryService = categoryService;
+        this.catalogCacheService = catalogCacheService;
     }
 
     @GetMapping
     @ApiMessage("Lấy tất cả danh mục")
-    public ResponseEntity<List<Category>> getAllCategories() {
-        return ResponseEntity.status(HttpStatus.OK).body(this.categoryService.getAllCategories());
+    public ResponseEntity<byte[]> getAllCategories(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Danh mục chỉ đổi trực tiếp trong DB nên dựa vào expire-after-write của cache
+        CachedJson categories = this.catalogCacheService.getResponse("categories", "Lấy tất cả danh mục",
+                this.categoryService::getAllCategories);
+        return categories.toResponseEntity(ifNoneMatch);
     }
 
     @GetMapping("/{id}")
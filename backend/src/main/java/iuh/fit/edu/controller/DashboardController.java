@@ -1,10 +1,16 @@
 package iuh.fit.edu.controller;
 
+import iuh.fit.edu.dto.response.cache.CacheStatsDTO;
+import iuh.fit.edu.dto.response.dashboard.CheckoutAdmissionStatsDTO;
 import iuh.fit.edu.dto.response.dashboard.DashboardStatsDTO;
+import iuh.fit.edu.dto.response.dashboard.EmailOutboxStatsDTO;
 import iuh.fit.edu.dto.response.dashboard.MonthlyRevenueDTO;
 import iuh.fit.edu.dto.response.dashboard.TopBookDTO;
 import iuh.fit.edu.dto.response.dashboard.TopCategoryDTO;
+import iuh.fit.edu.service.CatalogCacheService;
+import iuh.fit.edu.service.CheckoutAdmissionService;
 import iuh.fit.edu.service.DashboardService;
+import iuh.fit.edu.service.EmailOutboxService;
 import iuh.fit.edu.util.anotation.ApiMessage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -21,6 +27,9 @@ import java.util.List;
 @RequiredArgsConstructor
 public class DashboardController {
     private final DashboardService dashboardService;
+    private final CatalogCacheService catalogCacheService;
+    private final CheckoutAdmissionService checkoutAdmissionService;
+    private final EmailOutboxService emailOutboxService;
 
     @GetMapping("/stats")
     @ApiMessage("Lấy thống kê dashboard")
@@ -83,6 +92,24 @@ public class DashboardController {
         return ResponseEntity.ok(dashboardService.getCategoryBooks(categoryId, start, end));
     }
 
+    @GetMapping("/cache-stats")
+    @ApiMessage("Lấy thống kê cache catalog")
+    public ResponseEntity<List<CacheStatsDTO>> getCacheStats() {
+        return ResponseEntity.ok(catalogCacheService.getStats());
+    }
+
+    @GetMapping("/checkout-stats")
+    @ApiMessage("Lấy thống kê hàng đợi checkout")
+    public ResponseEntity<CheckoutAdmissionStatsDTO> getCheckoutStats() {
+        return ResponseEntity.ok(checkoutAdmissionService.getStats());
+    }
+
+    @GetMapping("/email-stats")
+    @ApiMessage("Lấy thống kê hàng đợi email")
+    public ResponseEntity<EmailOutboxStatsDTO> getEmailStats() {
+        return ResponseEntity.ok(emailOutboxService.getStats());
+    }
+
     private OffsetDateTime parseToOffset(String value) {
         if (value == null) return null;
         // First try parsing as OffsetDateTime (handles strings with offset or Z)
@@ -35,7 +35,12 @@ public class EntryFormController {
     @ApiMessage("Lấy danh sách phiếu nhập kho")
     public ResponseEntity<ResultPaginationDTO> getAllEntryForms(
             @Filter Specification<EntryForm> spec,
-            Pageable pageable) {
+            Pageable pageable,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        if (cursor != null) {
+            return ResponseEntity.status(HttpStatus.OK)
+                    .body(this.entryFormService.getAllEntryFormsByCursor(spec, pageable, cursor));
+        }
         return ResponseEntity.status(HttpStatus.OK)
                 .body(this.entryFormService.getAllEntryForms(spec, pageable));
     }
@@ -5,12 +5,16 @@
 package iuh.fit.edu.controller.client;
 
 import com.turkraft.springfilter.boot.Filter;
+import iuh.fit.edu.dto.request.order.ReqBulkCancelOrderDTO;
 import iuh.fit.edu.dto.request.order.UpdateOrderRequest;
 import iuh.fit.edu.dto.response.ResultPaginationDTO;
 import iuh.fit.edu.dto.response.account.UserInfoResponse;
 import iuh.fit.edu.dto.response.order.OrderResponse;
+import iuh.fit.edu.dto.response.order.ResBulkCancelOrderDTO;
 import iuh.fit.edu.dto.response.order.UpdateOrderStatusResponse;
 import iuh.fit.edu.entity.Order;
+import iuh.fit.edu.entity.constant.OrderStatus;
+import iuh.fit.edu.service.OrderCancellationService;
 import iuh.fit.edu.service.OrderService;
 import iuh.fit.edu.util.GetTokenRequest;
 import iuh.fit.edu.util.anotation.ApiMessage;
@@ -24,6 +28,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.security.Security;
 import java.util.List;
+import java.util.Map;
 
 /*
  * @description
@@ -37,19 +42,34 @@ import java.util.List;
 @Slf4j
 public class OrderController {
     private final OrderService orderService;
+    private final OrderCancellationService orderCancellationService;
 
     @GetMapping
     @ApiMessage("Get all order")
-    public ResponseEntity<ResultPaginationDTO> getAllOrder(@Filter Specification<Order> spec, Pageable pageable){
+    public ResponseEntity<ResultPaginationDTO> getAllOrder(@Filter Specification<Order> spec, Pageable pageable,
+                                                           @RequestParam(value = "cursor", required = false) String cursor){
+        if (cursor != null) {
+            return ResponseEntity.ok(this.orderService.getAllOrderByCursor(spec, pageable, cursor));
+        }
         return ResponseEntity.ok(this.orderService.getAllOrder(spec, pageable));
     }
 
     @GetMapping("/user")
     @ApiMessage("Get orders by user")
-    public ResponseEntity<List<OrderResponse>> getOrdersByUser(HttpServletRequest request){
+    public ResponseEntity<ResultPaginationDTO> getOrdersByUser(HttpServletRequest request,
+                                                               @RequestParam(value = "status", required = false) OrderStatus status,
+                                                               @RequestParam(value = "q", required = false) String keyword,
+                                                               @RequestParam(value = "size", defaultValue = "10") int size,
+                                                               @RequestParam(value = "cursor", required = false) String cursor){
         UserInfoResponse user = GetTokenRequest.getInfoUser(request);
-        List<OrderResponse> orderResponses = this.orderService.getOrdersByEmail(user.getEmail());
-        return ResponseEntity.ok(orderResponses);
+        return ResponseEntity.ok(this.orderService.getOrdersByEmail(user.getEmail(), status, keyword, size, cursor));
+    }
+
+    @GetMapping("/user/counts")
+    @ApiMessage("Count orders of user by status")
+    public ResponseEntity<Map<String, Long>> countOrdersByUser(HttpServletRequest request){
+        UserInfoResponse user = GetTokenRequest.getInfoUser(request);
+        return ResponseEntity.ok(this.orderService.countOrdersByEmail(user.getEmail()));
     }
 
     @GetMapping("/{id}")
@@ -76,6 +96,15 @@ public class OrderController {
         return ResponseEntity.ok(this.orderService.updateOrderStatus(request, user.getEmail()));
     }
 
+    @PostMapping("/bulk-cancel")
+    @ApiMessage("Cancel orders in bulk")
+    public ResponseEntity<ResBulkCancelOrderDTO> bulkCancelOrders(@RequestBody ReqBulkCancelOrderDTO request, HttpServletRequest httpServletRequest){
+        UserInfoResponse user = GetTokenRequest.getInfoUser(httpServletRequest);
+        List<String> orderCodes = request.getOrderCodes() == null ? List.of() : request.getOrderCodes();
+        int cancelled = this.orderCancellationService.cancelOrders(orderCodes, user.getEmail());
+        return ResponseEntity.ok(new ResBulkCancelOrderDTO(orderCodes.size(), cancelled));
+    }
+
     @GetMapping("/check-purchased/{bookId}")
     @ApiMessage("Check if user has purchased this book")
     public ResponseEntity<Boolean> checkUserPurchased(@PathVariable Long bookId, HttpServletRequest request){
@@ -5,6 +5,8 @@ import iuh.fit.edu.dto.response.ApiResponse;
 import iuh.fit.edu.dto.response.account.UserInfoResponse;
 import iuh.fit.edu.dto.response.order.OrderResponse;
 import iuh.fit.edu.dto.response.PaymentResponse;
+import iuh.fit.edu.dto.response.ResultPaginationDTO;
+import iuh.fit.edu.service.CheckoutAdmissionService;
 import iuh.fit.edu.service.OrderService;
 import iuh.fit.edu.util.GetTokenRequest;
 import jakarta.servlet.http.HttpServletRequest;
@@ -13,7 +15,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -22,16 +23,19 @@ import java.util.Map;
 public class PaymentController {
 
     private final OrderService orderService;
+    private final CheckoutAdmissionService checkoutAdmissionService;
 
     /**
      * Tạo đơn hàng với 2 phương thức thanh toán:
      * 1. COD (Thanh toán khi nhận hàng) - Tạo đơn hàng ngay lập tức
      * 2. VNPAY - Chuyển hướng đến trang thanh toán VNPay
+     * Khi quá tải, request xếp hàng FIFO; hàng đợi đầy hoặc chờ quá lâu trả về 429 kèm vị trí trong hàng đợi
      */
     @PostMapping("/create-order")
     public ResponseEntity<?> createOrder(@RequestBody OrderRequest orderRequest, HttpServletRequest request) {
             UserInfoResponse user = GetTokenRequest.getInfoUser(request);
-            Object result = this.orderService.createOrder(user.getEmail(), orderRequest, request);
+            Object result = this.checkoutAdmissionService.admit(
+                    () -> this.orderService.createOrder(user.getEmail(), orderRequest, request));
             return ResponseEntity.ok(result);
     }
 
@@ -75,10 +79,11 @@ public class PaymentController {
      * Lấy danh sách đơn hàng của user
      */
     @GetMapping("/orders")
-    public ResponseEntity<?> getUserOrders() {
+    public ResponseEntity<?> getUserOrders(@RequestParam(value = "size", defaultValue = "10") int size,
+                                           @RequestParam(value = "cursor", required = false) String cursor) {
         try {
             String email = "admin@bookstore.com"; // Hard-coded email như CartController
-            List<OrderResponse> orders = orderService.getOrdersByEmail(email);
+            ResultPaginationDTO orders = orderService.getOrdersByEmail(email, null, null, size, cursor);
             return ResponseEntity.ok(ApiResponse.success(
                     HttpStatus.OK.value(),
                     "Lấy danh sách đơn hàng thành công",
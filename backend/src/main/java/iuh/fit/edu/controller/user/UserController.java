@@ -2,10 +2,12 @@ package iuh.fit.edu.controller.user;
 
 import iuh.fit.edu.config.SecurityConfig;
 import iuh.fit.edu.controller.account.AccountController;
+import iuh.fit.edu.dto.request.file.ReqPresignUploadDTO;
 import iuh.fit.edu.dto.request.user.CreateUserRequest;
 import iuh.fit.edu.dto.request.user.UpdateUserRequest;
 import iuh.fit.edu.dto.response.ApiResponse;
 import iuh.fit.edu.dto.response.account.UserInfoResponse;
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
 import iuh.fit.edu.dto.response.user.UserResponseById;
 import iuh.fit.edu.dto.response.user.UsersResponse;
 import iuh.fit.edu.service.AccountService;
@@ -14,6 +16,7 @@ import iuh.fit.edu.util.GetTokenRequest;
 import iuh.fit.edu.util.anotation.ApiMessage;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -91,4 +94,22 @@ public class UserController {
         String filename = userService.uploadAvatar(avatar);
         return ResponseEntity.ok(ApiResponse.success(200, "Avatar uploaded successfully", filename));
     }
+
+    @PostMapping("/users/avatar/presign")
+    @ApiMessage("Tạo URL upload avatar thành công")
+    public ResponseEntity<ApiResponse<ResPresignedUploadDTO>> presignAvatar(@Valid @RequestBody ReqPresignUploadDTO presignRequest){
+        ResPresignedUploadDTO upload = userService.presignAvatar(presignRequest);
+        return ResponseEntity.ok(ApiResponse.success(200, "Avatar upload URL created", upload));
+    }
+
+    @PostMapping("/users/avatar/confirm")
+    @ApiMessage("Xác nhận avatar thành công")
+    public ResponseEntity<ApiResponse<String>> confirmAvatar(
+            @RequestParam("key") String key,
+            @RequestParam(value = "attach", defaultValue = "true") boolean attach,
+            HttpServletRequest request){
+        UserInfoResponse response= GetTokenRequest.getInfoUser(request);
+        String filename = userService.confirmAvatar(response.getEmail(), key, attach);
+        return ResponseEntity.ok(ApiResponse.success(200, "Avatar confirmed", filename));
+    }
 }
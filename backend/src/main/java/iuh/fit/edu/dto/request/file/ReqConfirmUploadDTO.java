@@ -0,0 +1,16 @@
+package iuh.fit.edu.dto.request.file;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReqConfirmUploadDTO {
+    @NotEmpty(message = "Phải có ít nhất 1 key")
+    private List<String> keys;
+}
@@ -0,0 +1,23 @@
+package iuh.fit.edu.dto.request.file;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReqPresignUploadDTO {
+    @NotBlank(message = "Tên file không được để trống")
+    private String fileName;
+
+    @NotBlank(message = "Content-Type không được để trống")
+    private String contentType;
+
+    @NotNull(message = "Kích thước file không được để trống")
+    @Positive(message = "Kích thước file phải lớn hơn 0")
+    private Long size;
+}
@@ -0,0 +1,20 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.dto.request.order;
+
+import lombok.Data;
+
+import java.util.List;
+
+/*
+ * @description
+ * @author: Huu Thai
+ * @date:
+ * @version: 1.0
+ */
+@Data
+public class ReqBulkCancelOrderDTO {
+    private List<String> orderCodes;
+}
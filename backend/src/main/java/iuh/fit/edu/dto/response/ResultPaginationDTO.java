@@ -1,5 +1,6 @@
 package iuh.fit.edu.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -13,6 +14,9 @@ import lombok.Setter;
 public class ResultPaginationDTO {
     private Meta meta;
     private Object result;
+    // Số lượng sách theo từng giá trị facet, chỉ có ở /api/books/facets
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Object facets;
 
     @Setter
     @Getter
@@ -21,5 +25,8 @@ public class ResultPaginationDTO {
         private int pageSize;
         private int pages;
         private long total;
+        // Chỉ có khi phân trang theo cursor (keyset), null ở trang cuối
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String nextCursor;
     }
 }
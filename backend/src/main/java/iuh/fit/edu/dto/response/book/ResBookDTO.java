@@ -41,6 +41,7 @@ public class ResBookDTO {
     private String updatedBy;
     private int quantity;
     private Review[] review;
+    private Rating rating;
     private BookImage[] bookImage;
     private Category[] category;
     private Supplier supplier;
@@ -53,6 +54,8 @@ public class ResBookDTO {
     public static class BookImage{
         private long bookId;
         private String imagePath;
+        private String thumbnailPath;
+        private String mediumPath;
     }
 
     @Getter
@@ -72,6 +75,16 @@ public class ResBookDTO {
     @Setter
     @AllArgsConstructor
     @NoArgsConstructor
+    public static class Rating{
+        private long count;
+        private double average;
+        // Số lượt đánh giá 1 sao đến 5 sao
+        private long[] histogram;
+    }
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
     public static class Category{
         private long id;
         private String description;
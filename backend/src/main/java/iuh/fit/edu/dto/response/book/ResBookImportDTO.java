@@ -0,0 +1,40 @@
+package iuh.fit.edu.dto.response.book;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kết quả import sách từ CSV: số dòng thành công / lỗi, lỗi theo từng dòng và tốc độ xử lý
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ResBookImportDTO {
+    private long totalRows;
+    private long importedRows;
+    private long failedRows;
+    private int entryForms;
+    private long elapsedMs;
+    private double rowsPerSecond;
+    // Chỉ giữ một số lỗi đầu tiên để response không phình to, failedRows vẫn đếm đủ
+    private boolean errorsTruncated;
+    private List<RowError> errors = new ArrayList<>();
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RowError {
+        private long line;
+        private String isbn;
+        private String message;
+    }
+}
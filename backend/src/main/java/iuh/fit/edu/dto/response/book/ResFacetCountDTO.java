@@ -0,0 +1,19 @@
+package iuh.fit.edu.dto.response.book;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResFacetCountDTO {
+    private String value;
+    private long count;
+}
@@ -0,0 +1,24 @@
+package iuh.fit.edu.dto.response.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Thống kê của một vùng cache trong bộ nhớ
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsDTO {
+    private String name;
+    private long size;
+    private long weightedSize;
+    private long maximumWeight;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+    private long evictionWeight;
+    private double averageLoadPenaltyMs;
+}
@@ -0,0 +1,27 @@
+package iuh.fit.edu.dto.response.cache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Body JSON đã serialize sẵn (gồm cả vỏ ApiResponse) cùng ETag mạnh tính từ chính các byte đó
+ */
+public record CachedJson(byte[] body, String etag) {
+
+    /**
+     * 304 không body nếu client đã có đúng phiên bản, ngược lại trả nguyên mảng byte
+     */
+    public ResponseEntity<byte[]> toResponseEntity(String ifNoneMatch) {
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(body.length)
+                .body(body);
+    }
+}
@@ -0,0 +1,51 @@
+package iuh.fit.edu.dto.response.cache;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Khóa của một trang danh sách sách trong cache. stockDependent = true khi filter hoặc sort dùng cột số lượng:
+ * đổi tồn kho của bất kỳ sách nào cũng có thể đổi thành phần / thứ tự của trang nên phải xóa trang đó.
+ *
+ * @param view   loại trang (danh sách đầy đủ, tóm tắt), hai loại cùng filter không dùng chung kết quả
+ * @param filter chuỗi filter gốc của request, rỗng nếu không lọc
+ */
+public record CatalogPageKey(String view, String filter, int page, int size, Sort sort, boolean stockDependent) {
+    private static final String STOCK_FIELD = "quantity";
+
+    public static CatalogPageKey of(String view, String filter, Pageable pageable) {
+        String normalized = filter == null ? "" : filter;
+        Sort sort = pageable.getSort();
+        boolean stockDependent = sort.getOrderFor(STOCK_FIELD) != null || referencesField(normalized, STOCK_FIELD);
+        return new CatalogPageKey(view, normalized, pageable.getPageNumber(), pageable.getPageSize(), sort, stockDependent);
+    }
+
+    /**
+     * Tìm field trong các định danh của filter (bỏ qua chuỗi trong nháy), so từng đoạn của đường dẫn a.b.c
+     */
+    static boolean referencesField(String filter, String field) {
+        int i = 0;
+        int length = filter.length();
+        while (i < length) {
+            char c = filter.charAt(i);
+            if (c == '\'' || c == '"') {
+                i++;
+                while (i < length && filter.charAt(i) != c) {
+                    i += filter.charAt(i) == '\\' ? 2 : 1;
+                }
+                i++;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < length && Character.isJavaIdentifierPart(filter.charAt(i))) {
+                    i++;
+                }
+                if (filter.regionMatches(start, field, 0, i - start) && i - start == field.length()) {
+                    return true;
+                }
+            } else {
+                i++;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,24 @@
+package iuh.fit.edu.dto.response.dashboard;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Thống kê hàng đợi checkout
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutAdmissionStatsDTO {
+    private int maxConcurrent;
+    private int inFlight;
+    private int queueDepth;
+    private int maxQueue;
+    private long admitted;
+    private long rejectedQueueFull;
+    private long rejectedTimeout;
+    private double averageWaitMs;
+    private double maxWaitMs;
+    private double averageCheckoutMs;
+}
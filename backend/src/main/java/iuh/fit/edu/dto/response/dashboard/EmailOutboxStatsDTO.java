@@ -0,0 +1,22 @@
+package iuh.fit.edu.dto.response.dashboard;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Thống kê outbox email xác nhận đơn hàng
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailOutboxStatsDTO {
+    private long queueDepth;
+    private long failed;
+    private long sent;
+    private long retried;
+    private double averageRenderMs;
+    private double averageSendMs;
+    private double averageDeliveryMs;
+    private double maxDeliveryMs;
+}
@@ -0,0 +1,25 @@
+package iuh.fit.edu.dto.response.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Client PUT thẳng file lên url kèm đúng các header trong headers (đã nằm trong chữ ký),
+ * sau đó gọi endpoint confirm với key
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResPresignedUploadDTO {
+    private String key;
+    private String url;
+    private String method;
+    private Map<String, String> headers;
+    private Instant expiresAt;
+}
@@ -0,0 +1,131 @@
+package iuh.fit.edu.dto.response.order;
+
+import iuh.fit.edu.entity.constant.OrderStatus;
+import iuh.fit.edu.entity.constant.PaymentMethod;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Dữ liệu đã chốt của email đơn hàng: không giữ entity nên render được ngoài transaction, tiền và ngày
+ * đã được định dạng sẵn để template chỉ còn đọc biến.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class OrderEmailView {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final String orderCode;
+    private final String receiverName;
+    private final String receiverPhone;
+    private final String receiverAddress;
+    private final String receiverEmail;
+    private final String note;
+    private final String orderDate;
+    private final String paymentMethod;
+    private final String status;
+    private final List<Item> items;
+    private final String subtotal;
+    private final String discount;
+    private final String totalPrice;
+
+    /**
+     * Projection thông tin đơn, tránh nạp entity Order kéo theo User
+     */
+    public interface Header {
+        Long getId();
+
+        String getOrderCode();
+
+        String getReceiverName();
+
+        String getReceiverPhone();
+
+        String getReceiverAddress();
+
+        String getReceiverEmail();
+
+        String getNote();
+
+        OffsetDateTime getOrderDate();
+
+        PaymentMethod getPaymentMethod();
+
+        OrderStatus getStatus();
+
+        double getTotalPrice();
+    }
+
+    /**
+     * Projection một dòng hàng kèm tên sách
+     */
+    public interface Line {
+        Long getOrderId();
+
+        Long getBookId();
+
+        String getTitle();
+
+        int getQuantity();
+
+        double getPrice();
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Item {
+        private final String title;
+        private final String imageKey;
+        private final int quantity;
+        private final String price;
+        private final double amount;
+
+        public static Item of(String title, String imageKey, int quantity, double price) {
+            return new Item(title, imageKey, quantity, formatMoney(price), price * quantity);
+        }
+    }
+
+    public static OrderEmailView of(Header order, List<Item> items) {
+        double subtotal = 0;
+        for (Item item : items) {
+            subtotal += item.getAmount();
+        }
+        return new OrderEmailView(
+                order.getOrderCode(),
+                order.getReceiverName(),
+                order.getReceiverPhone(),
+                order.getReceiverAddress(),
+                order.getReceiverEmail(),
+                order.getNote(),
+                order.getOrderDate() == null ? "" : DATE_FORMAT.format(order.getOrderDate()),
+                String.valueOf(order.getPaymentMethod()),
+                String.valueOf(order.getStatus()),
+                List.copyOf(items),
+                formatMoney(subtotal),
+                formatMoney(subtotal - order.getTotalPrice()),
+                formatMoney(order.getTotalPrice())
+        );
+    }
+
+    /**
+     * Làm tròn về số nguyên, nhóm hàng nghìn bằng dấu chấm: 4470000 -> 4.470.000
+     */
+    static String formatMoney(double value) {
+        long amount = Math.round(value);
+        String digits = Long.toString(Math.abs(amount));
+        StringBuilder builder = new StringBuilder(digits.length() + digits.length() / 3 + 1);
+        if (amount < 0) {
+            builder.append('-');
+        }
+        int head = digits.length() % 3 == 0 ? 3 : digits.length() % 3;
+        builder.append(digits, 0, head);
+        for (int i = head; i < digits.length(); i += 3) {
+            builder.append('.').append(digits, i, i + 3);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.dto.response.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * @description Kết quả hủy đơn theo lô: số mã đơn gửi lên và số đơn thực sự bị hủy
+ * @author: Huu Thai
+ * @date:
+ * @version: 1.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResBulkCancelOrderDTO {
+    private int requested;
+    private int cancelled;
+}
@@ -18,7 +18,12 @@ import lombok.Getter;
 public class BookSummaryResponse {
     private Long id;
     private String title;
+    private String author;
     private double price;
     private String image;
+    // Key ảnh thu nhỏ suy ra từ image, được sinh nền sau khi upload nên client cần fallback về image
+    private String thumbnail;
     private int quantity;
+    private double averageRating;
+    private long reviewCount;
 }
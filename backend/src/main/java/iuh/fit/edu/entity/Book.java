@@ -52,6 +52,9 @@ public class Book {
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "book_images", joinColumns = @JoinColumn(name = "book_id"))
     @Column(name = "image_path")
+    // Vị trí ảnh trong danh sách, ảnh ở vị trí 0 là ảnh đại diện.
+    // Dữ liệu cũ được đánh số một lần bằng resources/db/book_images_order.sql trước khi triển khai
+    @OrderColumn(name = "image_order")
     private List<String> image;
 
     @Enumerated(EnumType.STRING)
@@ -70,6 +73,12 @@ public class Book {
     @Min(value = 0, message = "Số lượng phải lớn hơn hoặc bằng 0")
     private int quantity;
 
+    // Bật khi flash sale: tồn kho được giữ trong bộ nhớ (StockLedgerService) và ghi dồn xuống DB theo lô
+    // DEFAULT 0 để các câu INSERT không liệt kê cột (JDBC, SQL tay) không bị strict mode từ chối
+    @Column(name = "hot_sku", nullable = false, columnDefinition = "bit not null default 0")
+    @JsonIgnore
+    private boolean hotSku;
+
     @OneToMany(mappedBy = "book")
     @JsonIgnore
     private List<OrderItem> orderItems;
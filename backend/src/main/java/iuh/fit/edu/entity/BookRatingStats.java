@@ -0,0 +1,23 @@
+package iuh.fit.edu.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Tổng hợp đánh giá của một sách, được cộng dồn mỗi khi tạo / sửa / xóa review
+ * để trang chi tiết không phải nạp toàn bộ review.
+ */
+@Entity
+@Table(name = "book_rating_stats")
+@Data
+public class BookRatingStats {
+    @Id
+    private Long bookId;
+    private long reviewCount;
+    private long ratingSum;
+    private long star1;
+    private long star2;
+    private long star3;
+    private long star4;
+    private long star5;
+}
@@ -0,0 +1,51 @@
+package iuh.fit.edu.entity;
+
+import iuh.fit.edu.entity.constant.EmailOutboxStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Email chờ gửi, được ghi cùng transaction với đơn hàng nên không mất khi server dừng đột ngột.
+ * Nội dung chỉ được render lúc gửi từ orderId + templateName.
+ */
+@Entity
+@Table(name = "email_outbox",
+        indexes = @Index(name = "idx_email_outbox_due", columnList = "status, next_attempt_at"),
+        // Mỗi đơn chỉ một email cho mỗi template, callback thanh toán gửi lại không tạo thêm email
+        uniqueConstraints = @UniqueConstraint(name = "uk_email_outbox_order_template",
+                columnNames = {"order_id", "template_name"}))
+@Data
+public class EmailOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    private String subject;
+
+    private String templateName;
+
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EmailOutboxStatus status;
+
+    private int attempts;
+
+    @Column(name = "next_attempt_at", columnDefinition = "DATETIME")
+    private OffsetDateTime nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(columnDefinition = "DATETIME")
+    private OffsetDateTime createdAt;
+
+    @Column(columnDefinition = "DATETIME")
+    private OffsetDateTime sentAt;
+}
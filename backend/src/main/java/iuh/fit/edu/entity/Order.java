@@ -12,7 +12,11 @@ import java.time.OffsetDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_user_date", columnList = "user_id, order_date, id"),
+        @Index(name = "idx_orders_user_status_date", columnList = "user_id, status, order_date, id"),
+        @Index(name = "idx_orders_expiry", columnList = "payment_status, expired_at")
+})
 @Data
 public class Order {
     @Id
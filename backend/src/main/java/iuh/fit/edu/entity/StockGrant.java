@@ -0,0 +1,34 @@
+package iuh.fit.edu.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Phần tồn kho của một sách hot SKU đã chia cho một instance (node). Mỗi node chỉ giữ hàng trong phần của
+ * mình nên nhiều instance cùng bán một sách không bán vượt: books.quantity - tổng các phần là số còn tự do.
+ * Phần được trừ cùng transaction với books.quantity khi ghi dồn nhật ký của node; node không gia hạn
+ * leaseUntil thì node khác ghi dồn nhật ký của nó rồi thu hồi phần còn lại.
+ */
+@Entity
+@Table(name = "stock_grant",
+        uniqueConstraints = @UniqueConstraint(name = "uk_stock_grant_book_node", columnNames = {"book_id", "node_id"}))
+@Data
+public class StockGrant {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Column(name = "node_id", nullable = false)
+    private int nodeId;
+
+    // Đã nhận trừ đi số đã bán và đã ghi dồn xuống books.quantity
+    private int quantity;
+
+    @Column(columnDefinition = "DATETIME")
+    private OffsetDateTime leaseUntil;
+}
@@ -0,0 +1,38 @@
+package iuh.fit.edu.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Nhật ký thay đổi tồn kho của sách đang ở chế độ hot SKU. Mỗi lần giữ / hoàn hàng ghi một dòng trong cùng
+ * transaction với đơn hàng; dòng bị xóa khi delta đã được cộng vào books.quantity. Dòng còn lại sau khi
+ * server dừng đột ngột được áp dụng lúc khởi động, hoặc bởi node khác khi thu hồi phần tồn kho của node đó.
+ */
+@Entity
+@Table(name = "stock_journal", indexes = {
+        @Index(name = "idx_stock_journal_book", columnList = "book_id"),
+        @Index(name = "idx_stock_journal_node", columnList = "node_id, id")
+})
+@Data
+public class StockJournal {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    // Node đã ghi dòng, null với dòng của phiên bản chưa chia tồn kho theo node
+    @Column(name = "node_id")
+    private Integer nodeId;
+
+    // Âm khi giữ hàng, dương khi hoàn hàng
+    private int delta;
+
+    private String orderCode;
+
+    @Column(columnDefinition = "DATETIME")
+    private OffsetDateTime createdAt;
+}
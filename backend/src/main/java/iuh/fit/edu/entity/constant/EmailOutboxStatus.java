@@ -0,0 +1,14 @@
+package iuh.fit.edu.entity.constant;
+/*
+ * @description Trạng thái email trong outbox: SENDING là đã được worker nhận, quá hạn nhận mà chưa xong
+ * (server dừng giữa chừng) thì được nhận lại
+ * @author: Huu Thai
+ * @date:
+ * @version: 1.0
+ */
+public enum EmailOutboxStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,30 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.event;
+
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * @description Phát ra mỗi khi dữ liệu sách thay đổi (tạo, sửa, xóa, tồn kho, ảnh, đánh giá)
+ * để các cache / index trong bộ nhớ tự làm mới. stockOnly = true khi chỉ số lượng tồn kho đổi
+ * (đặt hàng, hủy đơn, nhập hàng): index tìm kiếm / gợi ý / facet không chứa số lượng nên bỏ qua.
+ * @author: Nguyen Tan Nghi
+ * @version: 1.0
+ */
+public record BookChangedEvent(Collection<Long> bookIds, boolean stockOnly) {
+
+    public static BookChangedEvent of(Long bookId) {
+        return new BookChangedEvent(List.of(bookId), false);
+    }
+
+    public static BookChangedEvent of(Collection<Long> bookIds) {
+        return new BookChangedEvent(List.copyOf(bookIds), false);
+    }
+
+    public static BookChangedEvent stock(Collection<Long> bookIds) {
+        return new BookChangedEvent(List.copyOf(bookIds), true);
+    }
+}
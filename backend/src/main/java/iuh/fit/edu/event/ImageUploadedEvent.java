@@ -0,0 +1,15 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.event;
+
+import java.util.Collection;
+
+/*
+ * @description Phát ra sau khi ảnh gốc đã lên storage thành công, để sinh ảnh thumbnail / medium
+ * @author: Nguyen Tan Nghi
+ * @version: 1.0
+ */
+public record ImageUploadedEvent(Collection<String> keys) {
+}
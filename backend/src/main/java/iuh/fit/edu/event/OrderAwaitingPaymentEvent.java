@@ -0,0 +1,16 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.event;
+
+import java.time.OffsetDateTime;
+
+/*
+ * @description Phát ra khi tạo đơn VNPay: đơn giữ hàng tới expiredAt, quá hạn chưa thanh toán thì bị hủy
+ * @author: Huu Thai
+ * @date:
+ * @version: 1.0
+ */
+public record OrderAwaitingPaymentEvent(Long orderId, OffsetDateTime expiredAt) {
+}
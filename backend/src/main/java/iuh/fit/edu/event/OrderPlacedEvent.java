@@ -0,0 +1,16 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.event;
+
+import java.util.Collection;
+
+/*
+ * @description Phát ra khi một đơn hàng được xem là đã mua: đơn COD vừa tạo hoặc đơn VNPay vừa thanh toán
+ * @author: Huu Thai
+ * @date:
+ * @version: 1.0
+ */
+public record OrderPlacedEvent(Long orderId, Collection<Long> bookIds) {
+}
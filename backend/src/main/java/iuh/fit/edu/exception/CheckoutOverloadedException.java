@@ -0,0 +1,30 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.exception;
+
+/*
+ * @description Checkout bị từ chối vì hàng đợi đã đầy hoặc chờ quá lâu, trả về 429 kèm vị trí trong hàng
+ * đợi và thời gian nên thử lại
+ * @author: Nguyen Tan Nghi
+ * @version: 1.0
+ */
+public class CheckoutOverloadedException extends RuntimeException {
+    private final int position;
+    private final long retryAfterSeconds;
+
+    public CheckoutOverloadedException(String message, int position, long retryAfterSeconds) {
+        super(message);
+        this.position = position;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -6,6 +6,7 @@ package iuh.fit.edu.exception;
 
 import iuh.fit.edu.dto.response.ApiResponse;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -17,6 +18,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /*
@@ -81,6 +83,53 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(api);
     }
 
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<ApiResponse<Object>> handleInsufficientStock(InsufficientStockException ex) {
+        LOGGER.warn("Insufficient stock: {}", ex.getMessage());
+        ApiResponse<Object> api = ApiResponse.error(
+                HttpStatus.CONFLICT.value(),
+                ex.getMessage(),
+                ex.getShortages()
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(api);
+    }
+
+    @ExceptionHandler(CheckoutOverloadedException.class)
+    public ResponseEntity<ApiResponse<Object>> handleCheckoutOverloaded(CheckoutOverloadedException ex) {
+        ApiResponse<Object> api = ApiResponse.error(
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                ex.getMessage(),
+                Map.of("position", ex.getPosition(), "retryAfterSeconds", ex.getRetryAfterSeconds())
+        );
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(api);
+    }
+
+    @ExceptionHandler(StockBusyException.class)
+    public ResponseEntity<ApiResponse<Object>> handleStockBusy(StockBusyException ex) {
+        LOGGER.warn("Stock busy: {}", ex.getMessage());
+        ApiResponse<Object> api = ApiResponse.error(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                ex.getMessage(),
+                Map.of("retryAfterSeconds", ex.getRetryAfterSeconds())
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(api);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ApiResponse<Object>> handleIllegalArgument(IllegalArgumentException ex) {
+        LOGGER.warn("Bad request: {}", ex.getMessage());
+        ApiResponse<Object> api = ApiResponse.error(
+                HttpStatus.BAD_REQUEST.value(),
+                ex.getMessage(),
+                "Invalid"
+        );
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(api);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiResponse<Object>> handleException(Exception ex) {
         LOGGER.error("Unhandled exception caught in GlobalExceptionHandler", ex);
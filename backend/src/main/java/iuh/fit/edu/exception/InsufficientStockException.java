@@ -0,0 +1,30 @@
+package iuh.fit.edu.exception;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Một hoặc nhiều dòng của đơn hàng không đủ tồn kho. Là RuntimeException để transaction tạo đơn rollback
+ * toàn bộ, không dòng nào bị trừ kho.
+ */
+public class InsufficientStockException extends RuntimeException {
+    private final List<Shortage> shortages;
+
+    public InsufficientStockException(List<Shortage> shortages) {
+        super("Không đủ số lượng: " + shortages.stream()
+                .map(Shortage::describe)
+                .collect(Collectors.joining("; ")));
+        this.shortages = List.copyOf(shortages);
+    }
+
+    public List<Shortage> getShortages() {
+        return shortages;
+    }
+
+    public record Shortage(Long bookId, String title, int requested, int available) {
+        private String describe() {
+            String name = title != null ? title : "Sách #" + bookId + " (không tồn tại)";
+            return name + " còn " + available + ", cần " + requested;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.exception;
+
+/*
+ * @description Tồn kho hot SKU của sách đang bận trong chốc lát (đang đóng băng để đồng bộ, đang chuyển chế độ
+ * hoặc chưa gia hạn được phần tồn kho của instance), trả về 503 kèm thời gian nên thử lại
+ * @author: Nguyen Tan Nghi
+ * @version: 1.0
+ */
+public class StockBusyException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public StockBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -5,8 +5,11 @@ import iuh.fit.edu.dto.response.book.ResCreateBookDTO;
 import iuh.fit.edu.dto.response.book.ResUpdateBookDTO;
 import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
 import iuh.fit.edu.entity.Book;
+import iuh.fit.edu.entity.BookRatingStats;
 import iuh.fit.edu.entity.EntryFormDetail;
+import iuh.fit.edu.entity.Review;
 import iuh.fit.edu.entity.Supplier;
+import iuh.fit.edu.util.ImageDerivatives;
 import org.mapstruct.*;
 
 import java.util.List;
@@ -19,7 +22,10 @@ import java.util.List;
 @Mapper(componentModel = "spring")
 public interface BookMapper {
     @Mapping(target = "image", source = "image", qualifiedByName = "firstImage")
+    @Mapping(target = "thumbnail", source = "image", qualifiedByName = "firstThumbnail")
     @Mapping(target = "price", source = "sellingPrice")
+    @Mapping(target = "averageRating", ignore = true)
+    @Mapping(target = "reviewCount", ignore = true)
     BookSummaryResponse toBookSummaryResponse(Book book);
 
     @Named("firstImage")
@@ -27,15 +33,50 @@ public interface BookMapper {
         return (images != null && !images.isEmpty()) ? images.getFirst() : null;
     }
 
+    @Named("firstThumbnail")
+    default String mapFirstThumbnail(List<String> images) {
+        return ImageDerivatives.thumbnailKey(mapFirstImage(images));
+    }
+
     // =============================
     // MAP ĐƠN GIẢN
     // =============================
     @Mapping(target = "bookImage", ignore = true)
     @Mapping(target = "category", ignore = true)
     @Mapping(target = "review", ignore = true)
+    @Mapping(target = "rating", ignore = true)
     @Mapping(target = "supplier", ignore = true)
     ResBookDTO toResBookDTO(Book book);
 
+    default ResBookDTO.Review toReviewDTO(Review r) {
+        String userName = "Khách hàng";
+        String userAvatar = null;
+        String userEmail = null;
+        if (r.getUser() != null) {
+            userName = r.getUser().getFullName() != null ? r.getUser().getFullName() : "Khách hàng";
+            userAvatar = r.getUser().getAvatar();
+            userEmail = r.getUser().getEmail();
+        }
+        return new ResBookDTO.Review(
+                r.getId(),
+                r.getComment(),
+                r.getRating(),
+                r.getReviewDate(),
+                userName,
+                userAvatar,
+                userEmail);
+    }
+
+    default ResBookDTO.Rating toRating(BookRatingStats stats) {
+        if (stats == null || stats.getReviewCount() <= 0) {
+            return new ResBookDTO.Rating(0, 0, new long[5]);
+        }
+        return new ResBookDTO.Rating(
+                stats.getReviewCount(),
+                (double) stats.getRatingSum() / stats.getReviewCount(),
+                new long[]{stats.getStar1(), stats.getStar2(), stats.getStar3(), stats.getStar4(), stats.getStar5()});
+    }
+
     @Mapping(target = "bookImage", ignore = true)
     @Mapping(target = "category", ignore = true)
     @Mapping(target = "supplier", ignore = true)
@@ -58,7 +99,8 @@ public interface BookMapper {
         if (book.getImage() != null) {
             dto.setBookImage(book.getImage()
                     .stream()
-                    .map(img -> new ResBookDTO.BookImage(book.getId(), img))
+                    .map(img -> new ResBookDTO.BookImage(book.getId(), img,
+                            ImageDerivatives.thumbnailKey(img), ImageDerivatives.mediumKey(img)))
                     .toArray(ResBookDTO.BookImage[]::new));
         }
 
@@ -71,32 +113,6 @@ public interface BookMapper {
                     .toArray(ResBookDTO.Category[]::new));
         }
 
-        // ---------- REVIEW ----------
-        if (book.getReviews() != null) {
-            dto.setReview(book.getReviews()
-                    .stream()
-                    .sorted((r1, r2) -> r2.getReviewDate().compareTo(r1.getReviewDate())) // Sort by date DESC (newest first)
-                    .map(r -> {
-                        String userName = "Khách hàng";
-                        String userAvatar = null;
-                        String userEmail = null;
-                        if (r.getUser() != null) {
-                            userName = r.getUser().getFullName() != null ? r.getUser().getFullName() : "Khách hàng";
-                            userAvatar = r.getUser().getAvatar();
-                            userEmail = r.getUser().getEmail();
-                        }
-                        return new ResBookDTO.Review(
-                                r.getId(), 
-                                r.getComment(), 
-                                r.getRating(), 
-                                r.getReviewDate(),
-                                userName,
-                                userAvatar,
-                                userEmail);
-                    })
-                    .toArray(ResBookDTO.Review[]::new));
-        }
-
         // ---------- SUPPLIER ----------
         Supplier s = book.getSupplier();
         if (s != null) {
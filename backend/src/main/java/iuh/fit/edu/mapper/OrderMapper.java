@@ -22,5 +22,11 @@ public interface OrderMapper {
     @Mapping(target = "userName", source = "user.fullName")
     OrderResponse toOrderResponse(Order order);
 
+    // Dòng hàng được nạp riêng theo lô, không chạm vào collection lazy orderItems
+    @Mapping(target = "userId", source = "user.id")
+    @Mapping(target = "userName", source = "user.fullName")
+    @Mapping(target = "orderItems", ignore = true)
+    OrderResponse toOrderResponseWithoutItems(Order order);
+
     UpdateOrderStatusResponse toUpdateOrderStatusResponse(Order order);
 }
@@ -0,0 +1,44 @@
+package iuh.fit.edu.repository;
+
+import iuh.fit.edu.entity.BookRatingStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface BookRatingStatsRepository extends JpaRepository<BookRatingStats, Long> {
+
+    // Cộng dồn nguyên tử: tạo dòng nếu chưa có, ngược lại cộng delta vào giá trị hiện tại
+    @Modifying
+    @Query(value = "INSERT INTO book_rating_stats " +
+            "(book_id, review_count, rating_sum, star1, star2, star3, star4, star5) " +
+            "VALUES (:bookId, :count, :sum, :s1, :s2, :s3, :s4, :s5) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "review_count = review_count + VALUES(review_count), " +
+            "rating_sum = rating_sum + VALUES(rating_sum), " +
+            "star1 = star1 + VALUES(star1), star2 = star2 + VALUES(star2), star3 = star3 + VALUES(star3), " +
+            "star4 = star4 + VALUES(star4), star5 = star5 + VALUES(star5)",
+            nativeQuery = true)
+    int applyDelta(@Param("bookId") Long bookId, @Param("count") long count, @Param("sum") long sum,
+                   @Param("s1") long s1, @Param("s2") long s2, @Param("s3") long s3,
+                   @Param("s4") long s4, @Param("s5") long s5);
+
+    // Dựng lại từ bảng reviews (dùng khi khởi động lần đầu để đồng bộ dữ liệu cũ). Ghi đè bằng giá trị tính lại
+    // thay vì cộng, nên hai instance cùng chạy không làm lệch số liệu
+    @Modifying
+    @Query(value = "INSERT INTO book_rating_stats " +
+            "(book_id, review_count, rating_sum, star1, star2, star3, star4, star5) " +
+            "SELECT r.book_id, COUNT(*), SUM(r.rating), " +
+            "SUM(r.rating = 1), SUM(r.rating = 2), SUM(r.rating = 3), SUM(r.rating = 4), SUM(r.rating = 5) " +
+            "FROM reviews r GROUP BY r.book_id " +
+            "ON DUPLICATE KEY UPDATE " +
+            "review_count = VALUES(review_count), rating_sum = VALUES(rating_sum), " +
+            "star1 = VALUES(star1), star2 = VALUES(star2), star3 = VALUES(star3), " +
+            "star4 = VALUES(star4), star5 = VALUES(star5)",
+            nativeQuery = true)
+    int rebuildFromReviews();
+}
@@ -1,23 +1,29 @@
 package iuh.fit.edu.repository;
 
 import iuh.fit.edu.entity.Book;
+import iuh.fit.edu.entity.constant.BookStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
    
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book> {
+public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book>, BookRepositoryCustom {
      boolean existsByIsbn(String isbn);
      Optional<Book> findByIsbn(String isbn);
-     
-     // Fetch book with reviews and review users
-     @EntityGraph(attributePaths = {"reviews", "reviews.user"})
-     @Query("SELECT b FROM Book b WHERE b.id = :id")
-     Optional<Book> findByIdWithReviewsAndUsers(@Param("id") Long id);
 
+    @Query("SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns")
+    List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    @Query("SELECT b.id FROM Book b WHERE b.id IN :ids AND b.status IN :statuses")
+    List<Long> findIdsByIdInAndStatusIn(@Param("ids") Collection<Long> ids,
+                                        @Param("statuses") Collection<BookStatus> statuses);
+     
     // 1. ATOMIC REDUCE (Trừ số lượng an toàn)
     // Logic: Chỉ trừ khi stock >= qty.
     // Return: số dòng update thành công (1 nếu thành công, 0 nếu thất bại/hết hàng)
@@ -26,12 +32,25 @@ public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificat
             "where b.id = :id and b.quantity >= :quantity")
     int reduceQuantity(@Param("id") Long id, @Param("quantity") int quantity);
 
+    // Khóa (SELECT ... FOR UPDATE) các sách của một đơn theo thứ tự id tăng dần: mọi checkout cùng khóa theo
+    // một thứ tự nên không thể chờ vòng tròn (deadlock) giữa hai đơn có chung sách
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Book b WHERE b.id IN :ids ORDER BY b.id")
+    List<Book> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
     // 2. ATOMIC RESTORE (Hoàn số lượng khi hủy đơn)
     @Modifying
     @Query("update Book b set b.quantity = b.quantity + :quantity " +
             "where b.id = :id")
     int restoreStock(@Param("id") Long id, @Param("quantity") int quantity);
     
+    @Query("SELECT b.id FROM Book b WHERE b.hotSku = true")
+    List<Long> findHotSkuIds();
+
+    @Modifying
+    @Query("update Book b set b.hotSku = :hotSku where b.id = :id")
+    int updateHotSku(@Param("id") Long id, @Param("hotSku") boolean hotSku);
+
     @Query("SELECT COUNT(b) FROM Book b WHERE b.quantity = 0 and b.status = 'SALE'")
     long countOutOfStockBooks();
     
@@ -41,4 +60,40 @@ public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificat
         @Query("SELECT COUNT(b) FROM Book b WHERE b.createdAt >= :startDate AND b.createdAt <= :endDate")
         long countNewBooksByDateRange(@Param("startDate") java.time.OffsetDateTime startDate, @Param("endDate") java.time.OffsetDateTime endDate);
 
+    // Dữ liệu nhẹ để dựng index tìm kiếm trong bộ nhớ: id, title, author, shortDes, status
+    @Query("SELECT b.id, b.title, b.author, b.shortDes, b.status FROM Book b WHERE b.status IN :statuses")
+    List<Object[]> findSearchFieldsByStatusIn(@Param("statuses") Collection<BookStatus> statuses);
+
+    @Query("SELECT b.id, b.title, b.author, b.shortDes, b.status FROM Book b WHERE b.id IN :ids")
+    List<Object[]> findSearchFieldsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Cặp (bookId, tên danh mục)
+    @Query("SELECT b.id, c.name FROM Book b JOIN b.categories c WHERE b.status IN :statuses")
+    List<Object[]> findCategoryNamesByStatusIn(@Param("statuses") Collection<BookStatus> statuses);
+
+    @Query("SELECT b.id, c.name FROM Book b JOIN b.categories c WHERE b.id IN :ids")
+    List<Object[]> findCategoryNamesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT i FROM Book b JOIN b.image i")
+    List<String> findAllImageKeys();
+
+    // Cặp (bookId, ảnh đại diện): ảnh ở vị trí image_order = 0, giống ảnh đầu tiên BookMapper trả về.
+    // Dùng cho email và lịch sử đơn, không nạp cả collection ảnh EAGER của từng sách
+    @Query("SELECT b.id, i FROM Book b JOIN b.image i WHERE b.id IN :ids AND INDEX(i) = 0")
+    List<Object[]> findFirstImageKeysByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Dữ liệu cho index facet: id, status, sellingPrice, yearOfPublication
+    @Query("SELECT b.id, b.status, b.sellingPrice, b.yearOfPublication FROM Book b WHERE b.status IN :statuses")
+    List<Object[]> findFacetFieldsByStatusIn(@Param("statuses") Collection<BookStatus> statuses);
+
+    @Query("SELECT b.id, b.status, b.sellingPrice, b.yearOfPublication FROM Book b WHERE b.id IN :ids")
+    List<Object[]> findFacetFieldsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Cặp (bookId, categoryId)
+    @Query("SELECT b.id, c.id FROM Book b JOIN b.categories c WHERE b.status IN :statuses")
+    List<Object[]> findCategoryIdsByStatusIn(@Param("statuses") Collection<BookStatus> statuses);
+
+    @Query("SELECT b.id, c.id FROM Book b JOIN b.categories c WHERE b.id IN :ids")
+    List<Object[]> findCategoryIdsByIdIn(@Param("ids") Collection<Long> ids);
+
 }
@@ -0,0 +1,44 @@
+package iuh.fit.edu.repository;
+
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
+import iuh.fit.edu.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * Các truy vấn đọc dạng projection cho danh sách sách, không nạp toàn bộ entity Book
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface BookRepositoryCustom {
+    Page<BookSummaryResponse> findSummaries(Specification<Book> specification, Pageable pageable);
+
+    List<BookSummaryResponse> findSummariesByIds(Collection<Long> ids);
+
+    /**
+     * Trừ kho cho nhiều sách trong một câu UPDATE (CASE theo id), chỉ trừ những dòng còn đủ hàng ngoài phần
+     * tồn kho đã chia cho các node hot SKU
+     *
+     * @param quantities bookId -> số lượng cần trừ
+     * @return số dòng đã trừ, nhỏ hơn quantities.size() nghĩa là có sách không đủ hàng
+     */
+    int reserveStock(SortedMap<Long, Integer> quantities);
+
+    /**
+     * Cộng dồn delta (âm hoặc dương) vào tồn kho của nhiều sách trong một câu UPDATE, dùng khi ghi nhật ký
+     * tồn kho hot SKU xuống DB
+     */
+    int applyStockDeltas(SortedMap<Long, Integer> deltas);
+
+    /**
+     * Nạp lại trạng thái từ DB cho các sách đang được quản lý, sau khi UPDATE hàng loạt (không đi qua
+     * persistence context) đổi dòng của chúng
+     */
+    void refreshAll(Collection<Book> books);
+}
@@ -0,0 +1,183 @@
+package iuh.fit.edu.repository;
+
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
+import iuh.fit.edu.entity.Book;
+import iuh.fit.edu.util.ImageDerivatives;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.*;
+
+/**
+ * Một trang danh sách luôn tốn số truy vấn cố định: 1 truy vấn cột của sách, 1 truy vấn ảnh đầu tiên,
+ * 1 truy vấn bảng tổng hợp đánh giá và (nếu cần) 1 truy vấn đếm.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+    private final EntityManager entityManager;
+
+    public BookRepositoryCustomImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public int reserveStock(SortedMap<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return 0;
+        }
+        String amount = caseById(quantities.size());
+        // Cùng một biểu thức CASE cho SET và điều kiện đủ hàng; phần đã chia cho các node hot SKU không được
+        // trừ ở đây
+        Query query = this.entityManager.createQuery("UPDATE Book b SET b.quantity = b.quantity - " + amount
+                + " WHERE b.id IN :ids AND b.quantity - COALESCE((SELECT SUM(g.quantity) FROM StockGrant g"
+                + " WHERE g.bookId = b.id), 0) >= " + amount);
+        return bindById(query, quantities).executeUpdate();
+    }
+
+    @Override
+    public int applyStockDeltas(SortedMap<Long, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        Query query = this.entityManager.createQuery("UPDATE Book b SET b.quantity = b.quantity + "
+                + caseById(deltas.size()) + " WHERE b.id IN :ids");
+        return bindById(query, deltas).executeUpdate();
+    }
+
+    @Override
+    public void refreshAll(Collection<Book> books) {
+        books.forEach(this.entityManager::refresh);
+    }
+
+    // CASE b.id WHEN :id0 THEN :qty0 ... END
+    private static String caseById(int size) {
+        StringBuilder expression = new StringBuilder("CASE b.id");
+        for (int i = 0; i < size; i++) {
+            expression.append(" WHEN :id").append(i).append(" THEN :qty").append(i);
+        }
+        return expression.append(" END").toString();
+    }
+
+    private static Query bindById(Query query, SortedMap<Long, Integer> values) {
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : values.entrySet()) {
+            query.setParameter("id" + i, entry.getKey());
+            query.setParameter("qty" + i, entry.getValue());
+            i++;
+        }
+        return query.setParameter("ids", values.keySet());
+    }
+
+    @Override
+    public Page<BookSummaryResponse> findSummaries(Specification<Book> specification, Pageable pageable) {
+        CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Book> root = query.from(Book.class);
+        Predicate predicate = specification == null ? null : specification.toPredicate(root, query, cb);
+        query.multiselect(
+                root.get("id").alias("id"),
+                root.get("title").alias("title"),
+                root.get("author").alias("author"),
+                root.get("sellingPrice").alias("sellingPrice"),
+                root.get("quantity").alias("quantity")
+        );
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        TypedQuery<Tuple> typedQuery = this.entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        List<BookSummaryResponse> content = toSummaries(typedQuery.getResultList());
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(specification));
+    }
+
+    @Override
+    public List<BookSummaryResponse> findSummariesByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        List<Tuple> rows = this.entityManager.createQuery(
+                        "SELECT b.id AS id, b.title AS title, b.author AS author, " +
+                                "b.sellingPrice AS sellingPrice, b.quantity AS quantity " +
+                                "FROM Book b WHERE b.id IN :ids", Tuple.class)
+                .setParameter("ids", ids)
+                .getResultList();
+        return toSummaries(rows);
+    }
+
+    private long count(Specification<Book> specification) {
+        CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Book> root = query.from(Book.class);
+        Predicate predicate = specification == null ? null : specification.toPredicate(root, query, cb);
+        query.select(query.isDistinct() ? cb.countDistinct(root) : cb.count(root));
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(Collections.emptyList());
+        return this.entityManager.createQuery(query).getSingleResult();
+    }
+
+    private List<BookSummaryResponse> toSummaries(List<Tuple> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = rows.stream().map(t -> t.get("id", Long.class)).toList();
+
+        // Ảnh đại diện của mỗi sách: ảnh ở vị trí 0 của Book.image
+        Map<Long, String> firstImages = new HashMap<>();
+        this.entityManager.createQuery(
+                        "SELECT b.id, i FROM Book b JOIN b.image i WHERE b.id IN :ids AND INDEX(i) = 0", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(row -> firstImages.put((Long) row[0], (String) row[1]));
+
+        Map<Long, Object[]> ratings = new HashMap<>();
+        this.entityManager.createQuery(
+                        "SELECT s.bookId, s.ratingSum, s.reviewCount FROM BookRatingStats s " +
+                                "WHERE s.bookId IN :ids AND s.reviewCount > 0", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(row -> ratings.put((Long) row[0], row));
+
+        List<BookSummaryResponse> result = new ArrayList<>(rows.size());
+        for (Tuple t : rows) {
+            Long id = t.get("id", Long.class);
+            BookSummaryResponse summary = new BookSummaryResponse();
+            summary.setId(id);
+            summary.setTitle(t.get("title", String.class));
+            summary.setAuthor(t.get("author", String.class));
+            summary.setPrice(t.get("sellingPrice", Double.class));
+            summary.setQuantity(t.get("quantity", Integer.class));
+            summary.setImage(firstImages.get(id));
+            summary.setThumbnail(ImageDerivatives.thumbnailKey(summary.getImage()));
+            Object[] rating = ratings.get(id);
+            if (rating != null) {
+                long reviewCount = ((Number) rating[2]).longValue();
+                summary.setAverageRating(((Number) rating[1]).doubleValue() / reviewCount);
+                summary.setReviewCount(reviewCount);
+            }
+            result.add(summary);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+package iuh.fit.edu.repository;
+
+import iuh.fit.edu.entity.EmailOutbox;
+import iuh.fit.edu.entity.constant.EmailOutboxStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    // Email tới hạn gửi: PENDING tới lượt thử, hoặc SENDING đã quá hạn nhận (worker trước đó bị dừng)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM EmailOutbox e WHERE e.status IN :statuses AND e.nextAttemptAt <= :now ORDER BY e.id")
+    List<EmailOutbox> findDueForUpdate(@Param("statuses") Collection<EmailOutboxStatus> statuses,
+                                       @Param("now") OffsetDateTime now, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = :status, e.nextAttemptAt = :nextAttemptAt WHERE e.id IN :ids")
+    int claim(@Param("ids") Collection<Long> ids, @Param("status") EmailOutboxStatus status,
+              @Param("nextAttemptAt") OffsetDateTime nextAttemptAt);
+
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = :status, e.sentAt = :sentAt, e.attempts = e.attempts + 1, " +
+            "e.lastError = null WHERE e.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("status") EmailOutboxStatus status,
+                 @Param("sentAt") OffsetDateTime sentAt);
+
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = :status, e.attempts = :attempts, e.nextAttemptAt = :nextAttemptAt, " +
+            "e.lastError = :lastError WHERE e.id = :id")
+    int markFailed(@Param("id") Long id, @Param("status") EmailOutboxStatus status, @Param("attempts") int attempts,
+                   @Param("nextAttemptAt") OffsetDateTime nextAttemptAt, @Param("lastError") String lastError);
+
+    boolean existsByOrderIdAndTemplateName(Long orderId, String templateName);
+
+    long countByStatusIn(Collection<EmailOutboxStatus> statuses);
+
+    long countByStatus(EmailOutboxStatus status);
+}
@@ -1,10 +1,58 @@
 package iuh.fit.edu.repository;
 
+import iuh.fit.edu.dto.response.order.OrderEmailView;
 import iuh.fit.edu.entity.OrderItem;
+import iuh.fit.edu.entity.constant.OrderStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface OrderDetailRepository extends JpaRepository<OrderItem, Long> {
-}
 
+    // Cặp (bookId, tổng số lượng đã bán) của các đơn không ở trạng thái loại trừ
+    @Query("SELECT oi.book.id, SUM(oi.quantity) FROM OrderItem oi " +
+            "WHERE oi.order.status <> :excluded GROUP BY oi.book.id")
+    List<Object[]> sumQuantityByBookExcludingStatus(@Param("excluded") OrderStatus excluded);
+
+    // Cặp (bookId, tổng số lượng) của một nhóm đơn, dùng để hoàn kho cả nhóm trong một lượt
+    @Query("SELECT oi.book.id, SUM(oi.quantity) FROM OrderItem oi " +
+            "WHERE oi.order.id IN :orderIds GROUP BY oi.book.id")
+    List<Object[]> sumQuantityByBookForOrders(@Param("orderIds") Collection<Long> orderIds);
+
+    @Query("SELECT oi.order.id AS orderId, b.id AS bookId, b.title AS title, oi.quantity AS quantity, " +
+            "oi.price AS price FROM OrderItem oi JOIN oi.book b WHERE oi.order.id IN :orderIds ORDER BY oi.id")
+    List<OrderEmailView.Line> findEmailLinesByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * Một dòng hàng kèm tóm tắt sách, đọc thẳng cột thay vì nạp entity Book (kéo theo ảnh, nhà cung cấp)
+     */
+    interface HistoryLine {
+        Long getOrderId();
+
+        Long getId();
+
+        Integer getQuantity();
+
+        Double getPrice();
+
+        Long getBookId();
+
+        String getTitle();
+
+        String getAuthor();
+
+        double getSellingPrice();
+
+        int getStock();
+    }
+
+    @Query("SELECT oi.order.id AS orderId, oi.id AS id, oi.quantity AS quantity, oi.price AS price, " +
+            "b.id AS bookId, b.title AS title, b.author AS author, b.sellingPrice AS sellingPrice, b.quantity AS stock " +
+            "FROM OrderItem oi JOIN oi.book b WHERE oi.order.id IN :orderIds ORDER BY oi.id")
+    List<HistoryLine> findHistoryLinesByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+}
@@ -1,23 +1,70 @@
 package iuh.fit.edu.repository;
 
+import iuh.fit.edu.dto.response.order.OrderEmailView;
 import iuh.fit.edu.entity.Order;
+import iuh.fit.edu.entity.constant.OrderStatus;
 import iuh.fit.edu.entity.constant.PaymentMethod;
 import iuh.fit.edu.entity.constant.PaymentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
     Optional<Order> findByOrderCode(String orderCode);
-    List<Order> findByUserIdOrderByOrderDateDesc(Long userId);
-    List<Order> findAllByPaymentMethodAndPaymentStatusAndExpiredAtBefore(PaymentMethod paymentMethod, PaymentStatus paymentStatus, OffsetDateTime now);
+
+    // Khóa đơn khi nhận callback VNPay: worker hết hạn đang hủy đơn thì callback chờ và thấy trạng thái mới
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.orderCode = :orderCode")
+    Optional<Order> findByOrderCodeForUpdate(@Param("orderCode") String orderCode);
+
+    @Query("SELECT o.id AS id, o.orderCode AS orderCode, o.receiverName AS receiverName, " +
+            "o.receiverPhone AS receiverPhone, o.receiverAddress AS receiverAddress, " +
+            "o.receiverEmail AS receiverEmail, o.note AS note, o.orderDate AS orderDate, " +
+            "o.paymentMethod AS paymentMethod, o.status AS status, o.totalPrice AS totalPrice " +
+            "FROM Order o WHERE o.id IN :ids")
+    List<OrderEmailView.Header> findEmailHeadersByIdIn(@Param("ids") Collection<Long> ids);
+    // Chỉ lấy id cho lần quét định kỳ, đi theo idx_orders_expiry thay vì nạp cả đơn và người đặt
+    @Query("SELECT o.id FROM Order o WHERE o.paymentStatus = :paymentStatus AND o.expiredAt < :now " +
+            "AND o.paymentMethod = :method")
+    List<Long> findExpiredIds(@Param("method") PaymentMethod method, @Param("paymentStatus") PaymentStatus paymentStatus,
+                              @Param("now") OffsetDateTime now);
+
+    // Cặp (orderId, expiredAt) của các đơn đang chờ thanh toán, nạp vào hàng đợi hết hạn lúc khởi động
+    @Query("SELECT o.id, o.expiredAt FROM Order o WHERE o.paymentMethod = :method " +
+            "AND o.paymentStatus = :paymentStatus AND o.expiredAt IS NOT NULL")
+    List<Object[]> findPaymentDeadlines(@Param("method") PaymentMethod method,
+                                        @Param("paymentStatus") PaymentStatus paymentStatus);
+
+    // Khóa các đơn còn chưa thanh toán và đã quá hạn trong danh sách, để callback VNPay tới cùng lúc phải chờ
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids AND o.paymentMethod = :method " +
+            "AND o.paymentStatus = :paymentStatus AND o.expiredAt <= :now ORDER BY o.id")
+    List<Order> findExpiredForUpdate(@Param("ids") Collection<Long> ids, @Param("method") PaymentMethod method,
+                                     @Param("paymentStatus") PaymentStatus paymentStatus, @Param("now") OffsetDateTime now);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.orderCode IN :codes AND o.status <> :cancelled ORDER BY o.id")
+    List<Order> findCancellableByCodesForUpdate(@Param("codes") Collection<String> codes,
+                                                @Param("cancelled") OrderStatus cancelled);
+
+    // Xóa persistence context sau khi cập nhật để lần đọc sau trong cùng transaction thấy giá trị mới,
+    // không lấy lại entity cũ đã nạp lúc khóa đơn
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = :status, o.expiredAt = null, o.updateBy = :updateBy, o.updateAt = :now " +
+            "WHERE o.id IN :ids")
+    int updateStatusByIds(@Param("ids") Collection<Long> ids, @Param("status") OrderStatus status,
+                          @Param("updateBy") String updateBy, @Param("now") OffsetDateTime now);
     
     @Query("SELECT COUNT(o) FROM Order o WHERE o.orderDate >= :startDate AND o.orderDate <= :endDate")
     long countOrdersByDateRange(@Param("startDate") OffsetDateTime startDate, @Param("endDate") OffsetDateTime endDate);
@@ -81,6 +128,9 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
                                           @Param("startDate") OffsetDateTime startDate, 
                                           @Param("endDate") OffsetDateTime endDate);
     
+    @Query("SELECT o.status, COUNT(o) FROM Order o WHERE o.user.id = :userId GROUP BY o.status")
+    List<Object[]> countByUserGroupByStatus(@Param("userId") Long userId);
+
     // Check if user has DELIVERED orders containing a specific book
     List<Order> findByUser_EmailAndStatus(String email, iuh.fit.edu.entity.constant.OrderStatus status);
 }
@@ -1,6 +1,9 @@
 package iuh.fit.edu.repository;
 
 import iuh.fit.edu.entity.Review;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -9,4 +12,7 @@ import java.util.Optional;
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, Long> {
     Optional<Review> findByBook_IdAndUser_Email(Long bookId, String email);
+
+    @EntityGraph(attributePaths = {"user"})
+    Page<Review> findByBook_Id(Long bookId, Pageable pageable);
 }
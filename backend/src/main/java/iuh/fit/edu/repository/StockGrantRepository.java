@@ -0,0 +1,62 @@
+package iuh.fit.edu.repository;
+
+import iuh.fit.edu.entity.StockGrant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Repository
+public interface StockGrantRepository extends JpaRepository<StockGrant, Long> {
+
+    Optional<StockGrant> findByBookIdAndNodeId(Long bookId, int nodeId);
+
+    List<StockGrant> findAllByNodeId(int nodeId);
+
+    @Query("SELECT COALESCE(SUM(g.quantity), 0) FROM StockGrant g WHERE g.bookId = :bookId")
+    long sumQuantityByBookId(@Param("bookId") Long bookId);
+
+    // Trả về cặp (bookId, tổng phần đã chia)
+    @Query("SELECT g.bookId, SUM(g.quantity) FROM StockGrant g WHERE g.bookId IN :bookIds GROUP BY g.bookId")
+    List<Object[]> sumQuantityByBookIdIn(@Param("bookIds") Collection<Long> bookIds);
+
+    @Modifying
+    @Query("UPDATE StockGrant g SET g.quantity = g.quantity + :delta WHERE g.bookId = :bookId AND g.nodeId = :nodeId")
+    int addQuantity(@Param("bookId") Long bookId, @Param("nodeId") int nodeId, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE StockGrant g SET g.leaseUntil = :leaseUntil WHERE g.nodeId = :nodeId")
+    int renewLease(@Param("nodeId") int nodeId, @Param("leaseUntil") OffsetDateTime leaseUntil);
+
+    // Node đã ngừng gia hạn: mọi phần của nó đều quá hạn
+    @Query("SELECT g.nodeId FROM StockGrant g WHERE g.nodeId <> :nodeId GROUP BY g.nodeId HAVING MAX(g.leaseUntil) < :before")
+    List<Integer> findExpiredNodeIds(@Param("nodeId") int nodeId, @Param("before") OffsetDateTime before);
+
+    // Sách mà tổng các phần đã chia vượt tồn kho (admin giảm tồn kho, hoàn hàng âm...)
+    @Query("SELECT g.bookId FROM StockGrant g WHERE g.nodeId = :nodeId AND " +
+            "(SELECT b.quantity FROM Book b WHERE b.id = g.bookId) < " +
+            "(SELECT SUM(o.quantity) FROM StockGrant o WHERE o.bookId = g.bookId)")
+    List<Long> findOverAllocatedBookIds(@Param("nodeId") int nodeId);
+
+    @Modifying
+    @Query("DELETE FROM StockGrant g WHERE g.bookId = :bookId AND g.nodeId = :nodeId")
+    int deleteByBookIdAndNodeId(@Param("bookId") Long bookId, @Param("nodeId") int nodeId);
+
+    @Modifying
+    @Query("DELETE FROM StockGrant g WHERE g.nodeId = :nodeId")
+    int deleteAllByNodeId(@Param("nodeId") int nodeId);
+
+    @Modifying
+    @Query("DELETE FROM StockGrant g WHERE g.nodeId = :nodeId AND g.leaseUntil < :before")
+    int deleteExpiredByNodeId(@Param("nodeId") int nodeId, @Param("before") OffsetDateTime before);
+}
@@ -0,0 +1,25 @@
+package iuh.fit.edu.repository;
+
+import iuh.fit.edu.entity.StockJournal;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Repository
+public interface StockJournalRepository extends JpaRepository<StockJournal, Long> {
+
+    // Khóa dòng: node chủ và node đang thu hồi không ghi dồn cùng một dòng hai lần
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<StockJournal> findAllByNodeIdOrderByIdAsc(Integer nodeId, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<StockJournal> findAllByNodeIdIsNullOrderByIdAsc(Pageable pageable);
+}
@@ -0,0 +1,16 @@
+package iuh.fit.edu.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Xuất toàn bộ catalog theo luồng (CSV hoặc NDJSON), bộ nhớ dùng không phụ thuộc số sách
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface BookExportService {
+    void exportCsv(OutputStream out) throws IOException;
+
+    void exportNdjson(OutputStream out) throws IOException;
+}
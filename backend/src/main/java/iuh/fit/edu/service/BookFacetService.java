@@ -0,0 +1,25 @@
+package iuh.fit.edu.service;
+
+import iuh.fit.edu.dto.response.ResultPaginationDTO;
+import iuh.fit.edu.entity.constant.BookStatus;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+
+/**
+ * Lọc sách theo facet (danh mục, trạng thái, khoảng giá, khoảng năm xuất bản) và đếm số sách
+ * của từng giá trị facet bằng bitmap trong bộ nhớ
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface BookFacetService {
+    /**
+     * Các giá trị trong cùng một facet được OR với nhau, giữa các facet là AND.
+     * Tham số null hoặc rỗng nghĩa là không lọc theo facet đó.
+     */
+    ResultPaginationDTO search(Collection<Long> categoryIds, Collection<BookStatus> statuses,
+                               Collection<String> priceRanges, Collection<String> yearRanges, Pageable pageable);
+
+    void rebuild();
+}
@@ -0,0 +1,15 @@
+package iuh.fit.edu.service;
+
+import iuh.fit.edu.dto.response.book.ResBookImportDTO;
+import iuh.fit.edu.exception.IdInvalidException;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Import hàng loạt sách từ file CSV kèm phiếu nhập
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface BookImportService {
+    ResBookImportDTO importCsv(MultipartFile file, String email) throws IdInvalidException;
+}
@@ -0,0 +1,55 @@
+package iuh.fit.edu.service;
+
+import iuh.fit.edu.entity.Book;
+import iuh.fit.edu.entity.Category;
+import iuh.fit.edu.entity.Inventory;
+import iuh.fit.edu.entity.Supplier;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Nạp Category / Supplier / Inventory được tham chiếu bởi một hoặc nhiều sách,
+ * mỗi loại đúng một truy vấn findAllById bất kể số sách.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface BookReferenceResolver {
+
+    /**
+     * @param books các sách chỉ mang id của danh mục / nhà cung cấp / kho (ví dụ từ convertDTOToBook)
+     */
+    References resolve(Collection<Book> books);
+
+    record References(Map<Long, Category> categories,
+                      Map<Long, Supplier> suppliers,
+                      Map<Long, Inventory> inventories) {
+
+        // Bỏ qua id không tồn tại, giữ nguyên thứ tự trong request
+        public List<Category> categoriesOf(Book book) {
+            if (book.getCategories() == null) {
+                return List.of();
+            }
+            return book.getCategories().stream()
+                    .map(Category::getId)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .map(this.categories::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+        }
+
+        public Supplier supplierOf(Book book) {
+            return book.getSupplier() == null || book.getSupplier().getId() == null
+                    ? null : this.suppliers.get(book.getSupplier().getId());
+        }
+
+        public Inventory inventoryOf(Book book) {
+            return book.getInventory() == null || book.getInventory().getId() == null
+                    ? null : this.inventories.get(book.getInventory().getId());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package iuh.fit.edu.service;
+
+import iuh.fit.edu.dto.response.ResultPaginationDTO;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Tìm kiếm toàn văn trên catalog sách bằng index trong bộ nhớ (không phân biệt dấu)
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface BookSearchService {
+    ResultPaginationDTO search(String keyword, Pageable pageable);
+
+    void rebuildIndex();
+
+    int getIndexedCount();
+}
@@ -3,10 +3,12 @@ package iuh.fit.edu.service;
 import iuh.fit.edu.dto.request.book.ReqCreateBookDTO;
 import iuh.fit.edu.dto.request.book.ReqUpdateBookDTO;
 import iuh.fit.edu.dto.request.book.ReviewRequest;
+import iuh.fit.edu.dto.request.file.ReqPresignUploadDTO;
 import iuh.fit.edu.dto.response.ResultPaginationDTO;
 import iuh.fit.edu.dto.response.book.ResBookDTO;
 import iuh.fit.edu.dto.response.book.ResCreateBookDTO;
 import iuh.fit.edu.dto.response.book.ResUpdateBookDTO;
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
 import iuh.fit.edu.entity.Book;
 import iuh.fit.edu.entity.Review;
 import iuh.fit.edu.exception.IdInvalidException;
@@ -29,8 +31,16 @@ public interface BookService {
 
     Book findBookById(Long id);
 
+    ResBookDTO getBookDetail(Long id);
+
     ResultPaginationDTO getAllBooks(Specification<Book> specification, Pageable pageable);
 
+    ResultPaginationDTO getAllBooks(Specification<Book> specification, Pageable pageable, String filter);
+
+    ResultPaginationDTO getBookSummaries(Specification<Book> specification, Pageable pageable, String filter);
+
+    ResultPaginationDTO getAllBooksByCursor(Specification<Book> specification, Pageable pageable, String cursor);
+
     ResBookDTO convertToResBookDTO(Book book);
 
     ResCreateBookDTO convertToResCreateBookDTO(Book book);
@@ -47,10 +57,17 @@ public interface BookService {
     
     java.util.List<String> uploadBookImages(Long bookId, org.springframework.web.multipart.MultipartFile[] images) throws IdInvalidException;
 
+    // Upload ảnh trực tiếp lên storage: cấp URL có chữ ký rồi xác nhận key
+    java.util.List<ResPresignedUploadDTO> presignBookImages(Long bookId, java.util.List<ReqPresignUploadDTO> files) throws IdInvalidException;
+
+    java.util.List<String> attachBookImages(Long bookId, java.util.List<String> keys) throws IdInvalidException;
+
     // Review methods
     Review createReview(Long bookId, String email, ReviewRequest reviewRequest) throws IdInvalidException;
     
     Review updateReview(Long bookId, String email, ReviewRequest reviewRequest) throws IdInvalidException;
     
     void deleteReview(Long bookId, String email) throws IdInvalidException;
+
+    ResultPaginationDTO getReviews(Long bookId, Pageable pageable) throws IdInvalidException;
 }
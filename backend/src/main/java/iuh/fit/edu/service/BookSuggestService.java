@@ -0,0 +1,17 @@
+package iuh.fit.edu.service;
+
+import iuh.fit.edu.dto.response.book.ResBookSuggestionDTO;
+
+import java.util.List;
+
+/**
+ * Gợi ý sách theo tiền tố (title / author) cho ô tìm kiếm, trả lời hoàn toàn từ bộ nhớ
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface BookSuggestService {
+    List<ResBookSuggestionDTO> suggest(String prefix, int limit);
+
+    void rebuild();
+}
@@ -0,0 +1,37 @@
+package iuh.fit.edu.service;
+
+import iuh.fit.edu.dto.response.ResultPaginationDTO;
+import iuh.fit.edu.dto.response.book.ResBookDTO;
+import iuh.fit.edu.dto.response.cache.CacheStatsDTO;
+import iuh.fit.edu.dto.response.cache.CachedJson;
+import iuh.fit.edu.dto.response.cache.CatalogPageKey;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache trong bộ nhớ cho dữ liệu đọc của catalog sách (chi tiết sách và các trang danh sách)
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface CatalogCacheService {
+    ResBookDTO getBook(Long id, Function<Long, ResBookDTO> loader);
+
+    ResultPaginationDTO getPage(CatalogPageKey key, Supplier<ResultPaginationDTO> loader);
+
+    /**
+     * Response JSON cuối cùng (đã bọc ApiResponse) của chi tiết sách, null nếu loader trả về null
+     */
+    CachedJson getBookResponse(Long id, String message, Supplier<Object> loader);
+
+    CachedJson getResponse(String key, String message, Supplier<Object> loader);
+
+    void evictBooks(Collection<Long> ids);
+
+    void evictPages();
+
+    List<CacheStatsDTO> getStats();
+}
@@ -0,0 +1,23 @@
+package iuh.fit.edu.service;
+
+import iuh.fit.edu.dto.response.dashboard.CheckoutAdmissionStatsDTO;
+
+import java.util.function.Supplier;
+
+/**
+ * Giới hạn số checkout chạy đồng thời để DB chỉ nhận số đơn nó kịp commit, phần còn lại xếp hàng FIFO
+ * có giới hạn thời gian chờ
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface CheckoutAdmissionService {
+    /**
+     * Chạy checkout khi tới lượt
+     *
+     * @throws iuh.fit.edu.exception.CheckoutOverloadedException nếu hàng đợi đầy hoặc chờ quá max-wait
+     */
+    <T> T admit(Supplier<T> checkout);
+
+    CheckoutAdmissionStatsDTO getStats();
+}
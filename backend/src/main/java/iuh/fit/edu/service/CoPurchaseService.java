@@ -0,0 +1,17 @@
+package iuh.fit.edu.service;
+
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
+
+import java.util.List;
+
+/**
+ * "Khách hàng cũng mua": sách hay được mua cùng đơn với một sách cho trước
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface CoPurchaseService {
+    List<BookSummaryResponse> getRelatedBooks(Long bookId, int limit);
+
+    void rebuild();
+}
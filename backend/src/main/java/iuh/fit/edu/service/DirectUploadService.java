@@ -0,0 +1,25 @@
+package iuh.fit.edu.service;
+
+import iuh.fit.edu.dto.request.file.ReqPresignUploadDTO;
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
+
+import java.util.List;
+
+/**
+ * Upload ảnh hai bước: cấp URL có chữ ký để client PUT thẳng lên storage, sau đó xác nhận key trước khi
+ * gắn vào sách / người dùng. Server chỉ nhận các request JSON nhỏ.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface DirectUploadService {
+    ResPresignedUploadDTO presignImage(String folder, ReqPresignUploadDTO request);
+
+    /**
+     * Kiểm tra các key đã được upload vào đúng folder, đúng loại ảnh và không vượt kích thước cho phép.
+     * Object sai loại / quá lớn bị xóa khỏi storage.
+     *
+     * @return các key hợp lệ, theo thứ tự đầu vào, không trùng
+     */
+    List<String> confirmImages(String folder, List<String> keys);
+}
@@ -0,0 +1,24 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.service;
+
+import iuh.fit.edu.dto.response.dashboard.EmailOutboxStatsDTO;
+import iuh.fit.edu.entity.Order;
+
+/*
+ * @description Gửi email đơn hàng qua bảng outbox: ghi trong transaction của đơn, worker riêng gửi theo lô
+ * @author: Huu Thai
+ * @date:
+ * @version: 1.0
+ */
+public interface EmailOutboxService {
+    /**
+     * Ghi email vào outbox trong transaction hiện tại, worker được đánh thức sau khi commit. Đơn đã có email
+     * cùng template thì bỏ qua.
+     */
+    void enqueueOrderEmail(Order order, String subject, String templateName);
+
+    EmailOutboxStatsDTO getStats();
+}
@@ -9,13 +9,18 @@ package iuh.fit.edu.service;/*
  * @version: 1.0
  */
 
-import iuh.fit.edu.entity.Order;
+import iuh.fit.edu.dto.response.order.OrderEmailView;
 import org.springframework.scheduling.annotation.Async;
 
 public interface EmailService {
+    /**
+     * Render email từ template với biến order là view đã chốt, không cần transaction
+     */
+    String renderOrderTemplate(String templateName, OrderEmailView order);
+
     void sendEmailSync(String to, String subject, String content, boolean isMultipart, boolean isHtml);
 
     @Async
     void sendEmailFromTemplateSync(String to, String subject,
-                                   String templateName, Order order);
+                                   String templateName, OrderEmailView order);
 }
@@ -16,6 +16,7 @@ import java.util.List;
  */
 public interface EntryFormService {
     ResultPaginationDTO getAllEntryForms(Specification<EntryForm> spec, Pageable pageable);
+    ResultPaginationDTO getAllEntryFormsByCursor(Specification<EntryForm> spec, Pageable pageable, String cursor);
     ResEntryFormDTO convertToResEntryFormDTO(EntryForm entryForm);
     Long getNextInvoiceNumber();
     Integer getTotalInventoryQuantity();
@@ -2,12 +2,35 @@ package iuh.fit.edu.service;
 
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
 
 
+/**
+ * Lưu trữ file trên đĩa cho triển khai on-prem (storage.type=local). Key có dạng folder/uuid-ten-file
+ * giống S3, nhưng file vật lý nằm trong thư mục shard theo hash của key để không thư mục nào chứa quá
+ * nhiều file.
+ */
 public interface FileService {
 
      void createDirectory(String folder) throws URISyntaxException;
 
      String store(MultipartFile file, String folder) throws URISyntaxException, IOException;
+
+     /**
+      * Kiểm tra URL upload do presignUpload cấp: chữ ký khớp key, Content-Type, kích thước và chưa hết hạn
+      */
+     boolean verifyUpload(String key, String contentType, long size, long expires, String signature);
+
+     /**
+      * Ghi nội dung của URL upload đã kiểm tra; body khác kích thước đã ký thì không lưu và ném
+      * IllegalArgumentException
+      */
+     void storeUpload(String key, InputStream content, long size) throws IOException;
+
+     /**
+      * @return đường dẫn vật lý của key, null nếu key không hợp lệ hoặc file không tồn tại
+      */
+     Path locate(String key);
 }
@@ -0,0 +1,23 @@
+package iuh.fit.edu.service;
+
+import java.util.Collection;
+
+/**
+ * Sinh ảnh thumbnail / medium cạnh ảnh gốc trên storage, chạy nền ngoài luồng request
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface ImageDerivativeService {
+    void generateAsync(Collection<String> originalKeys);
+
+    /**
+     * Sinh bù ảnh phái sinh cho các ảnh sách đã có trước khi pipeline tồn tại
+     */
+    void backfill();
+
+    /**
+     * Đưa backfill vào pool resize, trả về false nếu hàng đợi đang đầy
+     */
+    boolean backfillAsync();
+}
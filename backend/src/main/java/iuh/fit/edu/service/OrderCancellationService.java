@@ -0,0 +1,32 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.service;
+
+import java.util.Collection;
+
+/*
+ * @description Hủy đơn theo lô: đổi trạng thái bằng một câu UPDATE, hoàn kho gộp theo sách bằng một câu
+ * UPDATE ... CASE theo thứ tự id sách
+ * @author: Huu Thai
+ * @date:
+ * @version: 1.0
+ */
+public interface OrderCancellationService {
+    int MAX_ORDERS_PER_REQUEST = 1000;
+
+    /**
+     * Hủy các đơn chưa bị hủy trong danh sách mã đơn, mã không tồn tại hoặc đơn đã hủy được bỏ qua
+     *
+     * @return số đơn đã hủy
+     */
+    int cancelOrders(Collection<String> orderCodes, String updatedBy);
+
+    /**
+     * Hủy các đơn VNPay trong danh sách đã quá hạn mà chưa thanh toán
+     *
+     * @return số đơn đã hủy
+     */
+    int expireOrders(Collection<Long> orderIds);
+}
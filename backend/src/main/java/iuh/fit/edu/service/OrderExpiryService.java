@@ -0,0 +1,18 @@
+package iuh.fit.edu.service;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Hủy đơn VNPay đúng hạn thanh toán thay vì quét bảng orders liên tục
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface OrderExpiryService {
+    void schedule(Long orderId, OffsetDateTime expiredAt);
+
+    /**
+     * Số đơn đang chờ tới hạn trong bộ nhớ
+     */
+    int pending();
+}
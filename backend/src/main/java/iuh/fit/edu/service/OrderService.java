@@ -7,6 +7,7 @@ import iuh.fit.edu.dto.response.ResultPaginationDTO;
 import iuh.fit.edu.dto.response.order.OrderResponse;
 import iuh.fit.edu.dto.response.order.UpdateOrderStatusResponse;
 import iuh.fit.edu.entity.Order;
+import iuh.fit.edu.entity.constant.OrderStatus;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -21,14 +22,25 @@ public interface OrderService {
     PaymentResponse confirmOrder(Map<String, String> params);
 
     @Transactional
-    List<Order> getExpiredOrders();
+    List<Long> getExpiredOrderIds();
 
     void cancelOrder(String orderCode);
 
     ResultPaginationDTO getAllOrder(Specification<Order> specification, Pageable pageable);
 
+    ResultPaginationDTO getAllOrderByCursor(Specification<Order> specification, Pageable pageable, String cursor);
+
     OrderResponse getOrderById(Long orderId);
-    List<OrderResponse> getOrdersByEmail(String email);
+    /**
+     * Lịch sử đơn của khách, mới nhất trước, phân trang keyset trên (orderDate, id).
+     * status null = mọi trạng thái, keyword là mã đơn (một phần) hoặc ngày đặt dd/MM/yyyy
+     */
+    ResultPaginationDTO getOrdersByEmail(String email, OrderStatus status, String keyword, int size, String cursor);
+
+    /**
+     * Số đơn của khách theo từng trạng thái, khóa ALL là tổng
+     */
+    Map<String, Long> countOrdersByEmail(String email);
 
     Object createOrder(String email, OrderRequest request, HttpServletRequest httpServletRequest);
 
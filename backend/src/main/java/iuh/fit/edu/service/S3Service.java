@@ -1,8 +1,49 @@
 package iuh.fit.edu.service;
 
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface S3Service {
     String uploadFile(MultipartFile file, String folder);
+
+    /**
+     * Upload song song nhiều file vào cùng folder. Nếu có file lỗi thì xóa các file đã upload
+     * trong lần gọi này rồi ném lỗi, không để lại object mồ côi trên bucket
+     *
+     * @return key của từng file theo đúng thứ tự đầu vào
+     */
+    List<String> uploadFiles(List<MultipartFile> files, String folder);
+
+    /**
+     * Xóa các file cùng ảnh phái sinh (thumbnail / medium) của chúng nếu có
+     */
+    void deleteFiles(Collection<String> keys);
+
+    byte[] downloadFile(String key);
+
+    /**
+     * Ghi nội dung vào đúng key cho trước (dùng cho ảnh phái sinh), không phát sự kiện upload
+     */
+    void putFile(String key, byte[] content, String contentType);
+
+    boolean exists(String key);
+
+    /**
+     * Cấp URL PUT có chữ ký để client upload thẳng lên storage. Content-Type và Content-Length nằm trong
+     * chữ ký nên client không thể gửi file khác loại hoặc khác kích thước đã khai báo
+     */
+    ResPresignedUploadDTO presignUpload(String folder, String fileName, String contentType, long size);
+
+    /**
+     * @return thông tin object đã lưu, null nếu chưa có
+     */
+    StoredObject getObjectInfo(String key);
+
+    record StoredObject(long size, String contentType) {
+    }
+
     String getFileUrl(String fileName);
 }
@@ -0,0 +1,49 @@
+package iuh.fit.edu.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Chế độ flash sale cho sách bán chạy (hot SKU): mỗi instance nhận một phần tồn kho (stock_grant) và giữ
+ * hàng trong bộ đếm bộ nhớ của phần đó, mỗi lần giữ hàng chỉ ghi một dòng nhật ký trong transaction của đơn,
+ * còn books.quantity được cập nhật dồn theo lô. Sách thường vẫn trừ kho trực tiếp trên DB, chỉ trên phần
+ * chưa chia cho node nào.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+public interface StockLedgerService {
+    boolean isHot(Long bookId);
+
+    /**
+     * Giữ hàng cho các sách hot SKU, tất cả hoặc không. Phải gọi trong transaction tạo đơn, trước khi khóa
+     * dòng sách nào: nhật ký được ghi cùng transaction, hàng được trả lại bộ đếm nếu transaction rollback,
+     * và khi bộ đếm hết, phần tồn kho mới được xin trong một transaction riêng có khóa dòng sách.
+     *
+     * @return bookId -> số lượng còn lại của những sách không đủ hàng, rỗng nếu đã giữ thành công
+     */
+    Map<Long, Integer> reserve(SortedMap<Long, Integer> quantities, String orderCode);
+
+    /**
+     * Hoàn hàng khi hủy đơn: cộng thẳng vào books.quantity bằng một câu UPDATE, phần hoàn thành tồn kho tự
+     * do cho mọi node
+     *
+     * @param quantities bookId -> số lượng hoàn
+     */
+    void restoreAll(SortedMap<Long, Integer> quantities, String reference);
+
+    /**
+     * Tổng phần tồn kho đã chia cho các node của từng sách, sách chưa chia không có trong map
+     */
+    Map<Long, Integer> grantedQuantities(Collection<Long> bookIds);
+
+    void setHot(Long bookId, boolean hot);
+
+    /**
+     * Ghi toàn bộ nhật ký của node này xuống books.quantity và phần tồn kho của node
+     *
+     * @return số dòng nhật ký đã áp dụng
+     */
+    int flush();
+}
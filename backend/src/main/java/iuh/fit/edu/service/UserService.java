@@ -1,8 +1,10 @@
 package iuh.fit.edu.service;
 
+import iuh.fit.edu.dto.request.file.ReqPresignUploadDTO;
 import iuh.fit.edu.dto.request.user.CreateUserRequest;
 import iuh.fit.edu.dto.request.user.UpdateUserRequest;
 import iuh.fit.edu.dto.response.account.RegisterResponse;
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
 import iuh.fit.edu.dto.response.user.UserResponseById;
 import iuh.fit.edu.dto.response.user.UsersResponse;
 import iuh.fit.edu.entity.User;
@@ -17,4 +19,7 @@ public interface UserService {
     UsersResponse findAll(String keyword, String sortBy, String sortDirection, String role, String status);
     String getAvatarUrl(String filename);
     String uploadAvatar(MultipartFile avatar);
+    ResPresignedUploadDTO presignAvatar(ReqPresignUploadDTO request);
+    // attach = false khi admin upload avatar cho tài khoản sắp tạo, chỉ kiểm tra key rồi trả về
+    String confirmAvatar(String email, String key, boolean attach);
 }
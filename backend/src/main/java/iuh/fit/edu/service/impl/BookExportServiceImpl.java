@@ -0,0 +1,150 @@
+package iuh.fit.edu.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.edu.service.BookExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Đọc bảng books bằng cursor chỉ-tiến (fetchSize > 0 khiến MariaDB Connector/J stream từng lô
+ * thay vì nạp cả result set) và ghi ngay từng dòng ra response. Danh mục và ảnh được gộp bằng
+ * GROUP_CONCAT trong subquery tương quan nên mỗi sách đúng một dòng, không có entity hay DTO trung gian.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class BookExportServiceImpl implements BookExportService {
+    private static final String EXPORT_SQL = "SELECT b.isbn, b.title, b.author, b.selling_price, b.quantity, b.status, " +
+            "(SELECT GROUP_CONCAT(c.name ORDER BY c.name SEPARATOR '|') FROM book_categories bc " +
+            "JOIN categories c ON c.id = bc.category_id WHERE bc.book_id = b.id) AS categories, " +
+            "(SELECT GROUP_CONCAT(i.image_path ORDER BY i.image_order SEPARATOR '|') FROM book_images i WHERE i.book_id = b.id) AS images " +
+            "FROM books b ORDER BY b.id";
+    private static final String CSV_HEADER = "isbn,title,author,price,quantity,status,categories,images";
+    private static final int FLUSH_EVERY = 1000;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public BookExportServiceImpl(DataSource dataSource, ObjectMapper objectMapper,
+                                 @Value("${catalog.export.fetch-size:1000}") int fetchSize) {
+        // JdbcTemplate riêng để fetchSize không ảnh hưởng các truy vấn khác
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void exportCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        long start = System.currentTimeMillis();
+        long[] rows = {0};
+        stream(rs -> {
+            writeCsvField(writer, rs.getString(1));
+            writer.write(',');
+            writeCsvField(writer, rs.getString(2));
+            writer.write(',');
+            writeCsvField(writer, rs.getString(3));
+            writer.write(',');
+            writer.write(Double.toString(rs.getDouble(4)));
+            writer.write(',');
+            writer.write(Integer.toString(rs.getInt(5)));
+            writer.write(',');
+            writeCsvField(writer, rs.getString(6));
+            writer.write(',');
+            writeCsvField(writer, rs.getString(7));
+            writer.write(',');
+            writeCsvField(writer, rs.getString(8));
+            writer.write('\n');
+            if (++rows[0] % FLUSH_EVERY == 0) {
+                writer.flush();
+            }
+        });
+        writer.flush();
+        log.info("[BookExport] Streamed {} books as CSV in {} ms", rows[0], System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void exportNdjson(OutputStream out) throws IOException {
+        JsonGenerator generator = this.objectMapper.getFactory().createGenerator(out);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+        long start = System.currentTimeMillis();
+        long[] rows = {0};
+        stream(rs -> {
+            generator.writeStartObject();
+            generator.writeStringField("isbn", rs.getString(1));
+            generator.writeStringField("title", rs.getString(2));
+            generator.writeStringField("author", rs.getString(3));
+            generator.writeNumberField("price", rs.getDouble(4));
+            generator.writeNumberField("quantity", rs.getInt(5));
+            generator.writeStringField("status", rs.getString(6));
+            writeArrayField(generator, "categories", rs.getString(7));
+            writeArrayField(generator, "images", rs.getString(8));
+            generator.writeEndObject();
+            if (++rows[0] % FLUSH_EVERY == 0) {
+                generator.flush();
+            }
+        });
+        generator.writeRaw('\n');
+        generator.flush();
+        log.info("[BookExport] Streamed {} books as NDJSON in {} ms", rows[0], System.currentTimeMillis() - start);
+    }
+
+    private void stream(RowWriter rowWriter) throws IOException {
+        try {
+            this.streamingJdbcTemplate.query(EXPORT_SQL, rs -> {
+                try {
+                    rowWriter.write(rs);
+                } catch (IOException e) {
+                    // Client ngắt kết nối: dừng đọc cursor, JdbcTemplate sẽ đóng result set
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeArrayField(JsonGenerator generator, String name, String joined) throws IOException {
+        generator.writeArrayFieldStart(name);
+        if (joined != null && !joined.isEmpty()) {
+            for (String value : joined.split("\\|")) {
+                generator.writeString(value);
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+}
@@ -0,0 +1,322 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.response.ResultPaginationDTO;
+import iuh.fit.edu.dto.response.book.ResFacetCountDTO;
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
+import iuh.fit.edu.entity.constant.BookStatus;
+import iuh.fit.edu.event.BookChangedEvent;
+import iuh.fit.edu.repository.BookRepository;
+import iuh.fit.edu.service.BookFacetService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Index cột trong bộ nhớ: mỗi sách đang bán chiếm một slot, mỗi giá trị facet là một BitSet trên các slot.
+ * Lọc = AND giữa các facet (OR trong cùng facet), đếm facet = cardinality của giao bitmap,
+ * không cần join qua book_categories. Chỉ nội dung của trang kết quả mới được đọc từ DB.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookFacetServiceImpl implements BookFacetService {
+    private static final List<BookStatus> LISTED_STATUSES = List.of(BookStatus.SALE, BookStatus.OUT_STOCK);
+    // Mốc giá (VND) chia các khoảng: [0, 50k), [50k, 100k), ..., [500k, +)
+    private static final long[] PRICE_BOUNDS = {50_000, 100_000, 200_000, 500_000};
+    private static final int ID_CHUNK_SIZE = 1000;
+
+    private static final String FACET_CATEGORY = "category";
+    private static final String FACET_STATUS = "status";
+    private static final String FACET_PRICE = "price";
+    private static final String FACET_YEAR = "year";
+
+    private final BookRepository bookRepository;
+
+    private volatile FacetIndex index = new FacetIndex();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Override
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Long, List<Long>> categoryIds =
+                groupCategoryIds(this.bookRepository.findCategoryIdsByStatusIn(LISTED_STATUSES));
+        FacetIndex fresh = new FacetIndex();
+        for (Object[] row : this.bookRepository.findFacetFieldsByStatusIn(LISTED_STATUSES)) {
+            fresh.put(toRow(row, categoryIds));
+        }
+        this.index = fresh;
+        log.info("[BookFacet] Indexed {} books in {} ms", fresh.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.stockOnly()) {
+            // Index không chứa số lượng tồn kho
+            return;
+        }
+        List<Long> ids = new ArrayList<>(event.bookIds());
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+            Map<Long, List<Long>> categoryIds = groupCategoryIds(this.bookRepository.findCategoryIdsByIdIn(chunk));
+            Set<Long> missing = new HashSet<>(chunk);
+            FacetIndex current = this.index;
+            for (Object[] row : this.bookRepository.findFacetFieldsByIdIn(chunk)) {
+                Row parsed = toRow(row, categoryIds);
+                missing.remove(parsed.id());
+                if (LISTED_STATUSES.contains(parsed.status())) {
+                    current.put(parsed);
+                } else {
+                    current.remove(parsed.id());
+                }
+            }
+            missing.forEach(current::remove);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResultPaginationDTO search(Collection<Long> categoryIds, Collection<BookStatus> statuses,
+                                      Collection<String> priceRanges, Collection<String> yearRanges,
+                                      Pageable pageable) {
+        Map<String, Collection<String>> selected = new HashMap<>();
+        if (categoryIds != null && !categoryIds.isEmpty()) {
+            selected.put(FACET_CATEGORY, categoryIds.stream().map(String::valueOf).toList());
+        }
+        if (statuses != null && !statuses.isEmpty()) {
+            selected.put(FACET_STATUS, statuses.stream().map(Enum::name).toList());
+        }
+        if (priceRanges != null && !priceRanges.isEmpty()) {
+            selected.put(FACET_PRICE, priceRanges);
+        }
+        if (yearRanges != null && !yearRanges.isEmpty()) {
+            selected.put(FACET_YEAR, yearRanges);
+        }
+
+        FacetResult result = this.index.query(selected, comparatorFor(pageable.getSort()),
+                (int) pageable.getOffset(), pageable.getPageSize());
+
+        // Giữ nguyên thứ tự đã sắp xếp trong index
+        Map<Long, BookSummaryResponse> books = this.bookRepository.findSummariesByIds(result.pageIds()).stream()
+                .collect(Collectors.toMap(BookSummaryResponse::getId, Function.identity()));
+
+        ResultPaginationDTO rs = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta mt = new ResultPaginationDTO.Meta();
+        mt.setPage(pageable.getPageNumber() + 1);
+        mt.setPageSize(pageable.getPageSize());
+        mt.setPages((int) Math.ceil((double) result.total() / pageable.getPageSize()));
+        mt.setTotal(result.total());
+        rs.setMeta(mt);
+        rs.setResult(result.pageIds().stream().map(books::get).filter(Objects::nonNull).toList());
+        rs.setFacets(result.facets());
+        return rs;
+    }
+
+    private Comparator<Row> comparatorFor(Sort sort) {
+        Sort.Order order = sort.stream().findFirst().orElse(Sort.Order.asc("id"));
+        Comparator<Row> comparator = switch (order.getProperty()) {
+            case "id" -> Comparator.comparingLong(Row::id);
+            case "sellingPrice" -> Comparator.comparingDouble(Row::price);
+            case "yearOfPublication" -> Comparator.comparingInt(Row::year);
+            default -> throw new IllegalArgumentException("Không hỗ trợ sắp xếp theo " + order.getProperty());
+        };
+        if (order.isDescending()) {
+            comparator = comparator.reversed();
+        }
+        return comparator.thenComparingLong(Row::id);
+    }
+
+    private Row toRow(Object[] row, Map<Long, List<Long>> categoryIds) {
+        Long id = (Long) row[0];
+        return new Row(id, (BookStatus) row[1], ((Number) row[2]).doubleValue(), ((Number) row[3]).intValue(),
+                categoryIds.getOrDefault(id, List.of()));
+    }
+
+    private Map<Long, List<Long>> groupCategoryIds(List<Object[]> rows) {
+        Map<Long, List<Long>> result = new HashMap<>();
+        for (Object[] row : rows) {
+            result.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((Long) row[1]);
+        }
+        return result;
+    }
+
+    private static String priceBucket(double price) {
+        long lower = 0;
+        for (long bound : PRICE_BOUNDS) {
+            if (price < bound) {
+                return lower + "-" + bound;
+            }
+            lower = bound;
+        }
+        return lower + "+";
+    }
+
+    private static String yearBucket(int year) {
+        if (year <= 0) {
+            return "unknown";
+        }
+        int decade = year / 10 * 10;
+        return decade + "-" + (decade + 9);
+    }
+
+    private record Row(long id, BookStatus status, double price, int year, List<Long> categoryIds) {
+
+        Map<String, List<String>> facetValues() {
+            return Map.of(
+                    FACET_CATEGORY, categoryIds.stream().map(String::valueOf).toList(),
+                    FACET_STATUS, List.of(status.name()),
+                    FACET_PRICE, List.of(priceBucket(price)),
+                    FACET_YEAR, List.of(yearBucket(year))
+            );
+        }
+    }
+
+    private record FacetResult(List<Long> pageIds, long total, Map<String, List<ResFacetCountDTO>> facets) {
+    }
+
+    private static final class FacetIndex {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, Integer> slots = new HashMap<>();
+        private final List<Row> rows = new ArrayList<>();
+        private final Deque<Integer> freeSlots = new ArrayDeque<>();
+        private final BitSet live = new BitSet();
+        // facet -> giá trị -> bitmap các slot có giá trị đó
+        private final Map<String, Map<String, BitSet>> bitmaps = new LinkedHashMap<>();
+
+        FacetIndex() {
+            for (String facet : List.of(FACET_CATEGORY, FACET_STATUS, FACET_PRICE, FACET_YEAR)) {
+                bitmaps.put(facet, new HashMap<>());
+            }
+        }
+
+        void put(Row row) {
+            lock.writeLock().lock();
+            try {
+                removeUnlocked(row.id());
+                int slot;
+                if (freeSlots.isEmpty()) {
+                    slot = rows.size();
+                    rows.add(row);
+                } else {
+                    slot = freeSlots.pop();
+                    rows.set(slot, row);
+                }
+                slots.put(row.id(), slot);
+                live.set(slot);
+                row.facetValues().forEach((facet, values) -> values.forEach(value ->
+                        bitmaps.get(facet).computeIfAbsent(value, v -> new BitSet()).set(slot)));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Long id) {
+            lock.writeLock().lock();
+            try {
+                removeUnlocked(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeUnlocked(Long id) {
+            Integer slot = slots.remove(id);
+            if (slot == null) {
+                return;
+            }
+            Row old = rows.set(slot, null);
+            live.clear(slot);
+            old.facetValues().forEach((facet, values) -> values.forEach(value -> {
+                Map<String, BitSet> byValue = bitmaps.get(facet);
+                BitSet bits = byValue.get(value);
+                if (bits != null) {
+                    bits.clear(slot);
+                    if (bits.isEmpty()) {
+                        byValue.remove(value);
+                    }
+                }
+            }));
+            freeSlots.push(slot);
+        }
+
+        FacetResult query(Map<String, Collection<String>> selected, Comparator<Row> order, int offset, int size) {
+            lock.readLock().lock();
+            try {
+                // Hợp các giá trị được chọn trong từng facet
+                Map<String, BitSet> unions = new HashMap<>();
+                selected.forEach((facet, values) -> {
+                    BitSet union = new BitSet();
+                    for (String value : values) {
+                        BitSet bits = bitmaps.get(facet).get(value);
+                        if (bits != null) {
+                            union.or(bits);
+                        }
+                    }
+                    unions.put(facet, union);
+                });
+
+                BitSet matched = (BitSet) live.clone();
+                unions.values().forEach(matched::and);
+
+                // Đếm facet kiểu disjunctive: bỏ điều kiện của chính facet đó để người dùng thấy
+                // số lượng nếu chọn thêm một giá trị khác trong cùng facet
+                Map<String, List<ResFacetCountDTO>> facets = new LinkedHashMap<>();
+                for (Map.Entry<String, Map<String, BitSet>> facet : bitmaps.entrySet()) {
+                    BitSet base = (BitSet) live.clone();
+                    unions.forEach((name, union) -> {
+                        if (!name.equals(facet.getKey())) {
+                            base.and(union);
+                        }
+                    });
+                    List<ResFacetCountDTO> counts = new ArrayList<>();
+                    facet.getValue().forEach((value, bits) -> {
+                        BitSet intersection = (BitSet) bits.clone();
+                        intersection.and(base);
+                        counts.add(new ResFacetCountDTO(value, intersection.cardinality()));
+                    });
+                    counts.sort(Comparator.comparingLong(ResFacetCountDTO::getCount).reversed()
+                            .thenComparing(ResFacetCountDTO::getValue));
+                    facets.put(facet.getKey(), counts);
+                }
+
+                List<Row> hits = new ArrayList<>(matched.cardinality());
+                for (int slot = matched.nextSetBit(0); slot >= 0; slot = matched.nextSetBit(slot + 1)) {
+                    hits.add(rows.get(slot));
+                }
+                hits.sort(order);
+                int from = Math.min(offset, hits.size());
+                int to = Math.min(from + size, hits.size());
+                List<Long> pageIds = hits.subList(from, to).stream().map(Row::id).toList();
+                return new FacetResult(pageIds, hits.size(), facets);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return slots.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.response.book.ResBookImportDTO;
+import iuh.fit.edu.entity.*;
+import iuh.fit.edu.entity.constant.BookStatus;
+import iuh.fit.edu.event.BookChangedEvent;
+import iuh.fit.edu.exception.IdInvalidException;
+import iuh.fit.edu.repository.BookRepository;
+import iuh.fit.edu.repository.UserRepository;
+import iuh.fit.edu.service.BookImportService;
+import iuh.fit.edu.service.BookReferenceResolver;
+import iuh.fit.edu.util.CsvReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Đọc CSV theo luồng, gom từng chunk rồi ghi bằng JDBC batch: mỗi chunk tốn một lượt kiểm tra ISBN,
+ * một lượt nạp tham chiếu qua BookReferenceResolver và một transaction gồm vài câu batch
+ * (books, book_images, book_categories, một phiếu nhập và chi tiết phiếu nhập, cộng tồn kho).
+ * <p>
+ * Cột CSV (dòng đầu là header, không phân biệt hoa thường): isbn, title, author, yearOfPublication,
+ * shortDes, description, sellingPrice, importPrice, status, quantity, images, categoryIds, supplierId,
+ * inventoryId. images và categoryIds phân tách bằng '|'.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class BookImportServiceImpl implements BookImportService {
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final Pattern ISBN_PATTERN = Pattern.compile("^[0-9-]{10,17}$");
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final List<String> REQUIRED_COLUMNS =
+            List.of("isbn", "title", "author", "yearofpublication", "sellingprice", "importprice");
+
+    private static final String INSERT_BOOK = "INSERT INTO books " +
+            "(isbn, title, author, year_of_publication, short_des, description, selling_price, import_price, " +
+            "status, created_at, created_by, quantity, supplier_id, inventory_id, hot_sku) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_IMAGE = "INSERT INTO book_images (book_id, image_path, image_order) VALUES (?, ?, ?)";
+    private static final String INSERT_CATEGORY = "INSERT INTO book_categories (book_id, category_id) VALUES (?, ?)";
+    private static final String INSERT_ENTRY_FORM = "INSERT INTO entry_forms " +
+            "(total_quantity, total_price, created_at, user_id) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_ENTRY_FORM_DETAIL = "INSERT INTO entry_form_details " +
+            "(quantity, unit_price, book_id, entry_form_id) VALUES (?, ?, ?, ?)";
+    private static final String INCREASE_INVENTORY = "UPDATE inventories SET quantity = quantity + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookRepository bookRepository;
+    private final UserRepository userRepository;
+    private final BookReferenceResolver bookReferenceResolver;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+
+    public BookImportServiceImpl(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                 BookRepository bookRepository, UserRepository userRepository,
+                                 BookReferenceResolver bookReferenceResolver, ApplicationEventPublisher eventPublisher,
+                                 @Value("${catalog.import.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.bookRepository = bookRepository;
+        this.userRepository = userRepository;
+        this.bookReferenceResolver = bookReferenceResolver;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public ResBookImportDTO importCsv(MultipartFile file, String email) throws IdInvalidException {
+        if (file == null || file.isEmpty()) {
+            throw new IdInvalidException("File CSV không được để trống");
+        }
+        User user = this.userRepository.findByEmail(email);
+        if (user == null) {
+            throw new IdInvalidException("User không tồn tại");
+        }
+
+        long start = System.nanoTime();
+        ResBookImportDTO report = new ResBookImportDTO();
+        Set<String> seenIsbns = new HashSet<>();
+        try (CsvReader csv = new CsvReader(new BufferedReader(
+                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)))) {
+            Map<String, Integer> header = readHeader(csv);
+            List<ImportRow> chunk = new ArrayList<>(this.chunkSize);
+            List<String> fields;
+            while ((fields = csv.next()) != null) {
+                report.setTotalRows(report.getTotalRows() + 1);
+                long line = csv.getRecordLine();
+                String isbn = field(fields, header, "isbn");
+                try {
+                    ImportRow row = parse(line, fields, header);
+                    if (!seenIsbns.add(row.book().getIsbn())) {
+                        throw new IllegalArgumentException("ISBN bị trùng trong file");
+                    }
+                    chunk.add(row);
+                } catch (IllegalArgumentException e) {
+                    fail(report, line, isbn, e.getMessage());
+                }
+                if (chunk.size() == this.chunkSize) {
+                    flush(chunk, user, email, report);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                flush(chunk, user, email, report);
+            }
+        } catch (IOException e) {
+            throw new IdInvalidException("Không đọc được file CSV: " + e.getMessage());
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        report.setElapsedMs(elapsedNanos / 1_000_000);
+        report.setRowsPerSecond(elapsedNanos == 0 ? 0 : report.getImportedRows() * 1_000_000_000.0 / elapsedNanos);
+        log.info("[BookImport] {} rows, {} imported, {} failed in {} ms ({} rows/s)",
+                report.getTotalRows(), report.getImportedRows(), report.getFailedRows(),
+                report.getElapsedMs(), String.format("%.1f", report.getRowsPerSecond()));
+        return report;
+    }
+
+    private Map<String, Integer> readHeader(CsvReader csv) throws IOException, IdInvalidException {
+        List<String> columns = csv.next();
+        if (columns == null) {
+            throw new IdInvalidException("File CSV không có dữ liệu");
+        }
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            // Bỏ BOM do Excel thêm vào đầu file UTF-8
+            String name = columns.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+            header.put(name, i);
+        }
+        for (String required : REQUIRED_COLUMNS) {
+            if (!header.containsKey(required)) {
+                throw new IdInvalidException("File CSV thiếu cột " + required);
+            }
+        }
+        return header;
+    }
+
+    private ImportRow parse(long line, List<String> fields, Map<String, Integer> header) {
+        Book book = new Book();
+        String isbn = field(fields, header, "isbn");
+        if (isbn == null || !ISBN_PATTERN.matcher(isbn).matches()) {
+            throw new IllegalArgumentException("ISBN không hợp lệ (phải là 10-13 chữ số, có thể có dấu gạch ngang)");
+        }
+        book.setIsbn(isbn);
+        book.setTitle(requireText(fields, header, "title", "Tên sách", 500));
+        book.setAuthor(requireText(fields, header, "author", "Tên tác giả", 200));
+
+        int year = parseInt(field(fields, header, "yearofpublication"), "Năm xuất bản");
+        if (year < 1900 || year > Year.now(ZONE).getValue()) {
+            throw new IllegalArgumentException("Năm xuất bản phải từ 1900 đến năm hiện tại");
+        }
+        book.setYearOfPublication(year);
+
+        String shortDes = field(fields, header, "shortdes");
+        if (shortDes != null && shortDes.length() > 1000) {
+            throw new IllegalArgumentException("Mô tả ngắn không quá 1000 ký tự");
+        }
+        book.setShortDes(shortDes);
+        book.setDescription(field(fields, header, "description"));
+
+        book.setSellingPrice(parseDouble(field(fields, header, "sellingprice"), "Giá bán"));
+        book.setImportPrice(parseDouble(field(fields, header, "importprice"), "Giá nhập"));
+        if (book.getSellingPrice() < 1 || book.getImportPrice() < 1) {
+            throw new IllegalArgumentException("Giá bán và giá nhập phải lớn hơn 0");
+        }
+
+        String status = field(fields, header, "status");
+        try {
+            book.setStatus(status == null ? BookStatus.SALE : BookStatus.valueOf(status.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Trạng thái không hợp lệ: " + status);
+        }
+
+        String quantity = field(fields, header, "quantity");
+        book.setQuantity(quantity == null ? 0 : parseInt(quantity, "Số lượng"));
+        if (book.getQuantity() < 0) {
+            throw new IllegalArgumentException("Số lượng phải lớn hơn hoặc bằng 0");
+        }
+
+        book.setImage(split(field(fields, header, "images")));
+        List<Category> categories = new ArrayList<>();
+        for (String id : split(field(fields, header, "categoryids"))) {
+            Category category = new Category();
+            category.setId(parseLong(id, "Mã danh mục"));
+            categories.add(category);
+        }
+        book.setCategories(categories);
+
+        String supplierId = field(fields, header, "supplierid");
+        if (supplierId != null) {
+            Supplier supplier = new Supplier();
+            supplier.setId(parseLong(supplierId, "Mã nhà cung cấp"));
+            book.setSupplier(supplier);
+        }
+        String inventoryId = field(fields, header, "inventoryid");
+        if (inventoryId != null) {
+            Inventory inventory = new Inventory();
+            inventory.setId(parseLong(inventoryId, "Mã kho"));
+            book.setInventory(inventory);
+        }
+        return new ImportRow(line, book);
+    }
+
+    private void flush(List<ImportRow> chunk, User user, String email, ResBookImportDTO report) {
+        // Một truy vấn kiểm tra ISBN đã tồn tại cho cả chunk
+        Set<String> existing = new HashSet<>(this.bookRepository.findExistingIsbns(
+                chunk.stream().map(row -> row.book().getIsbn()).toList()));
+        BookReferenceResolver.References references =
+                this.bookReferenceResolver.resolve(chunk.stream().map(ImportRow::book).toList());
+
+        List<ImportRow> valid = new ArrayList<>(chunk.size());
+        for (ImportRow row : chunk) {
+            Book book = row.book();
+            String error = null;
+            if (existing.contains(book.getIsbn())) {
+                error = "ISBN đã tồn tại";
+            } else if (references.categoriesOf(book).size() != book.getCategories().size()) {
+                error = "Có danh mục không tồn tại";
+            } else if (book.getSupplier() != null && references.supplierOf(book) == null) {
+                error = "Nhà cung cấp không tồn tại";
+            } else if (book.getInventory() != null && references.inventoryOf(book) == null) {
+                error = "Kho không tồn tại";
+            }
+            if (error != null) {
+                fail(report, row.line(), book.getIsbn(), error);
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<Long> ids = this.transactionTemplate.execute(status -> insertChunk(valid, user, email));
+            report.setImportedRows(report.getImportedRows() + valid.size());
+            if (valid.stream().anyMatch(row -> row.book().getQuantity() > 0)) {
+                report.setEntryForms(report.getEntryForms() + 1);
+            }
+            this.eventPublisher.publishEvent(BookChangedEvent.of(ids));
+            log.debug("[BookImport] Inserted chunk of {} books in {} ms",
+                    valid.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (DataAccessException e) {
+            log.error("[BookImport] Chunk failed, rolled back", e);
+            String message = "Lỗi ghi dữ liệu, cả nhóm " + valid.size() + " dòng đã được hoàn tác: "
+                    + e.getMostSpecificCause().getMessage();
+            valid.forEach(row -> fail(report, row.line(), row.book().getIsbn(), message));
+        }
+    }
+
+    private List<Long> insertChunk(List<ImportRow> rows, User user, String email) {
+        LocalDateTime now = LocalDateTime.now(ZONE);
+        this.jdbcTemplate.batchUpdate(INSERT_BOOK, rows, rows.size(), (ps, row) -> {
+            Book book = row.book();
+            ps.setString(1, book.getIsbn());
+            ps.setString(2, book.getTitle());
+            ps.setString(3, book.getAuthor());
+            ps.setInt(4, book.getYearOfPublication());
+            ps.setString(5, book.getShortDes());
+            ps.setString(6, book.getDescription());
+            ps.setDouble(7, book.getSellingPrice());
+            ps.setDouble(8, book.getImportPrice());
+            ps.setString(9, book.getStatus().name());
+            ps.setObject(10, now);
+            ps.setString(11, email);
+            ps.setInt(12, book.getQuantity());
+            setNullableLong(ps, 13, book.getSupplier() == null ? null : book.getSupplier().getId());
+            setNullableLong(ps, 14, book.getInventory() == null ? null : book.getInventory().getId());
+            // Sách mới nhập luôn đi đường DB, bật hot SKU riêng khi flash sale
+            ps.setBoolean(15, false);
+        });
+
+        // JDBC batch không trả id sinh ra nên lấy lại id theo ISBN (đã được kiểm tra là duy nhất)
+        Map<String, Long> idByIsbn = new HashMap<>();
+        String placeholders = String.join(", ", Collections.nCopies(rows.size(), "?"));
+        this.jdbcTemplate.query("SELECT id, isbn FROM books WHERE isbn IN (" + placeholders + ")",
+                rs -> {
+                    idByIsbn.merge(rs.getString(2), rs.getLong(1), Math::max);
+                },
+                rows.stream().map(row -> row.book().getIsbn()).toArray());
+
+        List<Object[]> images = new ArrayList<>();
+        List<Object[]> categories = new ArrayList<>();
+        Map<Long, Integer> inventoryIncrease = new HashMap<>();
+        List<ImportRow> stocked = new ArrayList<>();
+        int totalQuantity = 0;
+        double totalPrice = 0;
+        for (ImportRow row : rows) {
+            Book book = row.book();
+            long bookId = idByIsbn.get(book.getIsbn());
+            List<String> paths = book.getImage();
+            for (int i = 0; i < paths.size(); i++) {
+                images.add(new Object[]{bookId, paths.get(i), i});
+            }
+            for (Category category : book.getCategories()) {
+                categories.add(new Object[]{bookId, category.getId()});
+            }
+            if (book.getQuantity() > 0) {
+                stocked.add(row);
+                totalQuantity += book.getQuantity();
+                totalPrice += book.getQuantity() * book.getImportPrice();
+                if (book.getInventory() != null) {
+                    inventoryIncrease.merge(book.getInventory().getId(), book.getQuantity(), Integer::sum);
+                }
+            }
+        }
+
+        if (!images.isEmpty()) {
+            this.jdbcTemplate.batchUpdate(INSERT_IMAGE, images);
+        }
+        if (!categories.isEmpty()) {
+            this.jdbcTemplate.batchUpdate(INSERT_CATEGORY, categories);
+        }
+
+        // Một phiếu nhập cho cả chunk, mỗi sách có số lượng > 0 là một dòng chi tiết
+        if (!stocked.isEmpty()) {
+            int formQuantity = totalQuantity;
+            double formPrice = totalPrice;
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            this.jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(INSERT_ENTRY_FORM, Statement.RETURN_GENERATED_KEYS);
+                ps.setInt(1, formQuantity);
+                ps.setDouble(2, formPrice);
+                ps.setObject(3, now);
+                ps.setLong(4, user.getId());
+                return ps;
+            }, keyHolder);
+            long entryFormId = Objects.requireNonNull(keyHolder.getKey()).longValue();
+
+            this.jdbcTemplate.batchUpdate(INSERT_ENTRY_FORM_DETAIL, stocked, stocked.size(), (ps, row) -> {
+                ps.setInt(1, row.book().getQuantity());
+                ps.setDouble(2, row.book().getImportPrice());
+                ps.setLong(3, idByIsbn.get(row.book().getIsbn()));
+                ps.setLong(4, entryFormId);
+            });
+        }
+        if (!inventoryIncrease.isEmpty()) {
+            List<Map.Entry<Long, Integer>> increases = new ArrayList<>(inventoryIncrease.entrySet());
+            this.jdbcTemplate.batchUpdate(INCREASE_INVENTORY, increases, increases.size(), (ps, entry) -> {
+                ps.setInt(1, entry.getValue());
+                ps.setLong(2, entry.getKey());
+            });
+        }
+        return new ArrayList<>(idByIsbn.values());
+    }
+
+    private void fail(ResBookImportDTO report, long line, String isbn, String message) {
+        report.setFailedRows(report.getFailedRows() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(new ResBookImportDTO.RowError(line, isbn, message));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> header, String column) {
+        Integer index = header.get(column);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String requireText(List<String> fields, Map<String, Integer> header, String column,
+                                      String label, int maxLength) {
+        String value = field(fields, header, column);
+        if (value == null) {
+            throw new IllegalArgumentException(label + " không được để trống");
+        }
+        if (value.length() > maxLength) {
+            throw new IllegalArgumentException(label + " không quá " + maxLength + " ký tự");
+        }
+        return value;
+    }
+
+    private static List<String> split(String value) {
+        if (value == null) {
+            return List.of();
+        }
+        return Arrays.stream(value.split("\\|")).map(String::trim).filter(s -> !s.isEmpty()).distinct().toList();
+    }
+
+    private static int parseInt(String value, String label) {
+        try {
+            return Integer.parseInt(Objects.requireNonNull(value));
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IllegalArgumentException(label + " không hợp lệ");
+        }
+    }
+
+    private static long parseLong(String value, String label) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(label + " không hợp lệ: " + value);
+        }
+    }
+
+    private static double parseDouble(String value, String label) {
+        try {
+            return Double.parseDouble(Objects.requireNonNull(value));
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IllegalArgumentException(label + " không hợp lệ");
+        }
+    }
+
+    private record ImportRow(long line, Book book) {
+    }
+}
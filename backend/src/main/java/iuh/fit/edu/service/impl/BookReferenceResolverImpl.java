@@ -0,0 +1,62 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.entity.Book;
+import iuh.fit.edu.entity.Category;
+import iuh.fit.edu.entity.Inventory;
+import iuh.fit.edu.entity.Supplier;
+import iuh.fit.edu.repository.CategoryRepository;
+import iuh.fit.edu.repository.InventoryRepository;
+import iuh.fit.edu.repository.SupplierRepository;
+import iuh.fit.edu.service.BookReferenceResolver;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Service
+@RequiredArgsConstructor
+public class BookReferenceResolverImpl implements BookReferenceResolver {
+    private final CategoryRepository categoryRepository;
+    private final SupplierRepository supplierRepository;
+    private final InventoryRepository inventoryRepository;
+
+    @Override
+    public References resolve(Collection<Book> books) {
+        Set<Long> categoryIds = new HashSet<>();
+        Set<Long> supplierIds = new HashSet<>();
+        Set<Long> inventoryIds = new HashSet<>();
+        for (Book book : books) {
+            if (book.getCategories() != null) {
+                book.getCategories().stream()
+                        .map(Category::getId)
+                        .filter(Objects::nonNull)
+                        .forEach(categoryIds::add);
+            }
+            if (book.getSupplier() != null && book.getSupplier().getId() != null) {
+                supplierIds.add(book.getSupplier().getId());
+            }
+            if (book.getInventory() != null && book.getInventory().getId() != null) {
+                inventoryIds.add(book.getInventory().getId());
+            }
+        }
+        return new References(
+                load(categoryIds, this.categoryRepository::findAllById, Category::getId),
+                load(supplierIds, this.supplierRepository::findAllById, Supplier::getId),
+                load(inventoryIds, this.inventoryRepository::findAllById, Inventory::getId)
+        );
+    }
+
+    private static <T> Map<Long, T> load(Set<Long> ids, Function<Set<Long>, List<T>> finder,
+                                         Function<T, Long> idOf) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return finder.apply(ids).stream().collect(Collectors.toMap(idOf, Function.identity()));
+    }
+}
@@ -0,0 +1,253 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.response.ResultPaginationDTO;
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
+import iuh.fit.edu.entity.constant.BookStatus;
+import iuh.fit.edu.event.BookChangedEvent;
+import iuh.fit.edu.repository.BookRepository;
+import iuh.fit.edu.service.BookSearchService;
+import iuh.fit.edu.util.VietnameseTextNormalizer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Index đảo ngược trong bộ nhớ trên title, author, shortDes và tên danh mục của sách,
+ * xếp hạng kết quả theo BM25. Index được dựng lại khi ứng dụng khởi động và cập nhật
+ * từng sách khi BookServiceImpl ghi dữ liệu.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookSearchServiceImpl implements BookSearchService {
+    private static final List<BookStatus> SEARCHABLE_STATUSES = List.of(BookStatus.SALE, BookStatus.OUT_STOCK);
+    private static final int TITLE_WEIGHT = 3;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int SHORT_DES_WEIGHT = 1;
+    private static final int ID_CHUNK_SIZE = 1000;
+
+    private final BookRepository bookRepository;
+
+    private volatile InvertedIndex index = new InvertedIndex();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildIndex();
+    }
+
+    @Override
+    public void rebuildIndex() {
+        long start = System.currentTimeMillis();
+        Map<Long, List<String>> categoryNames =
+                groupCategoryNames(this.bookRepository.findCategoryNamesByStatusIn(SEARCHABLE_STATUSES));
+        InvertedIndex fresh = new InvertedIndex();
+        for (Object[] row : this.bookRepository.findSearchFieldsByStatusIn(SEARCHABLE_STATUSES)) {
+            Long id = (Long) row[0];
+            fresh.put(id, termFrequencies(row, categoryNames.get(id)));
+        }
+        this.index = fresh;
+        log.info("[BookSearch] Indexed {} books in {} ms", fresh.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.stockOnly()) {
+            // Index không chứa số lượng tồn kho
+            return;
+        }
+        List<Long> ids = new ArrayList<>(event.bookIds());
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+            Map<Long, List<String>> categoryNames =
+                    groupCategoryNames(this.bookRepository.findCategoryNamesByIdIn(chunk));
+            Set<Long> missing = new HashSet<>(chunk);
+            InvertedIndex current = this.index;
+            for (Object[] row : this.bookRepository.findSearchFieldsByIdIn(chunk)) {
+                Long id = (Long) row[0];
+                missing.remove(id);
+                if (SEARCHABLE_STATUSES.contains((BookStatus) row[4])) {
+                    current.put(id, termFrequencies(row, categoryNames.get(id)));
+                } else {
+                    current.remove(id);
+                }
+            }
+            missing.forEach(current::remove);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResultPaginationDTO search(String keyword, Pageable pageable) {
+        List<String> terms = VietnameseTextNormalizer.tokenize(keyword);
+        List<Long> ranked = terms.isEmpty() ? List.of() : this.index.search(terms);
+
+        int pageSize = pageable.getPageSize();
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        int to = Math.min(from + pageSize, ranked.size());
+        List<Long> pageIds = ranked.subList(from, to);
+
+        // Giữ nguyên thứ tự xếp hạng khi map sang DTO
+        Map<Long, BookSummaryResponse> books = this.bookRepository.findSummariesByIds(pageIds).stream()
+                .collect(Collectors.toMap(BookSummaryResponse::getId, Function.identity()));
+
+        ResultPaginationDTO rs = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta mt = new ResultPaginationDTO.Meta();
+        mt.setPage(pageable.getPageNumber() + 1);
+        mt.setPageSize(pageSize);
+        mt.setPages((int) Math.ceil((double) ranked.size() / pageSize));
+        mt.setTotal(ranked.size());
+        rs.setMeta(mt);
+        rs.setResult(pageIds.stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .toList());
+        return rs;
+    }
+
+    @Override
+    public int getIndexedCount() {
+        return this.index.size();
+    }
+
+    private Map<String, Integer> termFrequencies(Object[] row, List<String> categoryNames) {
+        Map<String, Integer> tf = new HashMap<>();
+        addTerms(tf, (String) row[1], TITLE_WEIGHT);
+        addTerms(tf, (String) row[2], AUTHOR_WEIGHT);
+        addTerms(tf, (String) row[3], SHORT_DES_WEIGHT);
+        if (categoryNames != null) {
+            categoryNames.forEach(name -> addTerms(tf, name, CATEGORY_WEIGHT));
+        }
+        return tf;
+    }
+
+    private void addTerms(Map<String, Integer> tf, String text, int weight) {
+        for (String token : VietnameseTextNormalizer.tokenize(text)) {
+            tf.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private Map<Long, List<String>> groupCategoryNames(List<Object[]> rows) {
+        Map<Long, List<String>> result = new HashMap<>();
+        for (Object[] row : rows) {
+            result.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((String) row[1]);
+        }
+        return result;
+    }
+
+    /**
+     * Posting list theo từ khóa đã bỏ dấu, tần suất đã nhân trọng số theo trường.
+     */
+    private static final class InvertedIndex {
+        private static final double K1 = 1.2;
+        private static final double B = 0.75;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+        private final Map<Long, Map<String, Integer>> documents = new HashMap<>();
+        private final Map<Long, Integer> lengths = new HashMap<>();
+        private long totalLength;
+
+        void put(Long id, Map<String, Integer> tf) {
+            lock.writeLock().lock();
+            try {
+                removeUnlocked(id);
+                if (tf.isEmpty()) {
+                    return;
+                }
+                int length = 0;
+                for (Map.Entry<String, Integer> e : tf.entrySet()) {
+                    postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(id, e.getValue());
+                    length += e.getValue();
+                }
+                documents.put(id, tf);
+                lengths.put(id, length);
+                totalLength += length;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Long id) {
+            lock.writeLock().lock();
+            try {
+                removeUnlocked(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeUnlocked(Long id) {
+            Map<String, Integer> old = documents.remove(id);
+            if (old == null) {
+                return;
+            }
+            for (String term : old.keySet()) {
+                Map<Long, Integer> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(id);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            Integer length = lengths.remove(id);
+            totalLength -= length == null ? 0 : length;
+        }
+
+        List<Long> search(List<String> terms) {
+            lock.readLock().lock();
+            try {
+                int n = documents.size();
+                if (n == 0) {
+                    return List.of();
+                }
+                double avgLength = (double) totalLength / n;
+                Map<Long, Double> scores = new HashMap<>();
+                for (String term : new LinkedHashSet<>(terms)) {
+                    Map<Long, Integer> posting = postings.get(term);
+                    if (posting == null) {
+                        continue;
+                    }
+                    int df = posting.size();
+                    double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+                    for (Map.Entry<Long, Integer> e : posting.entrySet()) {
+                        int tf = e.getValue();
+                        int length = lengths.get(e.getKey());
+                        double norm = tf + K1 * (1 - B + B * length / avgLength);
+                        scores.merge(e.getKey(), idf * tf * (K1 + 1) / norm, Double::sum);
+                    }
+                }
+                return scores.entrySet().stream()
+                        .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                                .thenComparing(Map.Entry.comparingByKey()))
+                        .map(Map.Entry::getKey)
+                        .toList();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return documents.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -3,35 +3,51 @@ package iuh.fit.edu.service.impl;
 import iuh.fit.edu.dto.request.book.ReqCreateBookDTO;
 import iuh.fit.edu.dto.request.book.ReqUpdateBookDTO;
 import iuh.fit.edu.dto.request.book.ReviewRequest;
+import iuh.fit.edu.dto.request.file.ReqPresignUploadDTO;
 import iuh.fit.edu.dto.response.ResultPaginationDTO;
 import iuh.fit.edu.dto.response.book.ResBookDTO;
 import iuh.fit.edu.dto.response.book.ResCreateBookDTO;
 import iuh.fit.edu.dto.response.book.ResUpdateBookDTO;
+import iuh.fit.edu.dto.response.cache.CatalogPageKey;
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
 import iuh.fit.edu.entity.*;
 import iuh.fit.edu.entity.constant.BookStatus;
+import iuh.fit.edu.event.BookChangedEvent;
 import iuh.fit.edu.exception.IdInvalidException;
 import iuh.fit.edu.mapper.BookMapper;
+import iuh.fit.edu.repository.BookRatingStatsRepository;
 import iuh.fit.edu.repository.BookRepository;
-import iuh.fit.edu.repository.CategoryRepository;
 import iuh.fit.edu.repository.EntryFormDetailRepository;
 import iuh.fit.edu.repository.EntryFormRepository;
 import iuh.fit.edu.repository.InventoryRepository;
-import iuh.fit.edu.repository.SupplierRepository;
 import iuh.fit.edu.repository.UserRepository;
+import iuh.fit.edu.service.BookReferenceResolver;
 import iuh.fit.edu.service.BookService;
+import iuh.fit.edu.service.CatalogCacheService;
+import iuh.fit.edu.service.DirectUploadService;
 import iuh.fit.edu.service.S3Service;
 import iuh.fit.edu.service.UserService;
+import iuh.fit.edu.util.KeysetPagination;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -40,56 +56,62 @@ import java.util.stream.Collectors;
  * @version 1.0
  * @created 11/24/2025 2:48 PM
  */
+@Slf4j
 @Service
 public class BookServiceImpl implements BookService {
+    private static final int DETAIL_REVIEW_PAGE_SIZE = 10;
+    private static final int MAX_IMAGES_PER_REQUEST = 10;
+
     private final BookRepository bookRepository;
     private final InventoryRepository inventoryRepository;
-    private final SupplierRepository supplierRepository;
-    private final CategoryRepository categoryRepository;
     private final EntryFormRepository entryFormRepository;
     private final EntryFormDetailRepository entryFormDetailRepository;
     private final UserRepository userRepository;
     private final iuh.fit.edu.repository.ReviewRepository reviewRepository;
+    private final BookRatingStatsRepository bookRatingStatsRepository;
     private final BookMapper bookMapper;
     private final S3Service s3Service;
-
+    private final DirectUploadService directUploadService;
+    private final CatalogCacheService catalogCacheService;
+    private final BookReferenceResolver bookReferenceResolver;
+    private final ApplicationEventPublisher eventPublisher;
+    // Chỉ mở transaction (mượn connection Hikari) khi cache trượt, request trúng cache không chạm DB
+    private final TransactionTemplate readOnlyTransaction;
 
     public BookServiceImpl(BookRepository bookRepository, InventoryRepository inventoryRepository,
-                           SupplierRepository supplierRepository, CategoryRepository categoryRepository,
                            EntryFormRepository entryFormRepository, EntryFormDetailRepository entryFormDetailRepository,
                            UserRepository userRepository, iuh.fit.edu.repository.ReviewRepository reviewRepository,
-                           BookMapper bookMapper, S3Service s3Service) {
+                           BookRatingStatsRepository bookRatingStatsRepository,
+                           BookMapper bookMapper, S3Service s3Service, DirectUploadService directUploadService,
+                           CatalogCacheService catalogCacheService,
+                           BookReferenceResolver bookReferenceResolver, ApplicationEventPublisher eventPublisher,
+                           PlatformTransactionManager transactionManager) {
         this.bookRepository = bookRepository;
         this.reviewRepository = reviewRepository;
+        this.bookRatingStatsRepository = bookRatingStatsRepository;
         this.inventoryRepository = inventoryRepository;
-        this.supplierRepository = supplierRepository;
-        this.categoryRepository = categoryRepository;
         this.entryFormRepository = entryFormRepository;
         this.entryFormDetailRepository = entryFormDetailRepository;
         this.userRepository = userRepository;
         this.bookMapper = bookMapper;
         this.s3Service = s3Service;
+        this.directUploadService = directUploadService;
+        this.catalogCacheService = catalogCacheService;
+        this.bookReferenceResolver = bookReferenceResolver;
+        this.eventPublisher = eventPublisher;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     @Override
     @Transactional
     public Book createBook(Book book, String email) {
-        if (book.getSupplier() != null && book.getSupplier().getId() != null) {
-            Optional<Supplier> optionalSupplier = this.supplierRepository.findById(book.getSupplier().getId());
-            book.setSupplier(optionalSupplier.orElse(null));
-        }
+        BookReferenceResolver.References references = this.bookReferenceResolver.resolve(List.of(book));
         if (book.getCategories() != null && !book.getCategories().isEmpty()) {
-            List<Category> validCategories = book.getCategories().stream()
-                    .filter(cat -> cat.getId() != null)
-                    .map(cat -> this.categoryRepository.findById(cat.getId()).orElse(null))
-                    .filter(Objects::nonNull)
-                    .toList();
-            book.setCategories(validCategories);
-        }
-        if (book.getInventory() != null && book.getInventory().getId() != null) {
-            Optional<Inventory> optionalInventory = this.inventoryRepository.findById(book.getInventory().getId());
-            book.setInventory(optionalInventory.orElse(null));
+            book.setCategories(new ArrayList<>(references.categoriesOf(book)));
         }
+        book.setSupplier(references.supplierOf(book));
+        book.setInventory(references.inventoryOf(book));
 
         book.setCreatedBy(email);
         Book savedBook = this.bookRepository.save(book);
@@ -105,6 +127,7 @@ public class BookServiceImpl implements BookService {
         if (savedBook.getQuantity() > 0) {
             createEntryFormForBook(savedBook, savedBook.getQuantity(), savedBook.getImportPrice(), user);
         }
+        this.eventPublisher.publishEvent(BookChangedEvent.of(savedBook.getId()));
 
         return savedBook;
     }
@@ -116,6 +139,7 @@ public class BookServiceImpl implements BookService {
             Optional<Book> optionalBook = this.bookRepository.findById(book.getId());
             if (optionalBook.isPresent()) {
                 Book updatedBook = optionalBook.get();
+                BookReferenceResolver.References references = this.bookReferenceResolver.resolve(List.of(book));
                 if (book.getIsbn() != null && !book.getIsbn().isEmpty() && !book.getIsbn().equals(updatedBook.getIsbn())) {
                     if (this.bookRepository.existsByIsbn(book.getIsbn())) {
                         return null;
@@ -160,23 +184,17 @@ public class BookServiceImpl implements BookService {
                         updatedBook.setImage(book.getImage());
                     }
                 }
-                if (book.getSupplier() != null && book.getSupplier().getId() != null) {
-                    Optional<Supplier> optionalSupplier = this.supplierRepository.findById(book.getSupplier().getId());
-                    updatedBook.setSupplier(optionalSupplier.orElse(updatedBook.getSupplier()));
+                Supplier supplier = references.supplierOf(book);
+                if (supplier != null) {
+                    updatedBook.setSupplier(supplier);
                 }
                 if (book.getCategories() != null) {
-                    List<Category> validCategories = book.getCategories().stream()
-                            .filter(cat -> cat.getId() != null)
-                            .map(cat -> this.categoryRepository.findById(cat.getId()).orElse(null))
-                            .filter(Objects::nonNull)
-                            .toList();
                     updatedBook.getCategories().clear();
-                    updatedBook.getCategories().addAll(validCategories);
+                    updatedBook.getCategories().addAll(references.categoriesOf(book));
                 }
-                if (book.getInventory() != null && book.getInventory().getId() != null) {
-                    System.out.println("Updating inventory: " + book.getInventory().getId());
-                    Optional<Inventory> optionalInventory = this.inventoryRepository.findById(book.getInventory().getId());
-                    updatedBook.setInventory(optionalInventory.orElse(updatedBook.getInventory()));
+                Inventory inventory = references.inventoryOf(book);
+                if (inventory != null) {
+                    updatedBook.setInventory(inventory);
                 }
                 int newQuantity = updatedBook.getQuantity();
                 int quantityDiff = newQuantity - oldQuantity;
@@ -190,6 +208,7 @@ public class BookServiceImpl implements BookService {
                 if (quantityDiff > 0) {
                     createEntryFormForBook(savedBook, quantityDiff, book.getImportPrice() > 0 ? book.getImportPrice() : savedBook.getImportPrice(), user);
                 }
+                this.eventPublisher.publishEvent(BookChangedEvent.of(savedBook.getId()));
 
                 return savedBook;
             }
@@ -211,27 +230,83 @@ public class BookServiceImpl implements BookService {
             book.setUpdatedAt(OffsetDateTime.now());
             book.setUpdatedBy(email);
             this.bookRepository.save(book);
+            this.eventPublisher.publishEvent(BookChangedEvent.of(id));
         }
     }
 
     @Override
     public Book findBookById(Long id) {
-        // Use EntityGraph to fetch reviews with users for detail view
-        return this.bookRepository.findByIdWithReviewsAndUsers(id).orElse(null);
+        return this.bookRepository.findById(id).orElse(null);
     }
 
+    @Override
+    public ResBookDTO getBookDetail(Long id) {
+        return this.catalogCacheService.getBook(id, key -> this.readOnlyTransaction.execute(status -> {
+            Book book = this.findBookById(key);
+            if (book == null) {
+                return null;
+            }
+            // Chỉ kèm tổng hợp đánh giá và trang review đầu tiên, các trang sau lấy qua /api/books/{id}/reviews
+            ResBookDTO dto = this.convertToResBookDTO(book);
+            dto.setRating(this.bookMapper.toRating(this.bookRatingStatsRepository.findById(key).orElse(null)));
+            dto.setReview(this.reviewRepository
+                    .findByBook_Id(key, withReviewSort(PageRequest.of(0, DETAIL_REVIEW_PAGE_SIZE)))
+                    .map(this.bookMapper::toReviewDTO)
+                    .getContent()
+                    .toArray(ResBookDTO.Review[]::new));
+            return dto;
+        }));
+    }
 
     @Override
-    public ResultPaginationDTO getAllBooks(Specification<Book> specification, Pageable pageable) {
+    public ResultPaginationDTO getAllBooksByCursor(Specification<Book> specification, Pageable pageable, String cursor) {
+        KeysetPagination.Slice<Book> slice =
+                KeysetPagination.fetch(this.bookRepository, withListingStatus(specification), pageable, cursor);
+
+        ResultPaginationDTO rs = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta mt = new ResultPaginationDTO.Meta();
+        mt.setPageSize(pageable.getPageSize());
+        mt.setNextCursor(slice.nextCursor());
+        rs.setMeta(mt);
+        rs.setResult(slice.content().stream().map(this::convertToResBookDTO).toList());
+        return rs;
+    }
 
+    private Specification<Book> withListingStatus(Specification<Book> specification) {
         Specification<Book> statusSpec = (root, query, cb) ->
                 root.get("status").in(BookStatus.SALE, BookStatus.OUT_STOCK);
+        return specification == null ? statusSpec : specification.and(statusSpec);
+    }
 
-        Specification<Book> finalSpec = specification == null
-                ? statusSpec
-                : specification.and(statusSpec);
+    @Override
+    public ResultPaginationDTO getAllBooks(Specification<Book> specification, Pageable pageable, String filter) {
+        CatalogPageKey key = CatalogPageKey.of("books", filter, pageable);
+        return this.catalogCacheService.getPage(key, () -> this.getAllBooks(specification, pageable));
+    }
+
+
+    @Override
+    public ResultPaginationDTO getBookSummaries(Specification<Book> specification, Pageable pageable, String filter) {
+        CatalogPageKey key = CatalogPageKey.of("summary", filter, pageable);
+        return this.catalogCacheService.getPage(key, () -> this.readOnlyTransaction.execute(status -> {
+            Page<BookSummaryResponse> summaryPage =
+                    this.bookRepository.findSummaries(withListingStatus(specification), pageable);
+
+            ResultPaginationDTO rs = new ResultPaginationDTO();
+            ResultPaginationDTO.Meta mt = new ResultPaginationDTO.Meta();
+            mt.setPage(pageable.getPageNumber() + 1);
+            mt.setPageSize(pageable.getPageSize());
+            mt.setPages(summaryPage.getTotalPages());
+            mt.setTotal(summaryPage.getTotalElements());
+            rs.setMeta(mt);
+            rs.setResult(summaryPage.getContent());
+            return rs;
+        }));
+    }
 
-        Page<Book> bookPage = this.bookRepository.findAll(finalSpec, pageable);
+    @Override
+    public ResultPaginationDTO getAllBooks(Specification<Book> specification, Pageable pageable) {
+        Page<Book> bookPage = this.bookRepository.findAll(withListingStatus(specification), pageable);
 
         ResultPaginationDTO rs = new ResultPaginationDTO();
         ResultPaginationDTO.Meta mt = new ResultPaginationDTO.Meta();
@@ -284,30 +359,7 @@ public class BookServiceImpl implements BookService {
         book.setQuantity(dto.getQuantity());
         book.setImage(dto.getImage());
 
-        // Convert category IDs to Category entities
-        if (dto.getCategoryIds() != null && !dto.getCategoryIds().isEmpty()) {
-            List<Category> categories = new ArrayList<>();
-            for (Long categoryId : dto.getCategoryIds()) {
-                Category category = categoryRepository.findById(categoryId).orElse(null);
-                if (category != null) {
-                    categories.add(category);
-                }
-            }
-            book.setCategories(categories);
-        }
-
-        // Convert supplier ID to Supplier entity
-        if (dto.getSupplierId() != null) {
-            Supplier supplier = supplierRepository.findById(dto.getSupplierId()).orElse(null);
-            book.setSupplier(supplier);
-        }
-
-        // Convert inventory ID to Inventory entity
-        if (dto.getInventoryId() != null) {
-            Inventory inventory = inventoryRepository.findById(dto.getInventoryId()).orElse(null);
-            book.setInventory(inventory);
-        }
-
+        setReferenceIds(book, dto.getCategoryIds(), dto.getSupplierId(), dto.getInventoryId());
         return book;
     }
 
@@ -327,31 +379,34 @@ public class BookServiceImpl implements BookService {
         book.setQuantity(dto.getQuantity());
         book.setImage(dto.getImage());
 
-        // Convert category IDs to Category entities
-        if (dto.getCategoryIds() != null && !dto.getCategoryIds().isEmpty()) {
+        setReferenceIds(book, dto.getCategoryIds(), dto.getSupplierId(), dto.getInventoryId());
+        return book;
+    }
+
+    /**
+     * Chỉ gắn id của danh mục / nhà cung cấp / kho, createBook và updateBook sẽ nạp
+     * thực thể thật qua BookReferenceResolver trong một lượt truy vấn mỗi loại
+     */
+    private void setReferenceIds(Book book, List<Long> categoryIds, Long supplierId, Long inventoryId) {
+        if (categoryIds != null && !categoryIds.isEmpty()) {
             List<Category> categories = new ArrayList<>();
-            for (Long categoryId : dto.getCategoryIds()) {
-                Category category = categoryRepository.findById(categoryId).orElse(null);
-                if (category != null) {
-                    categories.add(category);
-                }
+            for (Long categoryId : categoryIds) {
+                Category category = new Category();
+                category.setId(categoryId);
+                categories.add(category);
             }
             book.setCategories(categories);
         }
-
-        // Convert supplier ID to Supplier entity
-        if (dto.getSupplierId() != null) {
-            Supplier supplier = supplierRepository.findById(dto.getSupplierId()).orElse(null);
+        if (supplierId != null) {
+            Supplier supplier = new Supplier();
+            supplier.setId(supplierId);
             book.setSupplier(supplier);
         }
-
-        // Convert inventory ID to Inventory entity
-        if (dto.getInventoryId() != null) {
-            Inventory inventory = inventoryRepository.findById(dto.getInventoryId()).orElse(null);
+        if (inventoryId != null) {
+            Inventory inventory = new Inventory();
+            inventory.setId(inventoryId);
             book.setInventory(inventory);
         }
-
-        return book;
     }
 
     @Override
@@ -409,7 +464,9 @@ public class BookServiceImpl implements BookService {
         } else {
             throw new IdInvalidException("Book không có inventory");
         }
-        return this.bookRepository.save(book);
+        Book savedBook = this.bookRepository.save(book);
+        this.eventPublisher.publishEvent(BookChangedEvent.of(bookId));
+        return savedBook;
     }
 
     @Override
@@ -423,20 +480,19 @@ public class BookServiceImpl implements BookService {
         if (images == null || images.length == 0) {
             throw new IdInvalidException("Phải upload ít nhất 1 ảnh");
         }
-        List<String> uploadedPaths = new ArrayList<>();
+        List<MultipartFile> files = Arrays.stream(images)
+                .filter(image -> image != null && !image.isEmpty())
+                .toList();
         String bookFolder = "books/" + bookId;
-        for (MultipartFile image : images) {
-            if (image != null && !image.isEmpty()) {
-                try {
-                    String s3Path = s3Service.uploadFile(image, bookFolder);
-                    uploadedPaths.add(s3Path);
-                } catch (Exception e) {
-                    throw new IdInvalidException("Lỗi khi upload ảnh: " + e.getMessage());
-                }
-            }
+        List<String> uploadedPaths;
+        try {
+            // Upload song song, lỗi một file thì các file đã lên S3 bị xóa trước khi ném lỗi
+            uploadedPaths = s3Service.uploadFiles(files, bookFolder);
+        } catch (Exception e) {
+            throw new IdInvalidException("Lỗi khi upload ảnh: " + e.getMessage());
         }
         if (book.getImage() == null) {
-            book.setImage(uploadedPaths);
+            book.setImage(new ArrayList<>(uploadedPaths));
         } else {
             List<String> existingImages = book.getImage().stream()
                     .filter(img -> !img.contains("placeholder") && !img.contains("temp-"))
@@ -444,16 +500,58 @@ public class BookServiceImpl implements BookService {
             existingImages.addAll(uploadedPaths);
             book.setImage(existingImages);
         }
-        this.bookRepository.save(book);
+        try {
+            this.bookRepository.save(book);
+        } catch (RuntimeException e) {
+            // Không lưu được vào DB thì ảnh vừa upload thành rác trên bucket
+            s3Service.deleteFiles(uploadedPaths);
+            throw e;
+        }
+        this.eventPublisher.publishEvent(BookChangedEvent.of(bookId));
         return uploadedPaths;
     }
 
+    @Override
+    public List<ResPresignedUploadDTO> presignBookImages(Long bookId, List<ReqPresignUploadDTO> files) throws IdInvalidException {
+        if (!this.bookRepository.existsById(bookId)) {
+            throw new IdInvalidException("Book với id: " + bookId + " không tồn tại");
+        }
+        if (files == null || files.isEmpty()) {
+            throw new IdInvalidException("Phải upload ít nhất 1 ảnh");
+        }
+        if (files.size() > MAX_IMAGES_PER_REQUEST) {
+            throw new IdInvalidException("Chỉ được upload tối đa " + MAX_IMAGES_PER_REQUEST + " ảnh mỗi lần");
+        }
+        String bookFolder = "books/" + bookId;
+        return files.stream()
+                .map(file -> this.directUploadService.presignImage(bookFolder, file))
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public List<String> attachBookImages(Long bookId, List<String> keys) throws IdInvalidException {
+        Book book = this.findBookById(bookId);
+        if (book == null) {
+            throw new IdInvalidException("Book với id: " + bookId + " không tồn tại");
+        }
+        List<String> confirmed = this.directUploadService.confirmImages("books/" + bookId, keys);
+        List<String> images = book.getImage() == null ? new ArrayList<>() : book.getImage().stream()
+                .filter(img -> !img.contains("placeholder") && !img.contains("temp-"))
+                .collect(Collectors.toList());
+        // Gọi confirm lại với cùng key không nhân đôi ảnh
+        confirmed.stream().filter(key -> !images.contains(key)).forEach(images::add);
+        book.setImage(images);
+        this.bookRepository.save(book);
+        this.eventPublisher.publishEvent(BookChangedEvent.of(bookId));
+        return confirmed;
+    }
+
     @Override
     @Transactional
     public Review createReview(Long bookId, String email, ReviewRequest reviewRequest) throws IdInvalidException {
         // Check if book exists
-        Book book = findBookById(bookId);
-        if (book == null) {
+        if (!this.bookRepository.existsById(bookId)) {
             throw new IdInvalidException("Sách với id " + bookId + " không tồn tại");
         }
 
@@ -463,23 +561,14 @@ public class BookServiceImpl implements BookService {
             throw new IdInvalidException("User không tồn tại");
         }
 
-        // Initialize reviews list if null
-        if (book.getReviews() == null) {
-            book.setReviews(new ArrayList<>());
-        }
-
         // Check if user already has a review for this book
-        Optional<Review> existingReview = book.getReviews().stream()
-                .filter(r -> r.getUser().getEmail().equals(email))
-                .findFirst();
-        
-        if (existingReview.isPresent()) {
+        if (this.reviewRepository.findByBook_IdAndUser_Email(bookId, email).isPresent()) {
             throw new IdInvalidException("Bạn đã đánh giá sách này rồi. Vui lòng sử dụng chức năng cập nhật.");
         }
 
         // Create new review
         Review review = new Review();
-        review.setBook(book);
+        review.setBook(this.bookRepository.getReferenceById(bookId));
         review.setUser(user);
         review.setRating(reviewRequest.getRating());
         review.setComment(reviewRequest.getComment());
@@ -487,6 +576,8 @@ public class BookServiceImpl implements BookService {
 
         // Save review directly using repository
         Review savedReview = reviewRepository.save(review);
+        applyRatingDelta(bookId, 0, savedReview.getRating());
+        this.eventPublisher.publishEvent(BookChangedEvent.of(bookId));
         return savedReview;
     }
 
@@ -494,21 +585,14 @@ public class BookServiceImpl implements BookService {
     @Transactional
     public Review updateReview(Long bookId, String email, ReviewRequest reviewRequest) throws IdInvalidException {
         // Check if book exists
-        Book book = findBookById(bookId);
-        if (book == null) {
+        if (!this.bookRepository.existsById(bookId)) {
             throw new IdInvalidException("Sách với id " + bookId + " không tồn tại");
         }
 
-        // Initialize reviews list if null
-        if (book.getReviews() == null) {
-            throw new IdInvalidException("Bạn chưa có đánh giá nào cho sách này");
-        }
-
         // Find user's existing review
-        Review existingReview = book.getReviews().stream()
-                .filter(r -> r.getUser().getEmail().equals(email))
-                .findFirst()
+        Review existingReview = this.reviewRepository.findByBook_IdAndUser_Email(bookId, email)
                 .orElseThrow(() -> new IdInvalidException("Bạn chưa có đánh giá nào cho sách này"));
+        int oldRating = existingReview.getRating();
 
         // Update review
         existingReview.setRating(reviewRequest.getRating());
@@ -516,6 +600,8 @@ public class BookServiceImpl implements BookService {
         existingReview.setReviewDate(OffsetDateTime.now());
 
         Review updatedReview = reviewRepository.save(existingReview);
+        applyRatingDelta(bookId, oldRating, updatedReview.getRating());
+        this.eventPublisher.publishEvent(BookChangedEvent.of(bookId));
         return updatedReview;
     }
 
@@ -523,29 +609,74 @@ public class BookServiceImpl implements BookService {
     @Transactional
     public void deleteReview(Long bookId, String email) throws IdInvalidException {
         // Check if book exists
-        Book book = findBookById(bookId);
-        if (book == null) {
+        if (!this.bookRepository.existsById(bookId)) {
             throw new IdInvalidException("Sách với id " + bookId + " không tồn tại");
         }
 
-        // Initialize reviews list if null
-        if (book.getReviews() == null || book.getReviews().isEmpty()) {
-            throw new IdInvalidException("Bạn chưa có đánh giá nào cho sách này");
-        }
-
-        // Find and remove user's review
-        Review reviewToRemove = book.getReviews().stream()
-                .filter(r -> r.getUser().getEmail().equals(email))
-                .findFirst()
+        Review reviewToRemove = this.reviewRepository.findByBook_IdAndUser_Email(bookId, email)
                 .orElseThrow(() -> new IdInvalidException("Bạn chưa có đánh giá nào cho sách này"));
 
-        // Remove from collection first (for orphanRemoval)
-        book.getReviews().remove(reviewToRemove);
-        
-        // Then delete from database
         reviewRepository.delete(reviewToRemove);
-        
-        // Save book to trigger orphan removal
-        bookRepository.save(book);
+        applyRatingDelta(bookId, reviewToRemove.getRating(), 0);
+        this.eventPublisher.publishEvent(BookChangedEvent.of(bookId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResultPaginationDTO getReviews(Long bookId, Pageable pageable) throws IdInvalidException {
+        if (!this.bookRepository.existsById(bookId)) {
+            throw new IdInvalidException("Sách với id " + bookId + " không tồn tại");
+        }
+        Page<Review> reviewPage = this.reviewRepository.findByBook_Id(bookId, withReviewSort(pageable));
+
+        ResultPaginationDTO rs = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta mt = new ResultPaginationDTO.Meta();
+        mt.setPage(pageable.getPageNumber() + 1);
+        mt.setPageSize(pageable.getPageSize());
+        mt.setPages(reviewPage.getTotalPages());
+        mt.setTotal(reviewPage.getTotalElements());
+        rs.setMeta(mt);
+        rs.setResult(reviewPage.getContent().stream().map(this.bookMapper::toReviewDTO).toList());
+        return rs;
+    }
+
+    // Mặc định review mới nhất lên đầu
+    private Pageable withReviewSort(Pageable pageable) {
+        if (pageable.getSort().isSorted()) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                Sort.by(Sort.Order.desc("reviewDate"), Sort.Order.desc("id")));
+    }
+
+    /**
+     * Cập nhật bảng tổng hợp đánh giá trong cùng transaction với thao tác review.
+     *
+     * @param removedRating số sao bị gỡ (0 nếu là review mới)
+     * @param addedRating   số sao được thêm (0 nếu là xóa review)
+     */
+    private void applyRatingDelta(Long bookId, int removedRating, int addedRating) {
+        long[] stars = new long[6];
+        if (removedRating >= 1 && removedRating <= 5) {
+            stars[removedRating]--;
+        }
+        if (addedRating >= 1 && addedRating <= 5) {
+            stars[addedRating]++;
+        }
+        long count = (addedRating > 0 ? 1 : 0) - (removedRating > 0 ? 1 : 0);
+        this.bookRatingStatsRepository.applyDelta(bookId, count, addedRating - removedRating,
+                stars[1], stars[2], stars[3], stars[4], stars[5]);
+    }
+
+    // Dựng bảng tổng hợp từ review có sẵn khi bảng còn trống (review tạo trước khi có bảng này). Sau đó bảng
+    // được giữ đúng bằng applyRatingDelta nên các lần khởi động sau không phải quét lại toàn bộ reviews
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildRatingStats() {
+        if (this.bookRatingStatsRepository.count() > 0) {
+            return;
+        }
+        int books = this.bookRatingStatsRepository.rebuildFromReviews();
+        log.info("[BookRating] Rebuilt rating stats for {} books", books);
     }
 }
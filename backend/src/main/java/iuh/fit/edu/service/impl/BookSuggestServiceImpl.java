@@ -0,0 +1,285 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.response.book.ResBookSuggestionDTO;
+import iuh.fit.edu.entity.constant.BookStatus;
+import iuh.fit.edu.entity.constant.OrderStatus;
+import iuh.fit.edu.event.BookChangedEvent;
+import iuh.fit.edu.repository.BookRepository;
+import iuh.fit.edu.repository.OrderDetailRepository;
+import iuh.fit.edu.service.BookSuggestService;
+import iuh.fit.edu.util.VietnameseTextNormalizer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trie tiền tố (đã bỏ dấu) trên title và author của sách đang bán. Mỗi node giữ sẵn top K sách
+ * bán chạy nhất trong cây con nên một lượt gợi ý chỉ tốn O(độ dài tiền tố), không truy vấn DB.
+ * Sách được cập nhật từng cuốn khi có BookChangedEvent, số lượng bán được làm mới định kỳ.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookSuggestServiceImpl implements BookSuggestService {
+    private static final List<BookStatus> SUGGESTIBLE_STATUSES = List.of(BookStatus.SALE, BookStatus.OUT_STOCK);
+    private static final int MAX_SUGGESTIONS = 10;
+    private static final int ID_CHUNK_SIZE = 1000;
+
+    private final BookRepository bookRepository;
+    private final OrderDetailRepository orderDetailRepository;
+
+    private volatile PrefixTrie trie = new PrefixTrie();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    // Số lượng bán thay đổi theo đơn hàng nên dựng lại toàn bộ theo chu kỳ, ngoài luồng request
+    @Scheduled(fixedDelayString = "${catalog.suggest.refresh-ms:600000}",
+            initialDelayString = "${catalog.suggest.refresh-ms:600000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    @Override
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Long, Long> sales = loadSales();
+        PrefixTrie fresh = new PrefixTrie();
+        for (Object[] row : this.bookRepository.findSearchFieldsByStatusIn(SUGGESTIBLE_STATUSES)) {
+            Long id = (Long) row[0];
+            fresh.put(new Doc(id, (String) row[1], (String) row[2], sales.getOrDefault(id, 0L)));
+        }
+        this.trie = fresh;
+        log.info("[BookSuggest] Indexed {} books in {} ms", fresh.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.stockOnly()) {
+            // Index không chứa số lượng tồn kho
+            return;
+        }
+        List<Long> ids = new ArrayList<>(event.bookIds());
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+            Set<Long> missing = new HashSet<>(chunk);
+            PrefixTrie current = this.trie;
+            for (Object[] row : this.bookRepository.findSearchFieldsByIdIn(chunk)) {
+                Long id = (Long) row[0];
+                missing.remove(id);
+                if (SUGGESTIBLE_STATUSES.contains((BookStatus) row[4])) {
+                    current.put(new Doc(id, (String) row[1], (String) row[2], current.salesOf(id)));
+                } else {
+                    current.remove(id);
+                }
+            }
+            missing.forEach(current::remove);
+        }
+    }
+
+    @Override
+    public List<ResBookSuggestionDTO> suggest(String prefix, int limit) {
+        String key = String.join(" ", VietnameseTextNormalizer.tokenize(prefix));
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        return this.trie.lookup(key, Math.max(1, Math.min(limit, MAX_SUGGESTIONS)));
+    }
+
+    private Map<Long, Long> loadSales() {
+        Map<Long, Long> sales = new HashMap<>();
+        for (Object[] row : this.orderDetailRepository.sumQuantityByBookExcludingStatus(OrderStatus.CANCELLED)) {
+            sales.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        return sales;
+    }
+
+    private record Doc(Long id, String title, String author, long sales) {
+
+        // Mỗi vị trí bắt đầu từ trong title / author là một khóa, để "kim" khớp "Nhà giả kim"
+        List<String> keys() {
+            Set<String> keys = new LinkedHashSet<>();
+            addKeys(keys, title);
+            addKeys(keys, author);
+            return new ArrayList<>(keys);
+        }
+
+        private static void addKeys(Set<String> keys, String text) {
+            List<String> tokens = VietnameseTextNormalizer.tokenize(text);
+            for (int i = 0; i < tokens.size(); i++) {
+                String key = String.join(" ", tokens.subList(i, tokens.size()));
+                keys.add(key.length() > PrefixTrie.MAX_KEY_LENGTH ? key.substring(0, PrefixTrie.MAX_KEY_LENGTH) : key);
+            }
+        }
+    }
+
+    private static final class PrefixTrie {
+        private static final int MAX_KEY_LENGTH = 48;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Node root = new Node();
+        private final Map<Long, Doc> documents = new HashMap<>();
+        // Bán chạy trước, cùng số lượng thì id nhỏ trước để kết quả ổn định
+        private final Comparator<Long> rank = Comparator
+                .comparingLong((Long id) -> documents.get(id).sales()).reversed()
+                .thenComparing(Comparator.naturalOrder());
+
+        private static final class Node {
+            private final Map<Character, Node> children = new HashMap<>(4);
+            private Set<Long> terminals;
+            private List<Long> top = new ArrayList<>(0);
+        }
+
+        void put(Doc doc) {
+            lock.writeLock().lock();
+            try {
+                removeUnlocked(doc.id());
+                documents.put(doc.id(), doc);
+                for (String key : doc.keys()) {
+                    Node node = root;
+                    for (int i = 0; i < key.length(); i++) {
+                        node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+                        offer(node, doc.id());
+                    }
+                    if (node.terminals == null) {
+                        node.terminals = new HashSet<>(2);
+                    }
+                    node.terminals.add(doc.id());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Long id) {
+            lock.writeLock().lock();
+            try {
+                removeUnlocked(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        long salesOf(Long id) {
+            lock.readLock().lock();
+            try {
+                Doc doc = documents.get(id);
+                return doc == null ? 0 : doc.sales();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        List<ResBookSuggestionDTO> lookup(String prefix, int limit) {
+            lock.readLock().lock();
+            try {
+                Node node = root;
+                for (int i = 0; i < prefix.length() && node != null; i++) {
+                    node = node.children.get(prefix.charAt(i));
+                }
+                if (node == null) {
+                    return List.of();
+                }
+                List<ResBookSuggestionDTO> result = new ArrayList<>(Math.min(limit, node.top.size()));
+                for (Long id : node.top) {
+                    if (result.size() == limit) {
+                        break;
+                    }
+                    Doc doc = documents.get(id);
+                    result.add(new ResBookSuggestionDTO(doc.id(), doc.title(), doc.author()));
+                }
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return documents.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void offer(Node node, Long id) {
+            if (node.top.contains(id)) {
+                return;
+            }
+            if (node.top.size() == MAX_SUGGESTIONS
+                    && rank.compare(id, node.top.get(MAX_SUGGESTIONS - 1)) > 0) {
+                return;
+            }
+            int pos = Collections.binarySearch(node.top, id, rank);
+            node.top.add(pos < 0 ? -pos - 1 : pos, id);
+            if (node.top.size() > MAX_SUGGESTIONS) {
+                node.top.removeLast();
+            }
+        }
+
+        private void removeUnlocked(Long id) {
+            Doc old = documents.get(id);
+            if (old == null) {
+                return;
+            }
+            // Gỡ terminal của mọi khóa trước, sau đó tính lại top K từ node sâu nhất lên gốc
+            // để node cha luôn gộp từ top K đã sạch của node con
+            Map<Node, Integer> touched = new IdentityHashMap<>();
+            Map<Node, Node> parents = new IdentityHashMap<>();
+            Map<Node, Character> edges = new IdentityHashMap<>();
+            for (String key : old.keys()) {
+                Node node = root;
+                for (int i = 0; i < key.length() && node != null; i++) {
+                    Node child = node.children.get(key.charAt(i));
+                    if (child != null) {
+                        parents.put(child, node);
+                        edges.put(child, key.charAt(i));
+                        touched.put(child, i + 1);
+                    }
+                    node = child;
+                }
+                if (node != null && node.terminals != null) {
+                    node.terminals.remove(id);
+                }
+            }
+            List<Node> order = new ArrayList<>(touched.keySet());
+            order.sort(Comparator.comparingInt((Node n) -> touched.get(n)).reversed());
+            for (Node node : order) {
+                if (node.top.contains(id)) {
+                    recompute(node, id);
+                }
+                if (node.children.isEmpty() && (node.terminals == null || node.terminals.isEmpty())) {
+                    parents.get(node).children.remove(edges.get(node));
+                }
+            }
+            documents.remove(id);
+        }
+
+        private void recompute(Node node, Long removed) {
+            Set<Long> candidates = new HashSet<>();
+            if (node.terminals != null) {
+                candidates.addAll(node.terminals);
+            }
+            for (Node child : node.children.values()) {
+                candidates.addAll(child.top);
+            }
+            candidates.remove(removed);
+            List<Long> top = new ArrayList<>(candidates);
+            top.sort(rank);
+            node.top = top.size() > MAX_SUGGESTIONS ? new ArrayList<>(top.subList(0, MAX_SUGGESTIONS)) : top;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package iuh.fit.edu.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import iuh.fit.edu.dto.response.ApiResponse;
+import iuh.fit.edu.dto.response.ResultPaginationDTO;
+import iuh.fit.edu.dto.response.book.ResBookDTO;
+import iuh.fit.edu.dto.response.cache.CacheStatsDTO;
+import iuh.fit.edu.dto.response.cache.CachedJson;
+import iuh.fit.edu.dto.response.cache.CatalogPageKey;
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
+import iuh.fit.edu.event.BookChangedEvent;
+import iuh.fit.edu.service.CatalogCacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache Caffeine (W-TinyLFU) giới hạn theo dung lượng ước tính, tránh mỗi lượt xem sách
+ * đều phải truy vấn MariaDB. Cache bị xóa sau khi transaction ghi dữ liệu sách commit.
+ * Tầng ngoài cùng giữ luôn mảng byte JSON của response để request trúng cache không phải map
+ * MapStruct, bọc ApiResponse và serialize Jackson lần nữa.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class CatalogCacheServiceImpl implements CatalogCacheService {
+    private static final long MB = 1024L * 1024L;
+
+    private final Cache<Long, ResBookDTO> bookCache;
+    private final Cache<CatalogPageKey, ResultPaginationDTO> pageCache;
+    // Chỉ mục ngược id sách -> các trang đang chứa sách, và các trang phụ thuộc tồn kho: sự kiện tồn kho chỉ
+    // xóa đúng các trang này thay vì quét cả cache. Chỉ sửa trong thao tác nguyên tử của chính khóa trang
+    // (nạp, xóa, bị đẩy ra) nên luôn khớp với nội dung cache
+    private final ConcurrentHashMap<Long, Set<CatalogPageKey>> pagesByBook = new ConcurrentHashMap<>();
+    private final Set<CatalogPageKey> stockDependentPages = ConcurrentHashMap.newKeySet();
+    private final Cache<String, CachedJson> responseCache;
+    private final ObjectMapper objectMapper;
+    private final long bookMaxWeight;
+    private final long pageMaxWeight;
+    private final long responseMaxWeight;
+
+    public CatalogCacheServiceImpl(@Value("${catalog.cache.book.max-weight-mb:32}") long bookMaxWeightMb,
+                                   @Value("${catalog.cache.page.max-weight-mb:32}") long pageMaxWeightMb,
+                                   @Value("${catalog.cache.response.max-weight-mb:32}") long responseMaxWeightMb,
+                                   @Value("${catalog.cache.expire-after-write-minutes:30}") long expireMinutes,
+                                   ObjectMapper objectMapper) {
+        this.bookMaxWeight = bookMaxWeightMb * MB;
+        this.pageMaxWeight = pageMaxWeightMb * MB;
+        this.responseMaxWeight = responseMaxWeightMb * MB;
+        this.objectMapper = objectMapper;
+        this.bookCache = Caffeine.newBuilder()
+                .maximumWeight(this.bookMaxWeight)
+                .weigher((Long id, ResBookDTO dto) -> weigh(dto))
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .recordStats()
+                .build();
+        this.pageCache = Caffeine.newBuilder()
+                .maximumWeight(this.pageMaxWeight)
+                .weigher((CatalogPageKey key, ResultPaginationDTO page) -> weigh(page))
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .evictionListener((CatalogPageKey key, ResultPaginationDTO page, RemovalCause cause) -> unindex(key, page))
+                .recordStats()
+                .build();
+        this.responseCache = Caffeine.newBuilder()
+                .maximumWeight(this.responseMaxWeight)
+                .weigher((String key, CachedJson json) -> 64 + key.length() * 2 + json.body().length)
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public ResBookDTO getBook(Long id, Function<Long, ResBookDTO> loader) {
+        if (id == null) {
+            return null;
+        }
+        return this.bookCache.get(id, loader);
+    }
+
+    @Override
+    public ResultPaginationDTO getPage(CatalogPageKey key, Supplier<ResultPaginationDTO> loader) {
+        return this.pageCache.get(key, k -> {
+            ResultPaginationDTO page = loader.get();
+            if (page != null) {
+                index(k, page);
+            }
+            return page;
+        });
+    }
+
+    @Override
+    public CachedJson getBookResponse(Long id, String message, Supplier<Object> loader) {
+        return getResponse(bookResponseKey(id), message, loader);
+    }
+
+    @Override
+    public CachedJson getResponse(String key, String message, Supplier<Object> loader) {
+        return this.responseCache.get(key, k -> {
+            Object data = loader.get();
+            // Trả null thì Caffeine không lưu, lần sau (ví dụ sách vừa được tạo) sẽ nạp lại
+            return data == null ? null : serialize(ApiResponse.success(200, message, data));
+        });
+    }
+
+    @Override
+    public void evictBooks(Collection<Long> ids) {
+        if (ids != null && !ids.isEmpty()) {
+            // Xóa DTO trước response: request nạp lại response giữa hai bước sẽ đọc DTO mới
+            this.bookCache.invalidateAll(ids);
+            this.responseCache.invalidateAll(ids.stream().map(CatalogCacheServiceImpl::bookResponseKey).toList());
+        }
+    }
+
+    @Override
+    public void evictPages() {
+        for (CatalogPageKey key : this.pageCache.asMap().keySet()) {
+            evictPage(key);
+        }
+    }
+
+    // Chạy sau khi commit để request đọc song song không nạp lại dữ liệu cũ vào cache
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        evictBooks(event.bookIds());
+        if (event.stockOnly()) {
+            // Mỗi đơn hàng đều đổi tồn kho: chỉ xóa trang có chứa sách, không làm rỗng cả cache trang
+            int evicted = evictPagesContaining(event.bookIds());
+            log.debug("[CatalogCache] Evicted books {} and {} listing pages (stock)", event.bookIds(), evicted);
+            return;
+        }
+        evictPages();
+        log.debug("[CatalogCache] Evicted books {} and all listing pages", event.bookIds());
+    }
+
+    /**
+     * Trang lọc / sắp xếp theo số lượng có thể đổi thành phần nên cũng bị xóa
+     */
+    private int evictPagesContaining(Collection<Long> ids) {
+        Set<CatalogPageKey> affected = new HashSet<>(this.stockDependentPages);
+        for (Long id : ids) {
+            Set<CatalogPageKey> pages = this.pagesByBook.get(id);
+            if (pages != null) {
+                affected.addAll(pages);
+            }
+        }
+        affected.forEach(this::evictPage);
+        return affected.size();
+    }
+
+    private void evictPage(CatalogPageKey key) {
+        this.pageCache.asMap().computeIfPresent(key, (k, page) -> {
+            unindex(k, page);
+            return null;
+        });
+    }
+
+    private void index(CatalogPageKey key, ResultPaginationDTO page) {
+        Set<Long> ids = bookIdsOf(page);
+        if (key.stockDependent() || ids == null) {
+            this.stockDependentPages.add(key);
+        }
+        if (ids != null) {
+            for (Long id : ids) {
+                this.pagesByBook.compute(id, (k, pages) -> {
+                    Set<CatalogPageKey> keys = pages == null ? ConcurrentHashMap.newKeySet() : pages;
+                    keys.add(key);
+                    return keys;
+                });
+            }
+        }
+    }
+
+    private void unindex(CatalogPageKey key, ResultPaginationDTO page) {
+        this.stockDependentPages.remove(key);
+        Set<Long> ids = bookIdsOf(page);
+        if (ids != null) {
+            for (Long id : ids) {
+                this.pagesByBook.computeIfPresent(id, (k, pages) -> {
+                    pages.remove(key);
+                    return pages.isEmpty() ? null : pages;
+                });
+            }
+        }
+    }
+
+    /**
+     * @return null nếu không xác định được sách trong trang, khi đó coi trang phụ thuộc tồn kho
+     */
+    private static Set<Long> bookIdsOf(ResultPaginationDTO page) {
+        if (!(page.getResult() instanceof Collection<?> rows)) {
+            return null;
+        }
+        Set<Long> ids = new HashSet<>();
+        for (Object row : rows) {
+            Long id = row instanceof BookSummaryResponse summary ? summary.getId()
+                    : row instanceof ResBookDTO book ? book.getId() : null;
+            if (id == null) {
+                return null;
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    @Override
+    public List<CacheStatsDTO> getStats() {
+        return List.of(
+                toStats("books", this.bookCache, this.bookMaxWeight),
+                toStats("book-pages", this.pageCache, this.pageMaxWeight),
+                toStats("json-responses", this.responseCache, this.responseMaxWeight)
+        );
+    }
+
+    private static String bookResponseKey(Long id) {
+        return "book:" + id;
+    }
+
+    private CachedJson serialize(Object response) {
+        try {
+            byte[] body = this.objectMapper.writeValueAsBytes(response);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            // ETag mạnh: đổi khi và chỉ khi nội dung byte đổi
+            String etag = "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\"";
+            return new CachedJson(body, etag);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Không serialize được response: " + e.getMessage(), e);
+        }
+    }
+
+    private CacheStatsDTO toStats(String name, Cache<?, ?> cache, long maximumWeight) {
+        CacheStats stats = cache.stats();
+        long weightedSize = cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+        return new CacheStatsDTO(
+                name,
+                cache.estimatedSize(),
+                weightedSize,
+                maximumWeight,
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount(),
+                stats.evictionWeight(),
+                stats.averageLoadPenalty() / 1_000_000.0
+        );
+    }
+
+    // Ước lượng số byte của một DTO trên heap, đủ chính xác để giới hạn dung lượng cache
+    private static int weigh(ResBookDTO dto) {
+        long bytes = 256
+                + chars(dto.getIsbn()) + chars(dto.getTitle()) + chars(dto.getAuthor())
+                + chars(dto.getShortDes()) + chars(dto.getDescription())
+                + chars(dto.getCreatedBy()) + chars(dto.getUpdatedBy());
+        if (dto.getBookImage() != null) {
+            for (ResBookDTO.BookImage image : dto.getBookImage()) {
+                bytes += 48 + chars(image.getImagePath());
+            }
+        }
+        if (dto.getCategory() != null) {
+            for (ResBookDTO.Category category : dto.getCategory()) {
+                bytes += 64 + chars(category.getName()) + chars(category.getDescription());
+            }
+        }
+        if (dto.getReview() != null) {
+            for (ResBookDTO.Review review : dto.getReview()) {
+                bytes += 128 + chars(review.getComment()) + chars(review.getUserName())
+                        + chars(review.getUserAvatar()) + chars(review.getUserEmail());
+            }
+        }
+        if (dto.getSupplier() != null) {
+            ResBookDTO.Supplier s = dto.getSupplier();
+            bytes += 96 + chars(s.getAddress()) + chars(s.getCompanyName()) + chars(s.getEmail()) + chars(s.getPhone());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static int weigh(ResultPaginationDTO page) {
+        long bytes = 128;
+        if (page.getResult() instanceof Collection<?> items) {
+            for (Object item : items) {
+                bytes += item instanceof ResBookDTO dto ? weigh(dto) : 256;
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long chars(String value) {
+        return value == null ? 0 : 40L + 2L * value.length();
+    }
+}
@@ -0,0 +1,117 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.response.dashboard.CheckoutAdmissionStatsDTO;
+import iuh.fit.edu.exception.CheckoutOverloadedException;
+import iuh.fit.edu.service.CheckoutAdmissionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Semaphore công bằng: khách đến trước được vào trước, không có chen ngang khi có người đang chờ.
+ * Số checkout đồng thời mặc định nhỏ hơn Hikari pool để các request khác (xem sách, giỏ hàng) vẫn có
+ * connection. Khách vượt quá hàng đợi hoặc chờ quá max-wait nhận 429 ngay thay vì giữ thread Tomcat tới khi
+ * VNPay timeout.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class CheckoutAdmissionServiceImpl implements CheckoutAdmissionService {
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final long maxWaitMs;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedQueueFull = new LongAdder();
+    private final LongAdder rejectedTimeout = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder waitCount = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder checkoutNanos = new LongAdder();
+    private final LongAdder checkoutCount = new LongAdder();
+
+    public CheckoutAdmissionServiceImpl(@Value("${checkout.admission.max-concurrent:4}") int maxConcurrent,
+                                        @Value("${checkout.admission.max-queue:100}") int maxQueue,
+                                        @Value("${checkout.admission.max-wait-ms:3000}") long maxWaitMs) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = maxQueue;
+        this.maxWaitMs = maxWaitMs;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    @Override
+    public <T> T admit(Supplier<T> checkout) {
+        int ahead = this.permits.getQueueLength();
+        if (ahead >= this.maxQueue) {
+            this.rejectedQueueFull.increment();
+            throw overloaded("Hệ thống đang quá tải, vui lòng thử lại sau", ahead + 1);
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            // tryAcquire có timeout vẫn giữ thứ tự FIFO của semaphore công bằng
+            acquired = this.permits.tryAcquire(this.maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw overloaded("Yêu cầu thanh toán bị hủy, vui lòng thử lại", ahead + 1);
+        }
+        long waited = System.nanoTime() - start;
+        this.waitNanos.add(waited);
+        this.waitCount.increment();
+        this.maxWaitNanos.accumulate(waited);
+        if (!acquired) {
+            this.rejectedTimeout.increment();
+            throw overloaded("Đang có nhiều đơn hàng, vui lòng thử lại sau ít phút", this.permits.getQueueLength() + 1);
+        }
+
+        this.admitted.increment();
+        long begin = System.nanoTime();
+        try {
+            return checkout.get();
+        } finally {
+            this.checkoutNanos.add(System.nanoTime() - begin);
+            this.checkoutCount.increment();
+            this.permits.release();
+        }
+    }
+
+    private CheckoutOverloadedException overloaded(String message, int position) {
+        // Ước lượng: mỗi lượt xử lý maxConcurrent đơn, mỗi đơn mất trung bình averageCheckoutMs
+        double perCheckoutMs = averageCheckoutMs();
+        long retryAfter = (long) Math.ceil(position * (perCheckoutMs > 0 ? perCheckoutMs : 1000) / this.maxConcurrent / 1000);
+        log.warn("[CheckoutAdmission] Rejected at position {}, retry after {}s", position, retryAfter);
+        return new CheckoutOverloadedException(message, position, Math.max(1, retryAfter));
+    }
+
+    private double averageCheckoutMs() {
+        long count = this.checkoutCount.sum();
+        return count == 0 ? 0 : this.checkoutNanos.sum() / 1e6 / count;
+    }
+
+    @Override
+    public CheckoutAdmissionStatsDTO getStats() {
+        long waits = this.waitCount.sum();
+        return new CheckoutAdmissionStatsDTO(
+                this.maxConcurrent,
+                this.maxConcurrent - this.permits.availablePermits(),
+                this.permits.getQueueLength(),
+                this.maxQueue,
+                this.admitted.sum(),
+                this.rejectedQueueFull.sum(),
+                this.rejectedTimeout.sum(),
+                waits == 0 ? 0 : this.waitNanos.sum() / 1e6 / waits,
+                this.maxWaitNanos.get() / 1e6,
+                averageCheckoutMs()
+        );
+    }
+}
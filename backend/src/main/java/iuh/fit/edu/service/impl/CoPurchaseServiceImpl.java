@@ -0,0 +1,308 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
+import iuh.fit.edu.entity.constant.BookStatus;
+import iuh.fit.edu.event.OrderPlacedEvent;
+import iuh.fit.edu.repository.BookRepository;
+import iuh.fit.edu.service.CoPurchaseService;
+import iuh.fit.edu.util.LongIntHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Ma trận đồng mua thưa sách x sách: ô (a, b) là số đơn có cả a và b. Mỗi hàng là một LongIntHashMap
+ * nên không boxing cho từng cặp. Ma trận được dựng lại định kỳ từ lịch sử đơn hàng (chia theo đơn
+ * và chạy song song bằng fork-join) và cộng dồn ngay khi có đơn COD mới hoặc đơn VNPay được thanh toán.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class CoPurchaseServiceImpl implements CoPurchaseService {
+    // Chỉ tính đơn đã được xem là mua: COD hoặc đã thanh toán, và chưa bị hủy
+    private static final String HISTORY_SQL = "SELECT oi.order_id, oi.book_id FROM order_items oi " +
+            "JOIN orders o ON o.id = oi.order_id " +
+            "WHERE o.status <> 'CANCELLED' AND (o.payment_status = 'PAID' OR o.payment_method = 'COD') " +
+            "ORDER BY oi.order_id";
+    private static final List<BookStatus> LISTED_STATUSES = List.of(BookStatus.SALE, BookStatus.OUT_STOCK);
+    // Đơn sỉ quá lớn sinh O(n^2) cặp mà không mang nhiều tín hiệu nên chỉ lấy một phần
+    private static final int MAX_BASKET_SIZE = 50;
+    private static final int MAX_RELATED = 20;
+    private static final int FORK_THRESHOLD = 20_000;
+    // Số mã đơn vừa cộng được nhớ lại để bỏ qua sự kiện lặp
+    private static final int RECENT_ORDERS = 10_000;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final BookRepository bookRepository;
+
+    private final Object swapLock = new Object();
+    private volatile Matrix matrix = new Matrix(new HashMap<>());
+    // Khác null trong lúc đang rebuild: giữ các đơn mới để áp lại vào ma trận mới sau khi thay thế
+    private Queue<OrderPlacedEvent> pendingDuringRebuild;
+    // Các đơn đã cộng vào ma trận gần đây, cũ nhất đứng đầu; chỉ truy cập khi giữ swapLock
+    private final Set<Long> recentOrders = new LinkedHashSet<>();
+
+    public CoPurchaseServiceImpl(DataSource dataSource, BookRepository bookRepository,
+                                 @Value("${catalog.related.fetch-size:1000}") int fetchSize) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Scheduled(cron = "${catalog.related.rebuild-cron:0 30 3 * * *}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        synchronized (this.swapLock) {
+            // confirmOrder chỉ phát sự kiện khi đơn chuyển UNPAID -> PAID; đây là lớp chặn thứ hai để
+            // một đơn không bị cộng hai lần nếu sự kiện bị phát lặp
+            if (!rememberOrder(event.orderId())) {
+                log.debug("[CoPurchase] Order {} already counted, skipped", event.orderId());
+                return;
+            }
+            if (this.pendingDuringRebuild != null) {
+                this.pendingDuringRebuild.add(event);
+            }
+            this.matrix.addBasket(basketOf(event.bookIds()));
+        }
+    }
+
+    @Override
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (this.swapLock) {
+            this.pendingDuringRebuild = new ConcurrentLinkedQueue<>();
+        }
+
+        // Đọc lịch sử bằng cursor vào hai mảng long song song (đã sắp theo order_id)
+        LongArray orders = new LongArray();
+        LongArray books = new LongArray();
+        this.streamingJdbcTemplate.query(HISTORY_SQL, rs -> {
+            orders.add(rs.getLong(1));
+            books.add(rs.getLong(2));
+        });
+        long[] orderIds = orders.toArray();
+        long[] bookIds = books.toArray();
+
+        Map<Long, LongIntHashMap> rows = ForkJoinPool.commonPool()
+                .invoke(new BuildTask(orderIds, bookIds, 0, orderIds.length));
+        Matrix fresh = new Matrix(rows);
+
+        int replayed = 0;
+        synchronized (this.swapLock) {
+            this.matrix = fresh;
+            for (OrderPlacedEvent event : this.pendingDuringRebuild) {
+                if (Arrays.binarySearch(orderIds, event.orderId()) < 0) {
+                    fresh.addBasket(basketOf(event.bookIds()));
+                    replayed++;
+                }
+            }
+            this.pendingDuringRebuild = null;
+        }
+        log.info("[CoPurchase] Rebuilt matrix for {} books from {} order lines ({} replayed) in {} ms",
+                rows.size(), orderIds.length, replayed, System.currentTimeMillis() - start);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookSummaryResponse> getRelatedBooks(Long bookId, int limit) {
+        long[] top = this.matrix.top(bookId);
+        if (top.length == 0) {
+            return List.of();
+        }
+        List<Long> candidates = Arrays.stream(top).boxed().toList();
+        Set<Long> listed = new HashSet<>(this.bookRepository.findIdsByIdInAndStatusIn(candidates, LISTED_STATUSES));
+        List<Long> ids = candidates.stream()
+                .filter(listed::contains)
+                .limit(Math.max(1, Math.min(limit, MAX_RELATED)))
+                .toList();
+        // Giữ thứ tự theo số lần mua cùng
+        Map<Long, BookSummaryResponse> summaries = this.bookRepository.findSummariesByIds(ids).stream()
+                .collect(Collectors.toMap(BookSummaryResponse::getId, Function.identity()));
+        return ids.stream().map(summaries::get).filter(Objects::nonNull).toList();
+    }
+
+    private boolean rememberOrder(Long orderId) {
+        if (orderId == null) {
+            return true;
+        }
+        if (!this.recentOrders.add(orderId)) {
+            return false;
+        }
+        if (this.recentOrders.size() > RECENT_ORDERS) {
+            Iterator<Long> oldest = this.recentOrders.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+        return true;
+    }
+
+    private static long[] basketOf(Collection<Long> bookIds) {
+        return bookIds.stream()
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .distinct()
+                .limit(MAX_BASKET_SIZE)
+                .toArray();
+    }
+
+    private static void addBasket(Map<Long, LongIntHashMap> rows, long[] basket) {
+        for (long a : basket) {
+            LongIntHashMap row = null;
+            for (long b : basket) {
+                if (a == b) {
+                    continue;
+                }
+                if (row == null) {
+                    row = rows.computeIfAbsent(a, k -> new LongIntHashMap());
+                }
+                row.addTo(b, 1);
+            }
+        }
+    }
+
+    private static final class Matrix {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, LongIntHashMap> rows;
+        // top K theo từng sách, tính lười và xóa khi hàng đó thay đổi
+        private final Map<Long, long[]> topCache = new ConcurrentHashMap<>();
+
+        Matrix(Map<Long, LongIntHashMap> rows) {
+            this.rows = rows;
+        }
+
+        void addBasket(long[] basket) {
+            if (basket.length < 2) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                CoPurchaseServiceImpl.addBasket(rows, basket);
+                for (long id : basket) {
+                    topCache.remove(id);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        long[] top(Long bookId) {
+            long[] cached = topCache.get(bookId);
+            if (cached != null) {
+                return cached;
+            }
+            lock.readLock().lock();
+            try {
+                LongIntHashMap row = rows.get(bookId);
+                long[] top = row == null ? new long[0] : row.topKeys(MAX_RELATED);
+                topCache.put(bookId, top);
+                return top;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Chia mảng dòng đơn hàng tại ranh giới giữa hai đơn, mỗi nửa dựng ma trận riêng rồi cộng gộp
+     */
+    private static final class BuildTask extends RecursiveTask<Map<Long, LongIntHashMap>> {
+        private final long[] orderIds;
+        private final long[] bookIds;
+        private final int from;
+        private final int to;
+
+        BuildTask(long[] orderIds, long[] bookIds, int from, int to) {
+            this.orderIds = orderIds;
+            this.bookIds = bookIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Long, LongIntHashMap> compute() {
+            if (to - from > FORK_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                while (mid < to && orderIds[mid] == orderIds[mid - 1]) {
+                    mid++;
+                }
+                if (mid < to) {
+                    BuildTask left = new BuildTask(orderIds, bookIds, from, mid);
+                    BuildTask right = new BuildTask(orderIds, bookIds, mid, to);
+                    left.fork();
+                    Map<Long, LongIntHashMap> rightRows = right.compute();
+                    return merge(left.join(), rightRows);
+                }
+            }
+            Map<Long, LongIntHashMap> rows = new HashMap<>();
+            List<Long> basket = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                basket.add(bookIds[i]);
+                if (i + 1 == to || orderIds[i + 1] != orderIds[i]) {
+                    addBasket(rows, basketOf(basket));
+                    basket.clear();
+                }
+            }
+            return rows;
+        }
+
+        private static Map<Long, LongIntHashMap> merge(Map<Long, LongIntHashMap> a, Map<Long, LongIntHashMap> b) {
+            Map<Long, LongIntHashMap> target = a.size() >= b.size() ? a : b;
+            Map<Long, LongIntHashMap> source = target == a ? b : a;
+            source.forEach((bookId, row) -> {
+                LongIntHashMap existing = target.get(bookId);
+                if (existing == null) {
+                    target.put(bookId, row);
+                } else if (existing.size() >= row.size()) {
+                    existing.addAll(row);
+                } else {
+                    row.addAll(existing);
+                    target.put(bookId, row);
+                }
+            });
+            return target;
+        }
+    }
+
+    private static final class LongArray {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
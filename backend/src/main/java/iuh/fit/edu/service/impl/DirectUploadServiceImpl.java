@@ -0,0 +1,84 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.request.file.ReqPresignUploadDTO;
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
+import iuh.fit.edu.event.ImageUploadedEvent;
+import iuh.fit.edu.service.DirectUploadService;
+import iuh.fit.edu.service.S3Service;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class DirectUploadServiceImpl implements DirectUploadService {
+    private static final Set<String> IMAGE_TYPES = Set.of("image/jpeg", "image/png", "image/webp", "image/gif");
+
+    private final S3Service s3Service;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long maxImageBytes;
+
+    public DirectUploadServiceImpl(S3Service s3Service, ApplicationEventPublisher eventPublisher,
+                                   @Value("${aws.s3.upload.max-image-mb:10}") long maxImageMb) {
+        this.s3Service = s3Service;
+        this.eventPublisher = eventPublisher;
+        this.maxImageBytes = maxImageMb * 1024 * 1024;
+    }
+
+    @Override
+    public ResPresignedUploadDTO presignImage(String folder, ReqPresignUploadDTO request) {
+        if (request.getFileName() == null || request.getContentType() == null || request.getSize() == null
+                || request.getSize() <= 0) {
+            throw new IllegalArgumentException("Thiếu tên file, Content-Type hoặc kích thước file");
+        }
+        String contentType = request.getContentType().toLowerCase(Locale.ROOT);
+        if (!IMAGE_TYPES.contains(contentType)) {
+            throw new IllegalArgumentException("Chỉ hỗ trợ ảnh JPEG, PNG, WEBP hoặc GIF");
+        }
+        if (request.getSize() > this.maxImageBytes) {
+            throw new IllegalArgumentException("Ảnh vượt quá " + this.maxImageBytes / (1024 * 1024) + "MB");
+        }
+        return this.s3Service.presignUpload(folder, request.getFileName(), contentType, request.getSize());
+    }
+
+    @Override
+    public List<String> confirmImages(String folder, List<String> keys) {
+        String prefix = folder + "/";
+        List<String> confirmed = new ArrayList<>(keys.size());
+        List<String> rejected = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            // Không cho gắn object của folder khác (ảnh sách khác, avatar người khác)
+            if (key == null || !key.startsWith(prefix) || key.contains("..")) {
+                throw new IllegalArgumentException("Key không hợp lệ: " + key);
+            }
+            S3Service.StoredObject object = this.s3Service.getObjectInfo(key);
+            if (object == null) {
+                throw new IllegalArgumentException("File chưa được upload: " + key);
+            }
+            String contentType = object.contentType() == null ? "" : object.contentType().toLowerCase(Locale.ROOT);
+            if (!IMAGE_TYPES.contains(contentType) || object.size() > this.maxImageBytes) {
+                rejected.add(key);
+            } else {
+                confirmed.add(key);
+            }
+        }
+        if (!rejected.isEmpty()) {
+            this.s3Service.deleteFiles(rejected);
+            log.warn("[DirectUpload] Rejected {} objects in {}: {}", rejected.size(), folder, rejected);
+            throw new IllegalArgumentException("File không phải ảnh hợp lệ hoặc quá lớn: " + String.join(", ", rejected));
+        }
+        this.eventPublisher.publishEvent(new ImageUploadedEvent(confirmed));
+        return confirmed;
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.response.dashboard.EmailOutboxStatsDTO;
+import iuh.fit.edu.dto.response.order.OrderEmailView;
+import iuh.fit.edu.entity.EmailOutbox;
+import iuh.fit.edu.entity.Order;
+import iuh.fit.edu.entity.constant.EmailOutboxStatus;
+import iuh.fit.edu.repository.BookRepository;
+import iuh.fit.edu.repository.EmailOutboxRepository;
+import iuh.fit.edu.repository.OrderDetailRepository;
+import iuh.fit.edu.repository.OrderRepository;
+import iuh.fit.edu.service.EmailOutboxService;
+import iuh.fit.edu.service.EmailService;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * @description Một thread điều phối nhận lô email tới hạn (khóa dòng rồi đánh dấu SENDING), chia lô cho
+ * pool worker riêng; mỗi worker render rồi gửi cả phần của mình qua một kết nối SMTP duy nhất
+ * (JavaMailSender.send nhiều message một lần). Gửi lỗi thì thử lại với backoff lũy thừa, quá số lần thì FAILED.
+ * Worker được đánh thức ngay sau khi transaction tạo đơn commit, lượt quét định kỳ chỉ để dự phòng.
+ * @author: Huu Thai
+ * @date:
+ * @version: 1.0
+ */
+@Slf4j
+@Service
+public class EmailOutboxServiceImpl implements EmailOutboxService {
+    private static final List<EmailOutboxStatus> DUE_STATUSES = List.of(EmailOutboxStatus.PENDING, EmailOutboxStatus.SENDING);
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final OrderRepository orderRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final BookRepository bookRepository;
+    private final EmailService emailService;
+    private final JavaMailSender javaMailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int workers;
+    private final int maxAttempts;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final long claimTimeoutMs;
+
+    private final ThreadPoolExecutor dispatcher;
+    private final ExecutorService workerPool;
+
+    private final LongAdder renderNanos = new LongAdder();
+    private final LongAdder renderCount = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder sendNanos = new LongAdder();
+    private final LongAdder sendCount = new LongAdder();
+    private final LongAdder deliveryMillis = new LongAdder();
+    private final LongAccumulator maxDeliveryMillis = new LongAccumulator(Math::max, 0);
+
+    public EmailOutboxServiceImpl(EmailOutboxRepository emailOutboxRepository, OrderRepository orderRepository,
+                                  OrderDetailRepository orderDetailRepository, BookRepository bookRepository,
+                                  EmailService emailService, JavaMailSender javaMailSender,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${email.outbox.batch-size:50}") int batchSize,
+                                  @Value("${email.outbox.workers:2}") int workers,
+                                  @Value("${email.outbox.max-attempts:6}") int maxAttempts,
+                                  @Value("${email.outbox.backoff-base-ms:30000}") long backoffBaseMs,
+                                  @Value("${email.outbox.backoff-max-ms:3600000}") long backoffMaxMs,
+                                  @Value("${email.outbox.claim-timeout-ms:300000}") long claimTimeoutMs) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.orderRepository = orderRepository;
+        this.orderDetailRepository = orderDetailRepository;
+        this.bookRepository = bookRepository;
+        this.emailService = emailService;
+        this.javaMailSender = javaMailSender;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.claimTimeoutMs = claimTimeoutMs;
+        // Hàng đợi 1 chỗ + bỏ qua: nhiều lần đánh thức dồn lại thành một lượt xử lý
+        this.dispatcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                Thread.ofPlatform().name("email-outbox-dispatcher").daemon(true).factory(),
+                new ThreadPoolExecutor.DiscardPolicy());
+        this.workerPool = Executors.newFixedThreadPool(workers,
+                Thread.ofPlatform().name("email-outbox-", 0).daemon(true).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.dispatcher.shutdownNow();
+        this.workerPool.shutdownNow();
+    }
+
+    @Override
+    public void enqueueOrderEmail(Order order, String subject, String templateName) {
+        // Người gọi vừa tạo đơn hoặc đang khóa dòng đơn nên hai lần ghi cùng đơn không chạy song song;
+        // khóa duy nhất (order_id, template_name) chặn nốt các trường hợp còn lại
+        if (this.emailOutboxRepository.existsByOrderIdAndTemplateName(order.getId(), templateName)) {
+            log.info("[EmailOutbox] Email {} for order {} already queued, skipped", templateName, order.getId());
+            return;
+        }
+        EmailOutbox email = new EmailOutbox();
+        email.setRecipient(order.getReceiverEmail());
+        email.setSubject(subject);
+        email.setTemplateName(templateName);
+        email.setOrderId(order.getId());
+        email.setStatus(EmailOutboxStatus.PENDING);
+        email.setCreatedAt(OffsetDateTime.now());
+        email.setNextAttemptAt(email.getCreatedAt());
+        this.emailOutboxRepository.save(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wake();
+                }
+            });
+        } else {
+            wake();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        wake();
+    }
+
+    @Scheduled(fixedDelayString = "${email.outbox.poll-ms:10000}")
+    public void poll() {
+        wake();
+    }
+
+    private void wake() {
+        try {
+            this.dispatcher.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // Đang tắt ứng dụng, email còn lại được gửi ở lần khởi động sau
+        }
+    }
+
+    private void drain() {
+        try {
+            List<EmailOutbox> batch;
+            do {
+                batch = claim();
+                if (batch.isEmpty()) {
+                    return;
+                }
+                int chunkSize = (batch.size() + this.workers - 1) / this.workers;
+                List<Future<?>> futures = new ArrayList<>();
+                for (int from = 0; from < batch.size(); from += chunkSize) {
+                    List<EmailOutbox> chunk = batch.subList(from, Math.min(from + chunkSize, batch.size()));
+                    futures.add(this.workerPool.submit(() -> send(chunk)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } while (batch.size() == this.batchSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RuntimeException e) {
+            // Email đã nhận sẽ được nhận lại khi hết claim-timeout
+            log.error("[EmailOutbox] Drain failed: {}", e.getMessage());
+        }
+    }
+
+    private List<EmailOutbox> claim() {
+        List<EmailOutbox> batch = this.transactionTemplate.execute(status -> {
+            OffsetDateTime now = OffsetDateTime.now();
+            List<EmailOutbox> due = this.emailOutboxRepository.findDueForUpdate(
+                    DUE_STATUSES, now, PageRequest.of(0, this.batchSize));
+            if (!due.isEmpty()) {
+                this.emailOutboxRepository.claim(due.stream().map(EmailOutbox::getId).toList(),
+                        EmailOutboxStatus.SENDING, now.plus(Duration.ofMillis(this.claimTimeoutMs)));
+            }
+            return due;
+        });
+        return batch == null ? List.of() : batch;
+    }
+
+    private void send(List<EmailOutbox> chunk) {
+        Map<Long, OrderEmailView> views;
+        try {
+            views = loadViews(chunk.stream().map(EmailOutbox::getOrderId).distinct().toList());
+        } catch (RuntimeException e) {
+            chunk.forEach(email -> failed(email, e));
+            return;
+        }
+        Map<MimeMessage, EmailOutbox> messages = new LinkedHashMap<>();
+        for (EmailOutbox email : chunk) {
+            try {
+                OrderEmailView view = views.get(email.getOrderId());
+                if (view == null) {
+                    throw new IllegalStateException("Không tìm thấy đơn hàng " + email.getOrderId());
+                }
+                messages.put(createMessage(email, view), email);
+            } catch (MessagingException | RuntimeException e) {
+                failed(email, e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Map<EmailOutbox, Exception> failures = new HashMap<>();
+        long start = System.nanoTime();
+        try {
+            // Một lần gọi = một kết nối SMTP cho cả phần lô
+            this.javaMailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            e.getFailedMessages().forEach((message, error) -> {
+                EmailOutbox email = messages.get(message);
+                if (email != null) {
+                    failures.put(email, error);
+                }
+            });
+            if (failures.isEmpty()) {
+                messages.values().forEach(email -> failures.put(email, e));
+            }
+        } catch (MailException e) {
+            messages.values().forEach(email -> failures.put(email, e));
+        }
+        this.sendNanos.add(System.nanoTime() - start);
+        this.sendCount.add(messages.size());
+
+        OffsetDateTime now = OffsetDateTime.now();
+        List<Long> sentIds = new ArrayList<>();
+        for (EmailOutbox email : messages.values()) {
+            Exception error = failures.get(email);
+            if (error != null) {
+                failed(email, error);
+                continue;
+            }
+            sentIds.add(email.getId());
+            long delivery = Duration.between(email.getCreatedAt(), now).toMillis();
+            this.deliveryMillis.add(delivery);
+            this.maxDeliveryMillis.accumulate(delivery);
+        }
+        if (!sentIds.isEmpty()) {
+            this.transactionTemplate.executeWithoutResult(status ->
+                    this.emailOutboxRepository.markSent(sentIds, EmailOutboxStatus.SENT, now));
+            this.sent.add(sentIds.size());
+        }
+    }
+
+    /**
+     * Chốt view cho cả phần lô bằng 3 truy vấn cố định (đơn, dòng hàng, ảnh đại diện) bất kể số đơn và số dòng;
+     * sau đó render hoàn toàn ngoài transaction.
+     */
+    private Map<Long, OrderEmailView> loadViews(List<Long> orderIds) {
+        return this.transactionTemplate.execute(status -> {
+            List<OrderEmailView.Line> lines = this.orderDetailRepository.findEmailLinesByOrderIdIn(orderIds);
+            Map<Long, String> imageKeys = new HashMap<>();
+            List<Long> bookIds = lines.stream().map(OrderEmailView.Line::getBookId).distinct().toList();
+            if (!bookIds.isEmpty()) {
+                for (Object[] row : this.bookRepository.findFirstImageKeysByIdIn(bookIds)) {
+                    imageKeys.put((Long) row[0], (String) row[1]);
+                }
+            }
+            Map<Long, List<OrderEmailView.Item>> itemsByOrder = new HashMap<>();
+            for (OrderEmailView.Line line : lines) {
+                itemsByOrder.computeIfAbsent(line.getOrderId(), id -> new ArrayList<>())
+                        .add(OrderEmailView.Item.of(line.getTitle(), imageKeys.get(line.getBookId()),
+                                line.getQuantity(), line.getPrice()));
+            }
+            Map<Long, OrderEmailView> views = new HashMap<>();
+            for (OrderEmailView.Header header : this.orderRepository.findEmailHeadersByIdIn(orderIds)) {
+                views.put(header.getId(), OrderEmailView.of(header,
+                        itemsByOrder.getOrDefault(header.getId(), List.of())));
+            }
+            return views;
+        });
+    }
+
+    private MimeMessage createMessage(EmailOutbox email, OrderEmailView view) throws MessagingException {
+        long start = System.nanoTime();
+        String html = this.emailService.renderOrderTemplate(email.getTemplateName(), view);
+        this.renderNanos.add(System.nanoTime() - start);
+        this.renderCount.increment();
+        MimeMessage mimeMessage = this.javaMailSender.createMimeMessage();
+        MimeMessageHelper message = new MimeMessageHelper(mimeMessage, false, StandardCharsets.UTF_8.name());
+        message.setTo(email.getRecipient());
+        message.setSubject(email.getSubject());
+        message.setText(html, true);
+        return mimeMessage;
+    }
+
+    private void failed(EmailOutbox email, Exception error) {
+        int attempts = email.getAttempts() + 1;
+        boolean exhausted = attempts >= this.maxAttempts;
+        // 30s, 1 phút, 2 phút... tối đa backoff-max, cộng ngẫu nhiên để các email lỗi cùng lúc không dồn lại
+        long backoff = Math.min(this.backoffMaxMs, this.backoffBaseMs << Math.min(attempts - 1, 20));
+        long jitter = ThreadLocalRandom.current().nextLong(Math.max(1, backoff / 5));
+        OffsetDateTime nextAttemptAt = OffsetDateTime.now().plus(Duration.ofMillis(backoff + jitter));
+        String message = String.valueOf(error.getMessage());
+        String lastError = message.length() > 1000 ? message.substring(0, 1000) : message;
+        this.transactionTemplate.executeWithoutResult(status -> this.emailOutboxRepository.markFailed(
+                email.getId(),
+                exhausted ? EmailOutboxStatus.FAILED : EmailOutboxStatus.PENDING,
+                attempts,
+                nextAttemptAt,
+                lastError));
+        if (exhausted) {
+            log.error("[EmailOutbox] Gave up email {} to {} after {} attempts: {}",
+                    email.getId(), email.getRecipient(), attempts, lastError);
+        } else {
+            this.retried.increment();
+            log.warn("[EmailOutbox] Email {} failed (attempt {}), retry at {}: {}",
+                    email.getId(), attempts, nextAttemptAt, lastError);
+        }
+    }
+
+    @Override
+    public EmailOutboxStatsDTO getStats() {
+        long renders = this.renderCount.sum();
+        long sends = this.sendCount.sum();
+        long delivered = this.sent.sum();
+        return new EmailOutboxStatsDTO(
+                this.emailOutboxRepository.countByStatusIn(DUE_STATUSES),
+                this.emailOutboxRepository.countByStatus(EmailOutboxStatus.FAILED),
+                delivered,
+                this.retried.sum(),
+                renders == 0 ? 0 : this.renderNanos.sum() / 1e6 / renders,
+                sends == 0 ? 0 : this.sendNanos.sum() / 1e6 / sends,
+                delivered == 0 ? 0 : (double) this.deliveryMillis.sum() / delivered,
+                this.maxDeliveryMillis.get()
+        );
+    }
+}
@@ -4,10 +4,10 @@
  */
 package iuh.fit.edu.service.impl;
 
-import iuh.fit.edu.entity.Order;
+import iuh.fit.edu.dto.response.order.OrderEmailView;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.MailException;
 import org.springframework.mail.MailSender;
 import org.springframework.mail.javamail.JavaMailSender;
@@ -17,19 +17,38 @@ import org.springframework.stereotype.Service;
 import org.thymeleaf.context.Context;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 
 /*
- * @description
+ * @description Template được Thymeleaf parse một lần rồi cache (spring.thymeleaf.cache); mỗi thread render giữ
+ * lại Context và buffer của mình để lần render sau không phải cấp phát lại
  * @author: Huu Thai
  * @date:
  * @version: 1.0
  */
 @Service
-@RequiredArgsConstructor
 public class EmailServiceImpl implements iuh.fit.edu.service.EmailService {
+    // Email 1 dòng khoảng 20K ký tự, 100 dòng khoảng 170K; buffer phình quá ngưỡng thì bỏ để không giữ bộ nhớ mãi
+    private static final int INITIAL_BUFFER = 32 * 1024;
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+
     private final JavaMailSender javaMailSender;
     private final SpringTemplateEngine templateEngine;
+    private final String imageBaseUrl;
+    private final ThreadLocal<RenderBuffer> renderBuffers = ThreadLocal.withInitial(RenderBuffer::new);
+
+    private static class RenderBuffer {
+        private final Context context = new Context();
+        private StringWriter writer = new StringWriter(INITIAL_BUFFER);
+    }
+
+    public EmailServiceImpl(JavaMailSender javaMailSender, SpringTemplateEngine templateEngine,
+                            @Value("${email.image-base-url:}") String imageBaseUrl) {
+        this.javaMailSender = javaMailSender;
+        this.templateEngine = templateEngine;
+        this.imageBaseUrl = imageBaseUrl.isBlank() ? null : imageBaseUrl;
+    }
 
 
     @Override
@@ -47,22 +66,29 @@ public class EmailServiceImpl implements iuh.fit.edu.service.EmailService {
         }
     }
 
+    @Override
+    public String renderOrderTemplate(String templateName, OrderEmailView order) {
+        RenderBuffer buffer = this.renderBuffers.get();
+        buffer.context.clearVariables();
+        buffer.context.setVariable("order", order);
+        buffer.context.setVariable("imageBaseUrl", this.imageBaseUrl);
+        StringBuffer html = buffer.writer.getBuffer();
+        html.setLength(0);
+        try {
+            this.templateEngine.process(templateName, buffer.context, buffer.writer);
+            return html.toString();
+        } finally {
+            buffer.context.clearVariables();
+            if (html.capacity() > MAX_RETAINED_BUFFER) {
+                buffer.writer = new StringWriter(INITIAL_BUFFER);
+            }
+        }
+    }
+
     @Async
     @Override
     public void sendEmailFromTemplateSync(String to, String subject,
-                                          String templateName, Order order) {
-        Context context = new Context();
-        double subtotal = order.getOrderItems()
-                .stream()
-                .mapToDouble(item -> item.getPrice() * item.getQuantity())
-                .sum();
-
-        double discount = order.getTotalPrice() - subtotal;
-        System.out.println(subtotal);
-        context.setVariable("subtotal", subtotal);
-        context.setVariable("discount", discount);
-        context.setVariable("order", order);
-        String content = this.templateEngine.process(templateName, context);
-        this.sendEmailSync(to, subject, content, false, true);
+                                          String templateName, OrderEmailView order) {
+        this.sendEmailSync(to, subject, renderOrderTemplate(templateName, order), false, true);
     }
 }
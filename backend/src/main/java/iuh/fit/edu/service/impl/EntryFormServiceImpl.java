@@ -6,9 +6,12 @@ import iuh.fit.edu.dto.response.ResultPaginationDTO;
 import iuh.fit.edu.dto.response.entryform.ResEntryFormDTO;
 import iuh.fit.edu.dto.response.entryform.ResEntryFormDetailDTO;
 import iuh.fit.edu.entity.*;
+import iuh.fit.edu.event.BookChangedEvent;
 import iuh.fit.edu.repository.*;
 import iuh.fit.edu.service.EntryFormService;
+import iuh.fit.edu.util.KeysetPagination;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -31,6 +34,7 @@ public class EntryFormServiceImpl implements EntryFormService {
     private final InventoryRepository inventoryRepository;
     private final BookRepository bookRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public ResultPaginationDTO getAllEntryForms(Specification<EntryForm> spec, Pageable pageable) {
@@ -51,6 +55,24 @@ public class EntryFormServiceImpl implements EntryFormService {
         return rs;
     }
 
+    @Override
+    public ResultPaginationDTO getAllEntryFormsByCursor(Specification<EntryForm> spec, Pageable pageable, String cursor) {
+        KeysetPagination.Slice<EntryForm> slice =
+                KeysetPagination.fetch(this.entryFormRepository, spec, pageable, cursor);
+        ResultPaginationDTO rs = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta mt = new ResultPaginationDTO.Meta();
+
+        mt.setPageSize(pageable.getPageSize());
+        mt.setNextCursor(slice.nextCursor());
+
+        rs.setMeta(mt);
+        rs.setResult(slice.content().stream()
+                .map(this::convertToResEntryFormDTO)
+                .toList());
+
+        return rs;
+    }
+
     @Override
     public ResEntryFormDTO convertToResEntryFormDTO(EntryForm entryForm) {
         ResEntryFormDTO dto = new ResEntryFormDTO();
@@ -149,6 +171,8 @@ public class EntryFormServiceImpl implements EntryFormService {
         }
         
         entryFormDetailRepository.saveAll(details);
+        this.eventPublisher.publishEvent(BookChangedEvent.stock(
+                details.stream().map(detail -> detail.getBook().getId()).distinct().toList()));
 
         return convertToResEntryFormDTO(savedEntryForm);
     }
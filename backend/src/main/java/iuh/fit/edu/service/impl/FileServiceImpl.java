@@ -1,22 +1,81 @@
 package iuh.fit.edu.service.impl;
 
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
+import iuh.fit.edu.event.ImageUploadedEvent;
 import iuh.fit.edu.service.FileService;
+import iuh.fit.edu.service.S3Service;
+import iuh.fit.edu.util.ImageDerivatives;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
 
+/**
+ * Backend lưu trữ trên đĩa, thay thế S3ServiceImpl khi storage.type=local (on-prem hoặc chạy offline).
+ * File vật lý nằm ở base-uri/ab/cd/sha256(key).ext: hai cấp shard 256 x 256 giữ mỗi thư mục ở mức vài
+ * trăm file kể cả khi có hàng trăm triệu file. File được phục vụ qua FileController tại /files/{key}.
+ * <p>
+ * Upload trực tiếp giống presigned URL của S3: URL PUT /files/{key}?expires=..&signature=.. mang chữ ký
+ * HMAC-SHA256 của key, Content-Type, kích thước và thời điểm hết hạn, nên không cần đăng nhập khi PUT.
+ */
+@Slf4j
 @Service
-public class FileServiceImpl implements FileService {
-    @Value("${king.upload-file.base-uri}")
-    private String baseUri;
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+public class FileServiceImpl implements FileService, S3Service {
+    private static final String SIGNING_ALGORITHM = "HmacSHA256";
+
+    private final Path root;
+    private final String baseUrl;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SecretKeySpec signingKey;
+    private final Duration presignTtl;
+
+    public FileServiceImpl(@Value("${king.upload-file.base-uri}") String baseUri,
+                           @Value("${storage.local.base-url:http://localhost:8080/files/}") String baseUrl,
+                           @Value("${storage.local.signing-secret:}") String signingSecret,
+                           @Value("${storage.local.presign-expire-minutes:10}") long presignExpireMinutes,
+                           ApplicationEventPublisher eventPublisher) throws URISyntaxException, IOException {
+        this.root = Paths.get(new URI(baseUri)).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.eventPublisher = eventPublisher;
+        this.presignTtl = Duration.ofMinutes(presignExpireMinutes);
+        byte[] secret;
+        if (signingSecret.isBlank()) {
+            // URL đã cấp mất hiệu lực khi khởi động lại, nhiều instance phải cấu hình chung một secret
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            log.warn("[Storage] storage.local.signing-secret is not set, using a random key for upload URLs");
+        } else {
+            secret = signingSecret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.signingKey = new SecretKeySpec(secret, SIGNING_ALGORITHM);
+        Files.createDirectories(this.root);
+        log.info("[Storage] Using local storage at {}", this.root);
+    }
 
     @Override
     public void createDirectory(String folder) throws URISyntaxException {
@@ -37,14 +96,215 @@ public class FileServiceImpl implements FileService {
             System.out.println(">>> SKIP MAKING DIRECTORY, ALREADY EXISTS");
         }
     }
+
     @Override
-    public String store(MultipartFile file, String folder) throws URISyntaxException, IOException {
-        String finalName = System.currentTimeMillis() + "-" + file.getOriginalFilename();
-        URI uri = new URI(baseUri + folder + "/" + finalName);
-        Path path = Paths.get(uri);
-        try (InputStream inputStream = file.getInputStream()) {
-            Files.copy(inputStream, path, StandardCopyOption.REPLACE_EXISTING);
+    public String store(MultipartFile file, String folder) throws IOException {
+        String fileName = UUID.randomUUID() + "-" + file.getOriginalFilename();
+        String key = folder != null && !folder.isEmpty() ? folder + "/" + fileName : fileName;
+        Path target = pathOf(key);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "upload-", ".part");
+        try {
+            // Part Tomcat đã nằm trên đĩa thì transferTo chỉ là đổi tên file, không copy dữ liệu
+            file.transferTo(temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return key;
+    }
+
+    @Override
+    public boolean verifyUpload(String key, String contentType, long size, long expires, String signature) {
+        if (key == null || key.isEmpty() || key.contains("..") || contentType == null || signature == null) {
+            return false;
+        }
+        if (Instant.now().getEpochSecond() > expires) {
+            return false;
+        }
+        byte[] expected = sign(key, contentType, size, expires).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void storeUpload(String key, InputStream content, long size) throws IOException {
+        Path target = pathOf(key);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "put-", ".part");
+        try {
+            long written = 0;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                // Dừng ngay khi vượt kích thước đã ký, không đọc hết body quá dài
+                while (written <= size && (read = content.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    written += read;
+                }
+            }
+            if (written != size) {
+                throw new IllegalArgumentException("Kích thước file khác kích thước đã ký: " + written + "/" + size);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public Path locate(String key) {
+        if (key == null || key.isEmpty() || key.contains("..")) {
+            return null;
+        }
+        Path path = pathOf(key);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    // ------------------------------------------------------------------
+    //              S3Service
+    // ------------------------------------------------------------------
+
+    @Override
+    public String uploadFile(MultipartFile file, String folder) {
+        String key = storeOrThrow(file, folder);
+        this.eventPublisher.publishEvent(new ImageUploadedEvent(List.of(key)));
+        return key;
+    }
+
+    @Override
+    public List<String> uploadFiles(List<MultipartFile> files, String folder) {
+        List<String> keys = new ArrayList<>(files.size());
+        try {
+            for (MultipartFile file : files) {
+                keys.add(storeOrThrow(file, folder));
+            }
+        } catch (RuntimeException e) {
+            deleteFiles(keys);
+            throw e;
+        }
+        this.eventPublisher.publishEvent(new ImageUploadedEvent(keys));
+        return keys;
+    }
+
+    private String storeOrThrow(MultipartFile file, String folder) {
+        try {
+            return store(file, folder);
+        } catch (IOException e) {
+            throw new RuntimeException("Upload failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteFiles(Collection<String> keys) {
+        for (String key : keys) {
+            delete(key);
+            for (ImageDerivatives.Size size : ImageDerivatives.Size.values()) {
+                delete(ImageDerivatives.keyOf(key, size));
+            }
+        }
+    }
+
+    private void delete(String key) {
+        try {
+            Files.deleteIfExists(pathOf(key));
+        } catch (IOException e) {
+            log.error("[Storage] Không xóa được {}: {}", key, e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] downloadFile(String key) {
+        try {
+            return Files.readAllBytes(pathOf(key));
+        } catch (IOException e) {
+            throw new RuntimeException("Download failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void putFile(String key, byte[] content, String contentType) {
+        try {
+            Path target = pathOf(key);
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), "put-", ".part");
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Upload failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return locate(key) != null;
+    }
+
+    @Override
+    public ResPresignedUploadDTO presignUpload(String folder, String fileName, String contentType, long size) {
+        String key = folder + "/" + UUID.randomUUID() + "-" + S3ServiceImpl.sanitizeFileName(fileName);
+        // Storage local suy Content-Type từ phần mở rộng lúc confirm nên hai giá trị phải khớp ngay từ đầu
+        if (!contentTypeOf(key).equalsIgnoreCase(contentType)) {
+            throw new IllegalArgumentException("Phần mở rộng của " + fileName + " không khớp Content-Type " + contentType);
+        }
+        Instant expiresAt = Instant.now().plus(this.presignTtl);
+        long expires = expiresAt.getEpochSecond();
+        String url = this.baseUrl + UriUtils.encodePath(key, StandardCharsets.UTF_8)
+                + "?expires=" + expires + "&signature=" + sign(key, contentType, size, expires);
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", contentType);
+        headers.put("Content-Length", String.valueOf(size));
+        return new ResPresignedUploadDTO(key, url, "PUT", headers, expiresAt);
+    }
+
+    private String sign(String key, String contentType, long size, long expires) {
+        try {
+            Mac mac = Mac.getInstance(SIGNING_ALGORITHM);
+            mac.init(this.signingKey);
+            String payload = key + "\n" + contentType.toLowerCase(Locale.ROOT) + "\n" + size + "\n" + expires;
+            return HexFormat.of().formatHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public StoredObject getObjectInfo(String key) {
+        Path path = locate(key);
+        if (path == null) {
+            return null;
+        }
+        try {
+            return new StoredObject(Files.size(path), contentTypeOf(key));
+        } catch (IOException e) {
+            throw new RuntimeException("Không đọc được file: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String getFileUrl(String fileName) {
+        return this.baseUrl + fileName;
+    }
+
+    public static String contentTypeOf(String key) {
+        return MediaTypeFactory.getMediaType(key).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+
+    private Path pathOf(String key) {
+        String hash = sha256(key);
+        int slash = key.lastIndexOf('/');
+        int dot = key.lastIndexOf('.');
+        // Giữ phần mở rộng để dễ nhận biết khi xem thư mục bằng tay
+        String extension = dot > slash && key.length() - dot <= 8 ? key.substring(dot).replaceAll("[^A-Za-z0-9.]", "") : "";
+        return this.root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash + extension);
+    }
+
+    private static String sha256(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
-        return finalName;
     }
 }
@@ -0,0 +1,176 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.event.ImageUploadedEvent;
+import iuh.fit.edu.repository.BookRepository;
+import iuh.fit.edu.service.ImageDerivativeService;
+import iuh.fit.edu.service.S3Service;
+import iuh.fit.edu.util.DiskCache;
+import iuh.fit.edu.util.ImageDerivatives;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.*;
+
+/**
+ * Resize là việc tốn CPU nên chạy trên pool cố định riêng, hàng đợi có giới hạn để một đợt import ảnh lớn
+ * không làm đầy heap. Ảnh phái sinh đã render được giữ trong cache đĩa để lần sinh lại (backfill, upload lỗi
+ * giữa chừng) không phải tải và decode ảnh gốc lần nữa.
+ *
+ * Định dạng xuất là JPEG vì ImageIO của JDK không có writer WebP.
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class ImageDerivativeServiceImpl implements ImageDerivativeService {
+    private final S3Service s3Service;
+    private final BookRepository bookRepository;
+    private final DiskCache cache;
+    private final ThreadPoolExecutor executor;
+    private final boolean backfillOnStartup;
+    private final long maxPixels;
+
+    public ImageDerivativeServiceImpl(S3Service s3Service, BookRepository bookRepository,
+                                      @Value("${catalog.image.cache-dir:./cache/images}") String cacheDir,
+                                      @Value("${catalog.image.cache-max-mb:256}") long cacheMaxMb,
+                                      @Value("${catalog.image.workers:2}") int workers,
+                                      @Value("${catalog.image.queue-capacity:1000}") int queueCapacity,
+                                      @Value("${catalog.image.max-pixels:25000000}") long maxPixels,
+                                      @Value("${catalog.image.backfill-on-startup:false}") boolean backfillOnStartup) {
+        this.s3Service = s3Service;
+        this.bookRepository = bookRepository;
+        this.cache = new DiskCache(Path.of(cacheDir), cacheMaxMb * 1024 * 1024);
+        this.maxPixels = maxPixels;
+        this.backfillOnStartup = backfillOnStartup;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("image-derivative-", 0).daemon(true).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    @EventListener
+    public void onImageUploaded(ImageUploadedEvent event) {
+        generateAsync(event.keys());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (this.backfillOnStartup) {
+            submit(this::backfill, "backfill");
+        }
+    }
+
+    @Override
+    public void generateAsync(Collection<String> originalKeys) {
+        for (String key : originalKeys) {
+            submit(() -> generate(key), key);
+        }
+    }
+
+    @Override
+    public boolean backfillAsync() {
+        try {
+            this.executor.execute(this::backfill);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void backfill() {
+        long start = System.currentTimeMillis();
+        int generated = 0;
+        for (String key : this.bookRepository.findAllImageKeys()) {
+            if (key == null || key.isBlank() || this.s3Service.exists(ImageDerivatives.mediumKey(key))) {
+                continue;
+            }
+            generate(key);
+            generated++;
+        }
+        log.info("[ImageDerivative] Backfilled {} images in {} ms", generated, System.currentTimeMillis() - start);
+    }
+
+    private void submit(Runnable task, String label) {
+        try {
+            this.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Chạy backfill (POST /api/books/images/backfill) để sinh bù ảnh bị bỏ qua
+            log.warn("[ImageDerivative] Queue full, skipped {}", label);
+        }
+    }
+
+    private void generate(String originalKey) {
+        long start = System.currentTimeMillis();
+        try {
+            BufferedImage original = null;
+            for (ImageDerivatives.Size size : ImageDerivatives.Size.values()) {
+                String key = ImageDerivatives.keyOf(originalKey, size);
+                byte[] content = this.cache.get(key);
+                if (content == null) {
+                    if (original == null) {
+                        original = decode(originalKey, this.s3Service.downloadFile(originalKey));
+                        if (original == null) {
+                            return;
+                        }
+                    }
+                    content = ImageDerivatives.render(original, size);
+                    this.cache.put(key, content);
+                }
+                this.s3Service.putFile(key, content, ImageDerivatives.CONTENT_TYPE);
+            }
+            log.info("[ImageDerivative] Generated derivatives for {} in {} ms",
+                    originalKey, System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            log.warn("[ImageDerivative] Failed for {}: {}", originalKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Đọc kích thước từ header trước khi decode: ảnh vài chục nghìn pixel mỗi chiều chỉ nặng vài MB khi nén
+     * nhưng decode ra BufferedImage cần hàng GB heap
+     *
+     * @return null nếu không phải định dạng ImageIO đọc được hoặc vượt catalog.image.max-pixels
+     */
+    private BufferedImage decode(String originalKey, byte[] content) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = input == null ? Collections.emptyIterator() : ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                log.debug("[ImageDerivative] Skipped {}: unsupported format", originalKey);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > this.maxPixels) {
+                    log.warn("[ImageDerivative] Skipped {}: {}x{} exceeds {} pixels",
+                            originalKey, reader.getWidth(0), reader.getHeight(0), this.maxPixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.entity.Order;
+import iuh.fit.edu.entity.constant.OrderStatus;
+import iuh.fit.edu.entity.constant.PaymentMethod;
+import iuh.fit.edu.entity.constant.PaymentStatus;
+import iuh.fit.edu.repository.OrderDetailRepository;
+import iuh.fit.edu.repository.OrderRepository;
+import iuh.fit.edu.service.OrderCancellationService;
+import iuh.fit.edu.service.StockLedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+
+/*
+ * @description Số câu lệnh cố định cho mỗi lô bất kể số đơn / số dòng: khóa đơn, đổi trạng thái, gộp số
+ * lượng theo sách, hoàn kho. Đơn bị khóa theo id tăng dần để hai lô chồng nhau không deadlock.
+ * @author: Huu Thai
+ * @date:
+ * @version: 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderCancellationServiceImpl implements OrderCancellationService {
+    private final OrderRepository orderRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final StockLedgerService stockLedgerService;
+
+    @Override
+    @Transactional
+    public int cancelOrders(Collection<String> orderCodes, String updatedBy) {
+        if (orderCodes == null || orderCodes.isEmpty()) {
+            return 0;
+        }
+        Set<String> codes = new LinkedHashSet<>(orderCodes);
+        if (codes.size() > MAX_ORDERS_PER_REQUEST) {
+            throw new IllegalArgumentException("Chỉ được hủy tối đa " + MAX_ORDERS_PER_REQUEST + " đơn mỗi lần");
+        }
+        // Đơn đã hủy bị loại ra để không hoàn kho hai lần
+        List<Long> ids = toIds(this.orderRepository.findCancellableByCodesForUpdate(codes, OrderStatus.CANCELLED));
+        return cancelLocked(ids, updatedBy, "CANCELLED");
+    }
+
+    @Override
+    @Transactional
+    public int expireOrders(Collection<Long> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return 0;
+        }
+        // Đơn đã thanh toán / đã hủy sẽ không khớp điều kiện và bị bỏ qua
+        List<Long> ids = toIds(this.orderRepository.findExpiredForUpdate(
+                orderIds, PaymentMethod.VNPAY, PaymentStatus.UNPAID, OffsetDateTime.now()));
+        return cancelLocked(ids, null, "EXPIRED");
+    }
+
+    private int cancelLocked(List<Long> ids, String updatedBy, String reference) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        this.orderRepository.updateStatusByIds(ids, OrderStatus.CANCELLED, updatedBy, OffsetDateTime.now());
+        // TreeMap: hoàn kho theo thứ tự id sách, cùng thứ tự khóa với lúc tạo đơn
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (Object[] row : this.orderDetailRepository.sumQuantityByBookForOrders(ids)) {
+            quantities.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        this.stockLedgerService.restoreAll(quantities, reference);
+        log.info("Đã hủy {} đơn hàng ({}) và hoàn kho {} đầu sách", ids.size(), reference, quantities.size());
+        return ids.size();
+    }
+
+    private static List<Long> toIds(List<Order> orders) {
+        return orders.stream().map(Order::getId).toList();
+    }
+}
@@ -0,0 +1,125 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.entity.constant.PaymentMethod;
+import iuh.fit.edu.entity.constant.PaymentStatus;
+import iuh.fit.edu.event.OrderAwaitingPaymentEvent;
+import iuh.fit.edu.repository.OrderRepository;
+import iuh.fit.edu.service.OrderCancellationService;
+import iuh.fit.edu.service.OrderExpiryService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mỗi đơn VNPay được đưa vào DelayQueue theo expiredAt khi tạo và khi khởi động. Một thread duy nhất ngủ
+ * tới hạn gần nhất, gom các đơn đã tới hạn cùng lúc thành một lô và hủy cả lô trong một transaction.
+ * OrderScheduled vẫn quét DB thưa để bắt các đơn lọt (lô lỗi, nhiều instance).
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class OrderExpiryServiceImpl implements OrderExpiryService {
+    // Hủy trễ một chút so với expiredAt để chắc chắn điều kiện expiredAt <= now trên DB đã đúng
+    private static final long GRACE_MS = 500;
+
+    private final OrderCancellationService orderCancellationService;
+    private final OrderRepository orderRepository;
+    private final int batchSize;
+    private final DelayQueue<Expiry> queue = new DelayQueue<>();
+    private final Set<Long> scheduled = ConcurrentHashMap.newKeySet();
+    private volatile Thread worker;
+
+    public OrderExpiryServiceImpl(OrderCancellationService orderCancellationService, OrderRepository orderRepository,
+                                  @Value("${order.expiry.batch-size:200}") int batchSize) {
+        this.orderCancellationService = orderCancellationService;
+        this.orderRepository = orderRepository;
+        this.batchSize = batchSize;
+    }
+
+    private record Expiry(Long orderId, long deadlineNanos) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(this.deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(this.deadlineNanos, ((Expiry) other).deadlineNanos);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        List<Object[]> deadlines = this.orderRepository.findPaymentDeadlines(PaymentMethod.VNPAY, PaymentStatus.UNPAID);
+        for (Object[] row : deadlines) {
+            schedule((Long) row[0], (OffsetDateTime) row[1]);
+        }
+        this.worker = Thread.ofPlatform().name("order-expiry").daemon(true).start(this::run);
+        log.info("[OrderExpiry] Loaded {} pending VNPay orders", deadlines.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread current = this.worker;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderAwaitingPayment(OrderAwaitingPaymentEvent event) {
+        schedule(event.orderId(), event.expiredAt());
+    }
+
+    @Override
+    public void schedule(Long orderId, OffsetDateTime expiredAt) {
+        if (orderId == null || expiredAt == null || !this.scheduled.add(orderId)) {
+            return;
+        }
+        long delayMs = Math.max(0, Duration.between(OffsetDateTime.now(), expiredAt).toMillis()) + GRACE_MS;
+        this.queue.put(new Expiry(orderId, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs)));
+    }
+
+    @Override
+    public int pending() {
+        return this.queue.size();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Expiry> batch = new ArrayList<>();
+            try {
+                batch.add(this.queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // drainTo chỉ lấy các phần tử đã tới hạn
+            this.queue.drainTo(batch, this.batchSize - 1);
+            List<Long> orderIds = batch.stream().map(Expiry::orderId).toList();
+            orderIds.forEach(this.scheduled::remove);
+            try {
+                this.orderCancellationService.expireOrders(orderIds);
+            } catch (RuntimeException e) {
+                // Lượt quét DB của OrderScheduled sẽ hủy bù các đơn này
+                log.error("[OrderExpiry] Failed to expire {} orders: {}", orderIds.size(), e.getMessage());
+            }
+        }
+    }
+}
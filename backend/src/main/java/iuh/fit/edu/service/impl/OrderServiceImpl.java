@@ -5,29 +5,47 @@ import iuh.fit.edu.dto.request.order.OrderRequest;
 import iuh.fit.edu.dto.request.order.UpdateOrderRequest;
 import iuh.fit.edu.dto.response.PaymentResponse;
 import iuh.fit.edu.dto.response.ResultPaginationDTO;
+import iuh.fit.edu.dto.response.order.OrderItemResponse;
 import iuh.fit.edu.dto.response.order.OrderResponse;
 import iuh.fit.edu.dto.response.order.UpdateOrderStatusResponse;
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
 import iuh.fit.edu.entity.*;
 import iuh.fit.edu.entity.constant.OrderStatus;
 import iuh.fit.edu.entity.constant.PaymentMethod;
 import iuh.fit.edu.entity.constant.PaymentStatus;
+import iuh.fit.edu.event.BookChangedEvent;
+import iuh.fit.edu.event.OrderAwaitingPaymentEvent;
+import iuh.fit.edu.event.OrderPlacedEvent;
+import iuh.fit.edu.exception.InsufficientStockException;
 import iuh.fit.edu.mapper.OrderMapper;
 import iuh.fit.edu.repository.*;
-import iuh.fit.edu.service.EmailService;
+import iuh.fit.edu.service.EmailOutboxService;
+import iuh.fit.edu.service.OrderCancellationService;
 import iuh.fit.edu.service.OrderService;
 import iuh.fit.edu.service.PaymentService;
+import iuh.fit.edu.service.StockLedgerService;
+import iuh.fit.edu.util.ImageDerivatives;
+import iuh.fit.edu.util.KeysetPagination;
+import iuh.fit.edu.util.OrderCodeGenerator;
+import jakarta.persistence.criteria.Predicate;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -35,13 +53,22 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class OrderServiceImpl implements OrderService {
+    private static final int MAX_HISTORY_PAGE_SIZE = 50;
+    private static final ZoneId HISTORY_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("dd/MM/uuuu")
+            .withResolverStyle(ResolverStyle.STRICT);
 
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
     private final BookRepository bookRepository;
+    private final OrderDetailRepository orderDetailRepository;
     private final OrderMapper orderMapper;
     private final PaymentService paymentService;
-    private final EmailService emailService;
+    private final EmailOutboxService emailOutboxService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StockLedgerService stockLedgerService;
+    private final OrderCancellationService orderCancellationService;
+    private final OrderCodeGenerator orderCodeGenerator;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -54,7 +81,7 @@ public class OrderServiceImpl implements OrderService {
             user.setAddress(parseAddress(request.getReceiverAddress()));
         }
         Order order = new Order();
-        order.setOrderCode(generateOrderCode());
+        order.setOrderCode(this.orderCodeGenerator.next());
         order.setUser(user);
         order.setReceiverName(request.getReceiverName());
         order.setReceiverPhone(request.getReceiverPhone());
@@ -66,17 +93,10 @@ public class OrderServiceImpl implements OrderService {
         order.setPaymentStatus(PaymentStatus.UNPAID);
         order.setOrderDate(OffsetDateTime.now());
         List<OrderItem> orderItems = new ArrayList<>();
+        Map<Long, Book> books = reserveStock(request.getItems(), order.getOrderCode());
         for (OrderItemRequest item : request.getItems()) {
-            Book book = bookRepository.findById(item.getBookId())
-                    .orElseThrow(() -> new RuntimeException("Book not found"));
-            int rowsUpdated = this.bookRepository.reduceQuantity(book.getId(), item.getQuantity());
-            if(rowsUpdated == 0){
-                // Nếu = 0 nghĩa là WHERE stock >= qty trả về False -> HẾT HÀNG
-                // Throw Exception để kích hoạt Rollback (hoàn lại các món đã trừ trước đó nếu có)
-                throw new RuntimeException(book.getTitle() + " hiện đang không đủ số lượng");
-            }
             OrderItem orderItem = new OrderItem();
-            orderItem.setBook(book);
+            orderItem.setBook(books.get(item.getBookId()));
             orderItem.setQuantity(item.getQuantity());
             orderItem.setPrice(item.getPrice());
             orderItem.setOrder(order);
@@ -89,16 +109,18 @@ public class OrderServiceImpl implements OrderService {
             order.setExpiredAt(null);
             orderRepository.save(order);
             order.getOrderItems().size();
-            this.emailService.sendEmailFromTemplateSync(
-                    order.getReceiverEmail(),
+            publishOrderPlaced(order);
+            this.emailOutboxService.enqueueOrderEmail(
+                    order,
                     "Đặt hàng thành công #" + order.getOrderCode(),
-                    "order-confirm.html",
-                    order
+                    "order-confirm.html"
             );
             return this.orderMapper.toOrderResponse(order);
         }else {
             order.setExpiredAt(OffsetDateTime.now().plusMinutes(2));
             orderRepository.save(order);
+            // Hàng đợi hết hạn nhận đơn sau khi commit
+            this.eventPublisher.publishEvent(new OrderAwaitingPaymentEvent(order.getId(), order.getExpiredAt()));
             String paymentUrl = paymentService.createVNPayUrl(order, httpServletRequest);
             return PaymentResponse.builder()
                     .code("00")
@@ -108,6 +130,89 @@ public class OrderServiceImpl implements OrderService {
                     .build();
         }
     }
+    /**
+     * Trừ kho cho cả đơn trong một lượt: khóa các sách theo id tăng dần (mọi đơn cùng thứ tự khóa nên không
+     * deadlock), kiểm tra hết các dòng rồi trừ bằng một câu UPDATE. Sách đang ở chế độ hot SKU được giữ hàng
+     * qua StockLedgerService trước khi khóa dòng nào, vì bộ đếm có thể phải khóa dòng sách để xin thêm phần
+     * tồn kho. Thiếu hàng thì báo tất cả sách thiếu cùng lúc và không trừ dòng nào.
+     */
+    private Map<Long, Book> reserveStock(List<OrderItemRequest> items, String orderCode) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Đơn hàng không có sản phẩm");
+        }
+        // Gộp các dòng trùng sách, TreeMap giữ thứ tự id cho câu UPDATE
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        SortedMap<Long, Integer> hotQuantities = new TreeMap<>();
+        for (OrderItemRequest item : items) {
+            if (item.getBookId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Sản phẩm hoặc số lượng không hợp lệ");
+            }
+            SortedMap<Long, Integer> target = this.stockLedgerService.isHot(item.getBookId()) ? hotQuantities : quantities;
+            target.merge(item.getBookId(), item.getQuantity(), Integer::sum);
+        }
+
+        Map<Long, Book> books = new HashMap<>();
+        List<InsufficientStockException.Shortage> shortages = new ArrayList<>();
+        if (!hotQuantities.isEmpty()) {
+            // Giữ thành công mà phần sau thiếu hàng thì transaction rollback trả hàng lại bộ đếm
+            Map<Long, Integer> hotShortages = this.stockLedgerService.reserve(hotQuantities, orderCode);
+            this.bookRepository.findAllById(hotQuantities.keySet()).forEach(book -> books.put(book.getId(), book));
+            hotShortages.forEach((bookId, available) -> {
+                Book book = books.get(bookId);
+                shortages.add(new InsufficientStockException.Shortage(
+                        bookId, book == null ? null : book.getTitle(), hotQuantities.get(bookId), available));
+            });
+        }
+        if (!quantities.isEmpty()) {
+            this.bookRepository.findAllByIdInForUpdate(quantities.keySet()).forEach(book -> books.put(book.getId(), book));
+            quantities.forEach((bookId, quantity) -> {
+                Book book = books.get(bookId);
+                int available = book == null ? 0 : book.getQuantity();
+                if (available < quantity) {
+                    shortages.add(new InsufficientStockException.Shortage(
+                            bookId, book == null ? null : book.getTitle(), quantity, available));
+                }
+            });
+        }
+        if (!shortages.isEmpty()) {
+            throw new InsufficientStockException(shortages);
+        }
+
+        int rowsUpdated = this.bookRepository.reserveStock(quantities);
+        if (rowsUpdated != quantities.size()) {
+            // Phần tồn kho đã chia cho các node hot SKU (sách vừa được bật hot trên node khác) không bán được
+            // qua đường DB; chỉ đọc khi UPDATE hụt để đơn bình thường không tốn thêm truy vấn
+            Map<Long, Integer> granted = this.stockLedgerService.grantedQuantities(quantities.keySet());
+            quantities.forEach((bookId, quantity) -> {
+                Book book = books.get(bookId);
+                int available = book.getQuantity() - granted.getOrDefault(bookId, 0);
+                if (available < quantity) {
+                    shortages.add(new InsufficientStockException.Shortage(
+                            bookId, book.getTitle(), quantity, Math.max(0, available)));
+                }
+            });
+            if (shortages.isEmpty()) {
+                throw new IllegalStateException("Trừ kho không khớp: " + rowsUpdated + "/" + quantities.size());
+            }
+            throw new InsufficientStockException(shortages);
+        }
+        if (!quantities.isEmpty()) {
+            // Các sách đã khóa ở trên vẫn giữ số lượng trước khi UPDATE trừ, nạp lại để phần sau của transaction
+            // (và response) không đọc số cũ
+            this.bookRepository.refreshAll(quantities.keySet().stream().map(books::get).toList());
+            // Sách hot SKU đổi books.quantity lúc ghi dồn nhật ký, StockLedgerService phát sự kiện khi đó
+            this.eventPublisher.publishEvent(BookChangedEvent.stock(quantities.keySet()));
+        }
+        return books;
+    }
+
+    // Đơn COD hoặc đơn đã thanh toán được tính là đã mua (dùng cho gợi ý "thường được mua cùng")
+    private void publishOrderPlaced(Order order) {
+        List<Long> bookIds = order.getOrderItems().stream()
+                .map(item -> item.getBook().getId())
+                .toList();
+        this.eventPublisher.publishEvent(new OrderPlacedEvent(order.getId(), bookIds));
+    }
     private Address parseAddress(String fullAddress) {
         // Tách theo dấu phẩy
         String[] parts = fullAddress.split(",");
@@ -152,20 +257,39 @@ public class OrderServiceImpl implements OrderService {
         String responseCode = params.get("vnp_ResponseCode");
         String txnRef = params.get("vnp_TxnRef");
         String orderCode = txnRef.substring(0, txnRef.lastIndexOf("_"));
-        Order order = orderRepository.findByOrderCode(orderCode)
+        Order order = orderRepository.findByOrderCodeForUpdate(orderCode)
                 .orElseThrow(() -> new RuntimeException("Order not found with orderCode: " + orderCode));
         if("00".equals(responseCode)){
+            if (order.getStatus() == OrderStatus.CANCELLED) {
+                // Callback tới sau khi đơn đã hết hạn và được hoàn kho: không đánh dấu PAID cho đơn đã hủy
+                log.warn("Đơn hàng #{} đã bị hủy nhưng nhận được thanh toán {}", order.getId(), txnRef);
+                return PaymentResponse.builder()
+                        .code("02")
+                        .message("Đơn hàng đã bị hủy do quá hạn thanh toán, vui lòng liên hệ để được hoàn tiền")
+                        .orderCode(order.getOrderCode())
+                        .build();
+            }
+            if (order.getPaymentStatus() != PaymentStatus.UNPAID) {
+                // Tải lại trang vnpay-return / callback gửi lại: đơn đã được xác nhận trước đó
+                return PaymentResponse.builder()
+                        .code(responseCode)
+                        .message("Đơn hàng đã được thanh toán")
+                        .orderCode(order.getOrderCode())
+                        .totalPrice(order.getTotalPrice())
+                        .orderDate(order.getOrderDate())
+                        .build();
+            }
             order.setExpiredAt(null);
             order.setPaymentStatus(PaymentStatus.PAID);
             order.setTxnRef(txnRef);
             orderRepository.save(order);
             // Force load before leaving @Transactional
             order.getOrderItems().size();
-            this.emailService.sendEmailFromTemplateSync(
-                    order.getReceiverEmail(),
+            publishOrderPlaced(order);
+            this.emailOutboxService.enqueueOrderEmail(
+                    order,
                     "Đặt hàng thành công #" + order.getOrderCode(),
-                    "order-confirm.html",
-                    order
+                    "order-confirm.html"
             );
             log.info("Đơn hàng #{} thanh toán thành công", order.getId());
             return PaymentResponse.builder()
@@ -185,22 +309,14 @@ public class OrderServiceImpl implements OrderService {
     }
     @Transactional
     @Override
-    public List<Order> getExpiredOrders(){
-        return this.orderRepository.findAllByPaymentMethodAndPaymentStatusAndExpiredAtBefore(PaymentMethod.VNPAY, PaymentStatus.UNPAID, OffsetDateTime.now());
+    public List<Long> getExpiredOrderIds(){
+        return this.orderRepository.findExpiredIds(PaymentMethod.VNPAY, PaymentStatus.UNPAID, OffsetDateTime.now());
     }
     @Override
-    @Transactional
     public void cancelOrder(String orderCode) {
-        Order order = orderRepository.findByOrderCode(orderCode)
-                .orElseThrow(() -> new RuntimeException("Order not found with orderCode: " + orderCode));
-        order.setStatus(OrderStatus.CANCELLED);
-        order.setExpiredAt(null);
-        // Hoàn kho sau khi hủy đơn hàng
-        for (OrderItem item : order.getOrderItems()){
-            this.bookRepository.restoreStock(item.getBook().getId(), item.getQuantity());
+        if (this.orderCancellationService.cancelOrders(List.of(orderCode), null) == 0) {
+            throw new RuntimeException("Order not found or already cancelled with orderCode: " + orderCode);
         }
-        orderRepository.save(order);
-        log.info("Đã hủy đơn hàng #{} và hoàn kho", order.getId());
     }
 
     @Override
@@ -223,6 +339,24 @@ public class OrderServiceImpl implements OrderService {
 
     }
 
+    @Override
+    public ResultPaginationDTO getAllOrderByCursor(Specification<Order> specification, Pageable pageable, String cursor) {
+        KeysetPagination.Slice<Order> slice =
+                KeysetPagination.fetch(this.orderRepository, specification, pageable, cursor);
+        ResultPaginationDTO rs = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta mt = new ResultPaginationDTO.Meta();
+        mt.setPageSize(pageable.getPageSize());
+        mt.setNextCursor(slice.nextCursor());
+        rs.setMeta(mt);
+        rs.setResult(
+                slice.content()
+                        .stream()
+                        .map(this.orderMapper::toOrderResponse)
+                        .toList()
+        );
+        return rs;
+    }
+
     @Override
     public OrderResponse getOrderById(Long orderId) {
         Order order = orderRepository.findById(orderId)
@@ -231,15 +365,119 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
-    public List<OrderResponse> getOrdersByEmail(String email) {
+    @Transactional(readOnly = true)
+    public ResultPaginationDTO getOrdersByEmail(String email, OrderStatus status, String keyword, int size,
+                                                String cursor) {
+        User user = userRepository.findByEmail(email);
+        if (user == null) {
+            throw new RuntimeException("User not found with email: " + email);
+        }
+        int pageSize = Math.clamp(size, 1, MAX_HISTORY_PAGE_SIZE);
+        String search = keyword == null ? "" : keyword.trim();
+        Specification<Order> spec = (root, query, cb) -> cb.equal(root.get("user").get("id"), user.getId());
+        if (status != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("status"), status));
+        }
+        if (!search.isEmpty()) {
+            spec = spec.and(matchesKeyword(search));
+        }
+        String scope = (status == null ? "" : status.name()) + "\n" + search;
+        KeysetPagination.Slice<Order> slice = KeysetPagination.fetch(this.orderRepository, spec,
+                PageRequest.of(0, pageSize, Sort.by(Sort.Direction.DESC, "orderDate")), cursor, scope);
+
+        // Số truy vấn cố định mỗi trang: trang đơn, dòng hàng + sách, ảnh đại diện
+        List<Long> orderIds = slice.content().stream().map(Order::getId).toList();
+        List<OrderDetailRepository.HistoryLine> lines = orderIds.isEmpty()
+                ? List.of()
+                : this.orderDetailRepository.findHistoryLinesByOrderIdIn(orderIds);
+        Map<Long, String> firstImages = new HashMap<>();
+        List<Long> bookIds = lines.stream().map(OrderDetailRepository.HistoryLine::getBookId).distinct().toList();
+        if (!bookIds.isEmpty()) {
+            for (Object[] row : this.bookRepository.findFirstImageKeysByIdIn(bookIds)) {
+                firstImages.put((Long) row[0], (String) row[1]);
+            }
+        }
+        Map<Long, List<OrderItemResponse>> itemsByOrder = new HashMap<>();
+        for (OrderDetailRepository.HistoryLine line : lines) {
+            BookSummaryResponse book = new BookSummaryResponse();
+            book.setId(line.getBookId());
+            book.setTitle(line.getTitle());
+            book.setAuthor(line.getAuthor());
+            book.setPrice(line.getSellingPrice());
+            book.setQuantity(line.getStock());
+            book.setImage(firstImages.get(line.getBookId()));
+            book.setThumbnail(ImageDerivatives.thumbnailKey(book.getImage()));
+            itemsByOrder.computeIfAbsent(line.getOrderId(), id -> new ArrayList<>())
+                    .add(OrderItemResponse.builder()
+                            .id(line.getId())
+                            .book(book)
+                            .quantity(line.getQuantity())
+                            .price(line.getPrice())
+                            .build());
+        }
+
+        ResultPaginationDTO rs = new ResultPaginationDTO();
+        ResultPaginationDTO.Meta mt = new ResultPaginationDTO.Meta();
+        mt.setPageSize(pageSize);
+        mt.setNextCursor(slice.nextCursor());
+        rs.setMeta(mt);
+        rs.setResult(
+                slice.content()
+                        .stream()
+                        .map(order -> {
+                            OrderResponse response = this.orderMapper.toOrderResponseWithoutItems(order);
+                            response.setOrderItems(itemsByOrder.getOrDefault(order.getId(), List.of()));
+                            return response;
+                        })
+                        .toList()
+        );
+        return rs;
+    }
+
+    /**
+     * Từ khóa khớp một phần mã đơn, hoặc đúng ngày đặt nếu có dạng dd/MM/yyyy
+     */
+    private static Specification<Order> matchesKeyword(String keyword) {
+        LocalDate day = parseDay(keyword);
+        return (root, query, cb) -> {
+            String pattern = "%" + keyword.toUpperCase(Locale.ROOT)
+                    .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            Predicate byCode = cb.like(cb.upper(root.get("orderCode")), pattern, '\\');
+            if (day == null) {
+                return byCode;
+            }
+            OffsetDateTime start = day.atStartOfDay(HISTORY_ZONE).toOffsetDateTime();
+            OffsetDateTime end = day.plusDays(1).atStartOfDay(HISTORY_ZONE).toOffsetDateTime();
+            return cb.or(byCode, cb.and(cb.greaterThanOrEqualTo(root.get("orderDate"), start),
+                    cb.lessThan(root.get("orderDate"), end)));
+        };
+    }
+
+    private static LocalDate parseDay(String keyword) {
+        try {
+            return LocalDate.parse(keyword, DAY_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Map<String, Long> countOrdersByEmail(String email) {
         User user = userRepository.findByEmail(email);
         if (user == null) {
             throw new RuntimeException("User not found with email: " + email);
         }
-        List<Order> orders = orderRepository.findByUserIdOrderByOrderDateDesc(user.getId());
-        return orders.stream()
-                .map(this.orderMapper::toOrderResponse)
-                .collect(Collectors.toList());
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("ALL", 0L);
+        for (OrderStatus status : OrderStatus.values()) {
+            counts.put(status.name(), 0L);
+        }
+        for (Object[] row : this.orderRepository.countByUserGroupByStatus(user.getId())) {
+            long count = (Long) row[1];
+            counts.put(((OrderStatus) row[0]).name(), count);
+            counts.merge("ALL", count, Long::sum);
+        }
+        return counts;
     }
 
     @Transactional
@@ -247,26 +485,19 @@ public class OrderServiceImpl implements OrderService {
     public UpdateOrderStatusResponse updateOrderStatus(UpdateOrderRequest request, String email){
         Order order = this.orderRepository.findById(request.getId())
                 .orElseThrow(() -> new RuntimeException("Order not found"));
-        order.setStatus(OrderStatus.valueOf(request.getStatus()));
-        System.out.println(email);
-        order.setUpdateBy(email);
         if(Objects.equals(request.getStatus(), "CANCELLED")){
-            // Hoàn kho sau khi hủy đơn hàng
-            for (OrderItem item : order.getOrderItems()){
-                this.bookRepository.restoreStock(item.getBook().getId(), item.getQuantity());
-            }
+            // Đổi trạng thái và hoàn kho bằng câu lệnh theo lô, đơn đã hủy trước đó không bị hoàn kho lần nữa.
+            // Câu UPDATE theo lô đã ghi trạng thái, người sửa và thời điểm sửa; lưu entity cũ ở đây sẽ ghi đè
+            // lên chúng nên đọc lại đơn để trả về
+            this.orderCancellationService.cancelOrders(List.of(order.getOrderCode()), email);
+            return this.orderMapper.toUpdateOrderStatusResponse(this.orderRepository.findById(order.getId())
+                    .orElseThrow(() -> new RuntimeException("Order not found")));
         }
+        order.setStatus(OrderStatus.valueOf(request.getStatus()));
+        order.setUpdateBy(email);
         return this.orderMapper.toUpdateOrderStatusResponse(this.orderRepository.save(order));
     }
 
-    private String generateOrderCode() {
-        // 1. Lấy ngày tháng (Format: YYMMDD)
-        String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        // 2. Lấy 6 ký tự đầu của UUID và viết hoa
-        String randomPart = UUID.randomUUID().toString().replace("-", "").substring(0, 6).toUpperCase();
-        return "ORD-" + time + "-" + randomPart;
-    }
-
     @Override
     public boolean checkUserPurchasedBook(String email, Long bookId) {
         // Check if user has any DELIVERED orders containing this book
@@ -1,47 +1,288 @@
 package iuh.fit.edu.service.impl;
 
+import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
+import iuh.fit.edu.event.ImageUploadedEvent;
 import iuh.fit.edu.service.S3Service;
+import iuh.fit.edu.util.ImageDerivatives;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
 @Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "s3", matchIfMissing = true)
 public class S3ServiceImpl implements S3Service {
+    // Giới hạn số key của một lệnh DeleteObjects
+    private static final int DELETE_BATCH_SIZE = 1000;
+
     private final AmazonS3 amazonS3;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransferManager transferManager;
+    private final long multipartThreshold;
+    // Dùng chung cho mọi request để tổng số PUT đồng thời lên S3 không vượt giới hạn
+    private final Semaphore uploadPermits;
+    private final Duration presignTtl;
 
     @Value("${aws.s3.bucket}")
     private String bucketName;
 
-    public S3ServiceImpl(AmazonS3 amazonS3) {
+    public S3ServiceImpl(AmazonS3 amazonS3, ApplicationEventPublisher eventPublisher,
+                         @Value("${aws.s3.upload.max-concurrency:4}") int maxConcurrency,
+                         @Value("${aws.s3.upload.multipart-threshold-mb:16}") long multipartThresholdMb,
+                         @Value("${aws.s3.upload.presign-expire-minutes:10}") long presignExpireMinutes) {
         this.amazonS3 = amazonS3;
+        this.eventPublisher = eventPublisher;
+        this.multipartThreshold = multipartThresholdMb * 1024 * 1024;
+        this.uploadPermits = new Semaphore(maxConcurrency, true);
+        this.presignTtl = Duration.ofMinutes(presignExpireMinutes);
+        this.transferManager = TransferManagerBuilder.standard()
+                .withS3Client(amazonS3)
+                .withMultipartUploadThreshold(this.multipartThreshold)
+                .withShutDownThreadPools(true)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Không tắt AmazonS3 client vì bean này được dùng chung
+        this.transferManager.shutdownNow(false);
     }
 
     @Override
     public String uploadFile(MultipartFile file, String folder) {
+        String key = putUpload(file, folder);
+        this.eventPublisher.publishEvent(new ImageUploadedEvent(List.of(key)));
+        return key;
+    }
+
+    private String putUpload(MultipartFile file, String folder) {
         try {
             String fileName = UUID.randomUUID() + "-" + file.getOriginalFilename();
             String s3Key = folder != null && !folder.isEmpty() ? folder + "/" + fileName : fileName;
-            
+
             ObjectMetadata metadata = new ObjectMetadata();
             metadata.setContentLength(file.getSize());
             metadata.setContentType(file.getContentType());
 
-            amazonS3.putObject(
-                    new PutObjectRequest(bucketName, s3Key, file.getInputStream(), metadata)
-                            .withCannedAcl(CannedAccessControlList.PublicRead) // mở công khai file
-            );
+            PutObjectRequest request = new PutObjectRequest(bucketName, s3Key, file.getInputStream(), metadata)
+                    .withCannedAcl(CannedAccessControlList.PublicRead); // mở công khai file
+            if (file.getSize() >= this.multipartThreshold) {
+                // File lớn: TransferManager chia part và upload song song các part
+                this.transferManager.upload(request).waitForCompletion();
+            } else {
+                amazonS3.putObject(request);
+            }
 
             return s3Key; // Trả về full path (folder/filename)
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Upload bị gián đoạn: " + file.getOriginalFilename());
         } catch (Exception e) {
             throw new RuntimeException("Upload failed: " + e.getMessage());
         }
     }
-    
+
+    @Override
+    public List<String> uploadFiles(List<MultipartFile> files, String folder) {
+        long start = System.currentTimeMillis();
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<Future<String>> futures = new ArrayList<>(files.size());
+        // Mỗi file một virtual thread, chờ I/O mạng không chiếm thread platform; semaphore giới hạn song song
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (MultipartFile file : files) {
+                futures.add(executor.submit(() -> uploadWithPermit(file, folder, failed)));
+            }
+        }
+
+        List<String> keys = new ArrayList<>(files.size());
+        RuntimeException failure = null;
+        for (Future<String> future : futures) {
+            try {
+                String key = future.get();
+                if (key != null) {
+                    keys.add(key);
+                }
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtime
+                            ? runtime
+                            : new RuntimeException("Upload failed: " + e.getCause().getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new RuntimeException("Upload bị gián đoạn");
+            }
+        }
+        if (failure != null) {
+            deleteFiles(keys);
+            log.warn("[S3] Upload {} file thất bại, đã xóa {} file đã upload: {}",
+                    files.size(), keys.size(), failure.getMessage());
+            throw failure;
+        }
+        log.info("[S3] Uploaded {} files to {} in {} ms", keys.size(), folder, System.currentTimeMillis() - start);
+        // Chỉ sinh ảnh phái sinh khi cả lô đã thành công, lô bị rollback thì không còn file gốc
+        this.eventPublisher.publishEvent(new ImageUploadedEvent(keys));
+        return keys;
+    }
+
+    private String uploadWithPermit(MultipartFile file, String folder, AtomicBoolean failed) throws InterruptedException {
+        this.uploadPermits.acquire();
+        try {
+            // Đã có file lỗi thì không upload tiếp những file còn đang chờ
+            if (failed.get()) {
+                return null;
+            }
+            long start = System.currentTimeMillis();
+            String key = putUpload(file, folder);
+            log.info("[S3] Uploaded {} ({} KB) in {} ms",
+                    key, file.getSize() / 1024, System.currentTimeMillis() - start);
+            return key;
+        } catch (RuntimeException e) {
+            failed.set(true);
+            throw e;
+        } finally {
+            this.uploadPermits.release();
+        }
+    }
+
+    @Override
+    public void deleteFiles(Collection<String> keys) {
+        List<String> batch = new ArrayList<>(Math.min(keys.size(), DELETE_BATCH_SIZE));
+        for (String key : withDerivatives(keys)) {
+            batch.add(key);
+            if (batch.size() == DELETE_BATCH_SIZE) {
+                deleteBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleteBatch(batch);
+        }
+    }
+
+    private void deleteBatch(List<String> keys) {
+        try {
+            amazonS3.deleteObjects(new DeleteObjectsRequest(bucketName)
+                    .withKeys(keys.toArray(String[]::new))
+                    .withQuiet(true));
+        } catch (Exception e) {
+            // Không che lỗi gốc của lệnh upload, chỉ ghi log để dọn tay
+            log.error("[S3] Không xóa được {} file: {} - {}", keys.size(), keys, e.getMessage());
+        }
+    }
+
+    private static List<String> withDerivatives(Collection<String> keys) {
+        List<String> all = new ArrayList<>(keys.size() * 3);
+        for (String key : keys) {
+            all.add(key);
+            for (ImageDerivatives.Size size : ImageDerivatives.Size.values()) {
+                all.add(ImageDerivatives.keyOf(key, size));
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public byte[] downloadFile(String key) {
+        try (S3Object object = amazonS3.getObject(bucketName, key);
+             InputStream in = object.getObjectContent()) {
+            return in.readAllBytes();
+        } catch (Exception e) {
+            throw new RuntimeException("Download failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void putFile(String key, byte[] content, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        metadata.setContentType(contentType);
+        // Ảnh phái sinh không đổi theo key nên cho CDN / trình duyệt cache lâu
+        metadata.setCacheControl("public, max-age=31536000, immutable");
+        amazonS3.putObject(new PutObjectRequest(bucketName, key, new ByteArrayInputStream(content), metadata)
+                .withCannedAcl(CannedAccessControlList.PublicRead));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return amazonS3.doesObjectExist(bucketName, key);
+    }
+
+    @Override
+    public ResPresignedUploadDTO presignUpload(String folder, String fileName, String contentType, long size) {
+        String key = folder + "/" + UUID.randomUUID() + "-" + sanitizeFileName(fileName);
+        Instant expiresAt = Instant.now().plus(this.presignTtl);
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put(Headers.CONTENT_TYPE, contentType);
+        headers.put(Headers.CONTENT_LENGTH, String.valueOf(size));
+        headers.put(Headers.S3_CANNED_ACL, CannedAccessControlList.PublicRead.toString());
+
+        GeneratePresignedUrlRequest request = new GeneratePresignedUrlRequest(bucketName, key, HttpMethod.PUT)
+                .withExpiration(Date.from(expiresAt))
+                .withContentType(contentType);
+        // Header tùy chỉnh được đưa vào SignedHeaders nên S3 từ chối nếu client gửi khác
+        request.putCustomRequestHeader(Headers.CONTENT_LENGTH, headers.get(Headers.CONTENT_LENGTH));
+        request.putCustomRequestHeader(Headers.S3_CANNED_ACL, headers.get(Headers.S3_CANNED_ACL));
+        String url = amazonS3.generatePresignedUrl(request).toString();
+        return new ResPresignedUploadDTO(key, url, "PUT", headers, expiresAt);
+    }
+
+    @Override
+    public StoredObject getObjectInfo(String key) {
+        try {
+            ObjectMetadata metadata = amazonS3.getObjectMetadata(bucketName, key);
+            return new StoredObject(metadata.getContentLength(), metadata.getContentType());
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    // Chỉ giữ ký tự an toàn cho key, tránh / và ký tự đặc biệt trong tên file người dùng gửi lên
+    static String sanitizeFileName(String fileName) {
+        String name = fileName == null ? "" : fileName.substring(Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')) + 1);
+        name = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.isEmpty() ? "file" : name;
+    }
+
+    @Override
     public String getFileUrl(String fileName) {
         // fileName already contains folder path like "users/avatars/uuid-filename.jpg"
         return amazonS3.getUrl(bucketName, fileName).toString();
@@ -0,0 +1,541 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.entity.Book;
+import iuh.fit.edu.entity.StockGrant;
+import iuh.fit.edu.entity.StockJournal;
+import iuh.fit.edu.event.BookChangedEvent;
+import iuh.fit.edu.exception.StockBusyException;
+import iuh.fit.edu.repository.BookRepository;
+import iuh.fit.edu.repository.StockGrantRepository;
+import iuh.fit.edu.repository.StockJournalRepository;
+import iuh.fit.edu.service.StockLedgerService;
+import iuh.fit.edu.util.StripedCounter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Không bán vượt, kể cả khi chạy nhiều instance:
+ * <ul>
+ *     <li>mỗi node chỉ bán trong phần tồn kho (stock_grant) đã xin được; phần được cắt ra khi khóa dòng sách
+ *     và chỉ từ số còn tự do (books.quantity - tổng các phần), đường DB của sách thường cũng chỉ trừ trên
+ *     số tự do đó;</li>
+ *     <li>bộ đếm chỉ cho lấy khi còn đủ, hàng của đơn rollback được trả lại sau khi transaction kết thúc;</li>
+ *     <li>mỗi lần giữ hàng ghi nhật ký cùng transaction với đơn, khi ghi dồn thì books.quantity và phần của
+ *     node cùng giảm trong một transaction, nên số tự do không đổi và server dừng đột ngột không làm mất đơn;</li>
+ *     <li>node chỉ nhận đơn khi lease còn hạn (nửa thời gian lease tính từ lần gia hạn gần nhất), node khác
+ *     chỉ thu hồi khi lease đã quá hạn thêm một lần lease nữa.</li>
+ * </ul>
+ *
+ * @author Nguyen Tan Nghi
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class StockLedgerServiceImpl implements StockLedgerService, SmartInitializingSingleton {
+    // Đóng băng, chuyển chế độ và gia hạn lease thường xong trong vài trăm mili giây
+    private static final long RETRY_AFTER_SECONDS = 1;
+
+    private final BookRepository bookRepository;
+    private final StockJournalRepository journalRepository;
+    private final StockGrantRepository grantRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    // Xin thêm phần tồn kho giữa lúc đơn đang chạy: commit ngay, không giữ khóa dòng sách tới hết đơn
+    private final TransactionTemplate grantTransactionTemplate;
+    private final int nodeId;
+    private final int stripes;
+    private final int flushBatchSize;
+    private final int grantSize;
+    private final long leaseMillis;
+    private final long freezeTimeoutNanos;
+
+    private final ConcurrentHashMap<Long, HotStock> stocks = new ConcurrentHashMap<>();
+    // Ghi dồn, thu hồi, bật / tắt chế độ không chạy chồng lên nhau
+    private final ReentrantLock maintenanceLock = new ReentrantLock();
+    private volatile long leaseDeadline = System.nanoTime();
+
+    public StockLedgerServiceImpl(BookRepository bookRepository, StockJournalRepository journalRepository,
+                                  StockGrantRepository grantRepository, TransactionTemplate transactionTemplate,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${order.code.node-id}") int nodeId,
+                                  @Value("${inventory.hot-sku.stripes:8}") int stripes,
+                                  @Value("${inventory.hot-sku.flush-batch-size:5000}") int flushBatchSize,
+                                  @Value("${inventory.hot-sku.grant-size:50}") int grantSize,
+                                  @Value("${inventory.hot-sku.lease-ms:15000}") long leaseMillis,
+                                  @Value("${inventory.hot-sku.freeze-timeout-ms:5000}") long freezeTimeoutMs) {
+        this.bookRepository = bookRepository;
+        this.journalRepository = journalRepository;
+        this.grantRepository = grantRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.grantTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.grantTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.nodeId = nodeId;
+        this.stripes = stripes;
+        this.flushBatchSize = flushBatchSize;
+        this.grantSize = Math.max(1, grantSize);
+        this.leaseMillis = leaseMillis;
+        this.freezeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(freezeTimeoutMs);
+    }
+
+    private static final class HotStock {
+        private final StripedCounter available;
+        // Số đơn đang giữ hàng mà transaction chưa kết thúc; LongAdder để không thành điểm nóng mới
+        private final LongAdder inFlight = new LongAdder();
+        // Mỗi lúc chỉ một luồng xin thêm phần tồn kho cho sách
+        private final ReentrantLock grantLock = new ReentrantLock();
+        private volatile boolean frozen;
+        private volatile boolean retired;
+
+        private HotStock(int stripes) {
+            this.available = new StripedCounter(stripes);
+        }
+    }
+
+    /**
+     * Khôi phục trước khi Tomcat nhận request: ghi dồn nhật ký còn sót từ lần chạy trước, trả lại phần tồn kho
+     * node đã nhận (bộ đếm trong bộ nhớ đã mất) rồi mở các sách đang bật hot SKU với bộ đếm rỗng, phần tồn
+     * kho được xin lại khi có đơn.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        int recovered = flushJournal(null) + flushJournal(this.nodeId);
+        this.transactionTemplate.executeWithoutResult(status -> this.grantRepository.deleteAllByNodeId(this.nodeId));
+        renewLease();
+        List<Long> hotIds = this.bookRepository.findHotSkuIds();
+        hotIds.forEach(bookId -> this.stocks.put(bookId, new HotStock(this.stripes)));
+        log.info("[StockLedger] Node {}: recovered {} journal entries, {} hot SKUs", this.nodeId, recovered, hotIds.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.maintenanceLock.lock();
+        try {
+            this.stocks.forEach((bookId, stock) -> {
+                try {
+                    releaseGrant(bookId, stock, true);
+                } catch (RuntimeException e) {
+                    // Phần còn lại được node khác thu hồi khi lease hết hạn, hoặc lúc node này khởi động lại
+                    log.warn("[StockLedger] Release grant failed for book {}: {}", bookId, e.getMessage());
+                }
+            });
+            flush();
+        } finally {
+            this.maintenanceLock.unlock();
+        }
+    }
+
+    /**
+     * Ghi dồn và gia hạn lease, sau đó đồng bộ với các node khác: danh sách hot SKU, phần bị thu hồi, phần
+     * của node đã chết, phần vượt tồn kho.
+     */
+    @Scheduled(fixedDelayString = "${inventory.hot-sku.flush-ms:1000}")
+    public void scheduledFlush() {
+        this.maintenanceLock.lock();
+        try {
+            if (!this.stocks.isEmpty()) {
+                flush();
+                renewLease();
+                syncGrants();
+            } else {
+                renewLease();
+            }
+            reclaimExpired();
+            refreshHotSkus();
+        } catch (RuntimeException e) {
+            // Lease không được gia hạn thì node tự ngừng nhận đơn hot SKU khi hết hạn
+            log.warn("[StockLedger] Maintenance failed: {}", e.getMessage());
+        } finally {
+            this.maintenanceLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isHot(Long bookId) {
+        return this.stocks.containsKey(bookId);
+    }
+
+    @Override
+    public Map<Long, Integer> reserve(SortedMap<Long, Integer> quantities, String orderCode) {
+        requireTransaction();
+        requireLease();
+        Map<Long, Integer> shortages = new LinkedHashMap<>();
+        Map<HotStock, Integer> acquired = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                HotStock stock = enter(entry.getKey());
+                boolean reserved;
+                try {
+                    reserved = stock.available.tryAcquire(entry.getValue())
+                            || topUp(entry.getKey(), stock, entry.getValue());
+                } catch (RuntimeException e) {
+                    stock.inFlight.decrement();
+                    throw e;
+                }
+                if (reserved) {
+                    acquired.put(stock, entry.getValue());
+                } else {
+                    stock.inFlight.decrement();
+                    shortages.put(entry.getKey(), stock.available.sum());
+                }
+            }
+        } catch (RuntimeException e) {
+            releaseAll(acquired);
+            throw e;
+        }
+        if (!shortages.isEmpty()) {
+            releaseAll(acquired);
+            return shortages;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                acquired.forEach((stock, quantity) -> {
+                    // Trả hàng trước khi giảm inFlight để lúc đóng băng thấy inFlight = 0 là bộ đếm đã đúng
+                    if (status != STATUS_COMMITTED) {
+                        stock.available.release(quantity);
+                    }
+                    stock.inFlight.decrement();
+                });
+            }
+        });
+        List<StockJournal> entries = new ArrayList<>(quantities.size());
+        quantities.forEach((bookId, quantity) -> entries.add(journal(bookId, -quantity, orderCode)));
+        this.journalRepository.saveAll(entries);
+        return shortages;
+    }
+
+    private static void releaseAll(Map<HotStock, Integer> acquired) {
+        acquired.forEach((stock, quantity) -> {
+            stock.available.release(quantity);
+            stock.inFlight.decrement();
+        });
+    }
+
+    /**
+     * Bộ đếm không đủ: xin thêm ít nhất grantSize từ số tồn kho còn tự do rồi thử lại
+     */
+    private boolean topUp(Long bookId, HotStock stock, int quantity) {
+        stock.grantLock.lock();
+        try {
+            // Luồng khác có thể vừa xin thêm xong
+            if (stock.available.tryAcquire(quantity)) {
+                return true;
+            }
+            requireLease();
+            int wanted = Math.max(this.grantSize, quantity - stock.available.sum());
+            Integer granted = this.grantTransactionTemplate.execute(status -> grant(bookId, wanted));
+            if (granted == null || granted == 0) {
+                return false;
+            }
+            // Cộng sau khi commit: bộ đếm không bao giờ lớn hơn phần đã ghi trên DB
+            stock.available.fill(granted);
+            return stock.available.tryAcquire(quantity);
+        } finally {
+            stock.grantLock.unlock();
+        }
+    }
+
+    private int grant(Long bookId, int wanted) {
+        // Khóa dòng sách: đơn đi đường DB và node khác xin phần cùng sách phải chờ, số tự do đọc được là đúng
+        Book book = this.bookRepository.findAllByIdInForUpdate(List.of(bookId)).stream().findFirst().orElse(null);
+        if (book == null || !book.isHotSku()) {
+            return 0;
+        }
+        long free = book.getQuantity() - this.grantRepository.sumQuantityByBookId(bookId);
+        int take = (int) Math.min(wanted, free);
+        if (take <= 0) {
+            return 0;
+        }
+        StockGrant grant = this.grantRepository.findByBookIdAndNodeId(bookId, this.nodeId).orElseGet(() -> {
+            StockGrant created = new StockGrant();
+            created.setBookId(bookId);
+            created.setNodeId(this.nodeId);
+            return created;
+        });
+        grant.setQuantity(grant.getQuantity() + take);
+        grant.setLeaseUntil(OffsetDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(this.leaseMillis)));
+        this.grantRepository.save(grant);
+        return take;
+    }
+
+    @Override
+    public void restoreAll(SortedMap<Long, Integer> quantities, String reference) {
+        if (this.bookRepository.applyStockDeltas(quantities) > 0) {
+            this.eventPublisher.publishEvent(BookChangedEvent.stock(quantities.keySet()));
+        }
+    }
+
+    @Override
+    public Map<Long, Integer> grantedQuantities(Collection<Long> bookIds) {
+        Map<Long, Integer> granted = new HashMap<>();
+        if (bookIds.isEmpty()) {
+            return granted;
+        }
+        for (Object[] row : this.grantRepository.sumQuantityByBookIdIn(bookIds)) {
+            granted.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        return granted;
+    }
+
+    @Override
+    public void setHot(Long bookId, boolean hot) {
+        this.maintenanceLock.lock();
+        try {
+            updateFlag(bookId, hot);
+            if (hot) {
+                // Node khác thấy cờ ở lần đồng bộ kế tiếp, trong lúc đó vẫn bán qua đường DB trên số tự do
+                if (this.stocks.putIfAbsent(bookId, new HotStock(this.stripes)) == null) {
+                    log.info("[StockLedger] Hot SKU enabled for book {}", bookId);
+                }
+            } else {
+                HotStock stock = this.stocks.get(bookId);
+                if (stock != null) {
+                    releaseGrant(bookId, stock, true);
+                    log.info("[StockLedger] Hot SKU disabled for book {}", bookId);
+                }
+            }
+        } finally {
+            this.maintenanceLock.unlock();
+        }
+    }
+
+    @Override
+    public int flush() {
+        return flushJournal(this.nodeId);
+    }
+
+    /**
+     * Ghi dồn nhật ký của một node (null: dòng cũ chưa gắn node) theo lô
+     */
+    private int flushJournal(Integer journalNodeId) {
+        this.maintenanceLock.lock();
+        try {
+            int applied = 0;
+            while (true) {
+                Integer count = this.transactionTemplate.execute(status -> flushBatch(journalNodeId));
+                int flushed = count == null ? 0 : count;
+                applied += flushed;
+                if (flushed < this.flushBatchSize) {
+                    return applied;
+                }
+            }
+        } finally {
+            this.maintenanceLock.unlock();
+        }
+    }
+
+    private int flushBatch(Integer journalNodeId) {
+        PageRequest page = PageRequest.of(0, this.flushBatchSize);
+        List<StockJournal> batch = journalNodeId == null
+                ? this.journalRepository.findAllByNodeIdIsNullOrderByIdAsc(page)
+                : this.journalRepository.findAllByNodeIdOrderByIdAsc(journalNodeId, page);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        SortedMap<Long, Integer> deltas = new TreeMap<>();
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (StockJournal entry : batch) {
+            deltas.merge(entry.getBookId(), entry.getDelta(), Integer::sum);
+            ids.add(entry.getId());
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        // Một câu UPDATE cho cả lô thay vì một câu cho mỗi đơn trên cùng dòng sách
+        if (this.bookRepository.applyStockDeltas(deltas) > 0) {
+            // Cache sách được xóa sau khi lô commit, mỗi lô một sự kiện thay vì mỗi đơn một sự kiện
+            this.eventPublisher.publishEvent(BookChangedEvent.stock(deltas.keySet()));
+        }
+        if (journalNodeId != null) {
+            // Hàng đã bán ra khỏi phần của node cùng lúc với books.quantity: số tự do không đổi
+            deltas.forEach((bookId, delta) -> this.grantRepository.addQuantity(bookId, journalNodeId, delta));
+        }
+        // Xóa theo id đã đọc, không theo khoảng id: dòng của transaction chưa commit có thể có id nhỏ hơn
+        this.journalRepository.deleteAllByIdInBatch(ids);
+        return batch.size();
+    }
+
+    private void renewLease() {
+        long start = System.nanoTime();
+        OffsetDateTime until = OffsetDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(this.leaseMillis));
+        this.transactionTemplate.executeWithoutResult(status -> this.grantRepository.renewLease(this.nodeId, until));
+        // Chỉ nhận đơn tới nửa lease: đơn đã giữ hàng có thời gian commit trước khi node khác được thu hồi
+        this.leaseDeadline = start + TimeUnit.MILLISECONDS.toNanos(this.leaseMillis) / 2;
+    }
+
+    /**
+     * Đối chiếu bộ đếm với phần trên DB: phần đã bị node khác thu hồi (node này treo quá lease) thì bỏ bộ
+     * đếm, tổng các phần vượt tồn kho (admin giảm tồn kho) thì trả lại phần của node
+     */
+    private void syncGrants() {
+        Set<Long> granted = new HashSet<>();
+        this.grantRepository.findAllByNodeId(this.nodeId).forEach(grant -> granted.add(grant.getBookId()));
+        this.stocks.forEach((bookId, stock) -> {
+            if (!granted.contains(bookId) && stock.available.sum() > 0) {
+                dropRevoked(bookId, stock);
+            }
+        });
+        for (Long bookId : this.grantRepository.findOverAllocatedBookIds(this.nodeId)) {
+            HotStock stock = this.stocks.get(bookId);
+            if (stock != null) {
+                releaseGrant(bookId, stock, false);
+                log.info("[StockLedger] Released over-allocated grant of book {}", bookId);
+            } else {
+                this.transactionTemplate.executeWithoutResult(
+                        status -> this.grantRepository.deleteByBookIdAndNodeId(bookId, this.nodeId));
+            }
+        }
+    }
+
+    private void dropRevoked(Long bookId, HotStock stock) {
+        freeze(stock);
+        try {
+            // Đóng băng rồi mới đọc lại: không còn luồng nào đang xin thêm phần cho sách
+            if (this.grantRepository.findByBookIdAndNodeId(bookId, this.nodeId).isEmpty()) {
+                int dropped = stock.available.drain();
+                log.warn("[StockLedger] Grant of book {} was reclaimed, dropped {} from counter", bookId, dropped);
+            }
+        } finally {
+            stock.frozen = false;
+        }
+    }
+
+    /**
+     * Ghi dồn nhật ký của node đã ngừng gia hạn rồi xóa phần của nó. Quá hạn thêm một lần lease mới thu hồi
+     * nên node đó đã tự ngừng nhận đơn từ lâu.
+     */
+    private void reclaimExpired() {
+        OffsetDateTime before = OffsetDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(this.leaseMillis));
+        for (Integer expired : this.grantRepository.findExpiredNodeIds(this.nodeId, before)) {
+            int applied = flushJournal(expired);
+            Integer deleted = this.transactionTemplate.execute(
+                    status -> this.grantRepository.deleteExpiredByNodeId(expired, before));
+            log.warn("[StockLedger] Reclaimed {} grants of node {} ({} journal entries)", deleted, expired, applied);
+        }
+    }
+
+    /**
+     * Sách được bật / tắt hot SKU trên node khác
+     */
+    private void refreshHotSkus() {
+        Set<Long> hotIds = new HashSet<>(this.bookRepository.findHotSkuIds());
+        hotIds.forEach(bookId -> this.stocks.computeIfAbsent(bookId, id -> new HotStock(this.stripes)));
+        this.stocks.forEach((bookId, stock) -> {
+            if (!hotIds.contains(bookId)) {
+                releaseGrant(bookId, stock, true);
+            }
+        });
+    }
+
+    /**
+     * Chờ các đơn đang giữ hàng kết thúc, ghi dồn rồi trả phần còn lại của node về số tự do
+     *
+     * @param retire true khi tắt hot SKU: bỏ bộ đếm, đơn mới của sách đi đường DB
+     */
+    private void releaseGrant(Long bookId, HotStock stock, boolean retire) {
+        freeze(stock);
+        int drained = stock.available.drain();
+        try {
+            flushJournal(this.nodeId);
+            this.transactionTemplate.executeWithoutResult(
+                    status -> this.grantRepository.deleteByBookIdAndNodeId(bookId, this.nodeId));
+        } catch (RuntimeException e) {
+            stock.available.fill(drained);
+            stock.frozen = false;
+            throw e;
+        }
+        if (retire) {
+            stock.retired = true;
+            this.stocks.remove(bookId, stock);
+        } else {
+            stock.frozen = false;
+        }
+    }
+
+    /**
+     * Chặn đơn mới và chờ các transaction đang giữ hàng của sách kết thúc
+     */
+    private void freeze(HotStock stock) {
+        stock.frozen = true;
+        long deadline = System.nanoTime() + this.freezeTimeoutNanos;
+        while (stock.inFlight.sum() > 0) {
+            if (System.nanoTime() > deadline) {
+                stock.frozen = false;
+                throw new StockBusyException("Hết thời gian chờ các đơn đang giữ hàng, vui lòng thử lại", RETRY_AFTER_SECONDS);
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Đăng ký một đơn đang thao tác trên sách, chờ nếu sách đang đóng băng
+     */
+    private HotStock enter(Long bookId) {
+        long deadline = System.nanoTime() + this.freezeTimeoutNanos;
+        while (true) {
+            HotStock stock = this.stocks.get(bookId);
+            if (stock == null || stock.retired) {
+                throw new StockBusyException("Sách đang chuyển chế độ tồn kho, vui lòng thử lại", RETRY_AFTER_SECONDS);
+            }
+            if (!stock.frozen) {
+                stock.inFlight.increment();
+                // Kiểm tra lại sau khi tăng inFlight: freeze() ghi frozen rồi mới đọc inFlight
+                if (!stock.frozen) {
+                    return stock;
+                }
+                stock.inFlight.decrement();
+            }
+            if (System.nanoTime() > deadline) {
+                throw new StockBusyException("Sách đang được đồng bộ tồn kho, vui lòng thử lại", RETRY_AFTER_SECONDS);
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private void requireLease() {
+        if (System.nanoTime() - this.leaseDeadline > 0) {
+            throw new StockBusyException("Chưa gia hạn được phần tồn kho hot SKU, vui lòng thử lại", RETRY_AFTER_SECONDS);
+        }
+    }
+
+    private void updateFlag(Long bookId, boolean hot) {
+        Integer updated = this.transactionTemplate.execute(status -> this.bookRepository.updateHotSku(bookId, hot));
+        if (updated == null || updated == 0) {
+            throw new IllegalArgumentException("Không tìm thấy sách với id: " + bookId);
+        }
+    }
+
+    private static void requireTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Giữ hàng hot SKU phải chạy trong transaction");
+        }
+    }
+
+    private StockJournal journal(Long bookId, int delta, String orderCode) {
+        StockJournal entry = new StockJournal();
+        entry.setBookId(bookId);
+        entry.setNodeId(this.nodeId);
+        entry.setDelta(delta);
+        entry.setOrderCode(orderCode);
+        entry.setCreatedAt(OffsetDateTime.now());
+        return entry;
+    }
+}
@@ -4,8 +4,10 @@
  */
 package iuh.fit.edu.service.impl;
 import iuh.fit.edu.dto.request.account.RegisterRequest;
+import iuh.fit.edu.dto.request.file.ReqPresignUploadDTO;
 import iuh.fit.edu.dto.request.user.CreateUserRequest;
 import iuh.fit.edu.dto.request.user.UpdateUserRequest;
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
 import iuh.fit.edu.dto.response.user.UserDTO;
 import iuh.fit.edu.dto.response.user.UserResponseById;
 import iuh.fit.edu.dto.response.user.UsersResponse;
@@ -18,6 +20,7 @@ import iuh.fit.edu.repository.UserRepository;
 import iuh.fit.edu.service.AccountService;
 
 import iuh.fit.edu.service.CognitoService;
+import iuh.fit.edu.service.DirectUploadService;
 import iuh.fit.edu.service.S3Service;
 import iuh.fit.edu.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,6 +50,9 @@ public class UserServiceImpl implements UserService {
     @Autowired
     S3Service s3Service;
 
+    @Autowired
+    DirectUploadService directUploadService;
+
     @Autowired
     UserMapper userMapper;
 
@@ -310,5 +316,24 @@ public class UserServiceImpl implements UserService {
         }
         return s3Service.uploadFile(avatar, "users/avatars");
     }
+
+    @Override
+    public ResPresignedUploadDTO presignAvatar(ReqPresignUploadDTO request) {
+        return directUploadService.presignImage("users/avatars", request);
+    }
+
+    @Override
+    public String confirmAvatar(String email, String key, boolean attach) {
+        String avatar = directUploadService.confirmImages("users/avatars", List.of(key)).getFirst();
+        if (attach) {
+            User user = userRepository.findByEmail(email);
+            if (user == null) {
+                throw new RuntimeException("User not found with email: " + email);
+            }
+            user.setAvatar(avatar);
+            userRepository.save(user);
+        }
+        return avatar;
+    }
 }
 
@@ -0,0 +1,135 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+ * @description Cache byte[] trên đĩa, giới hạn theo tổng dung lượng. Tên file là SHA-256 của key nên key
+ * do người dùng đặt không thể trỏ ra ngoài thư mục cache. Khi vượt giới hạn thì xóa các file lâu không dùng nhất.
+ * @author: Nguyen Tan Nghi
+ * @version: 1.0
+ */
+@Slf4j
+public final class DiskCache {
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong currentBytes = new AtomicLong();
+    private final Object evictLock = new Object();
+
+    public DiskCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                currentBytes.set(files.mapToLong(DiskCache::sizeOf).sum());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không tạo được thư mục cache " + directory, e);
+        }
+    }
+
+    public byte[] get(String key) {
+        Path file = pathOf(key);
+        try {
+            byte[] content = Files.readAllBytes(file);
+            // Dùng mtime làm thời điểm truy cập gần nhất cho việc xóa LRU
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return content;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("[DiskCache] Không đọc được {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    public void put(String key, byte[] content) {
+        Path file = pathOf(key);
+        try {
+            // Ghi ra file tạm rồi đổi tên để luồng khác không đọc phải file ghi dở
+            Path temp = Files.createTempFile(directory, "tmp-", ".part");
+            Files.write(temp, content);
+            long previous = sizeOf(file);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (currentBytes.addAndGet(content.length - previous) > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            log.warn("[DiskCache] Không ghi được {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void evict() {
+        synchronized (evictLock) {
+            if (currentBytes.get() <= maxBytes) {
+                return;
+            }
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> stream = Files.list(directory)) {
+                stream.filter(p -> !p.getFileName().toString().endsWith(".part")).forEach(files::add);
+            } catch (IOException e) {
+                log.warn("[DiskCache] Không liệt kê được {}: {}", directory, e.getMessage());
+                return;
+            }
+            files.sort(Comparator.comparing(DiskCache::lastModified));
+            // Xóa đến 90% giới hạn để không phải dọn lại ngay ở lần ghi sau
+            long target = maxBytes / 10 * 9;
+            for (Path file : files) {
+                if (currentBytes.get() <= target) {
+                    break;
+                }
+                long size = sizeOf(file);
+                try {
+                    if (Files.deleteIfExists(file)) {
+                        currentBytes.addAndGet(-size);
+                    }
+                } catch (IOException e) {
+                    log.warn("[DiskCache] Không xóa được {}: {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Path pathOf(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(hash));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
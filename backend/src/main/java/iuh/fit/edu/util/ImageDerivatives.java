@@ -0,0 +1,100 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/*
+ * @description Quy ước key và cách resize ảnh phái sinh. Key được suy ra từ key gốc nên không cần lưu thêm cột:
+ * books/1/abc-bia.png -> books/1/abc-bia_thumb.jpg, books/1/abc-bia_medium.jpg
+ * @author: Nguyen Tan Nghi
+ * @version: 1.0
+ */
+public final class ImageDerivatives {
+    public static final String CONTENT_TYPE = "image/jpeg";
+    private static final float JPEG_QUALITY = 0.85f;
+
+    public enum Size {
+        THUMBNAIL("thumb", 200, 300),
+        MEDIUM("medium", 600, 900);
+
+        private final String suffix;
+        private final int maxWidth;
+        private final int maxHeight;
+
+        Size(String suffix, int maxWidth, int maxHeight) {
+            this.suffix = suffix;
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+        }
+    }
+
+    private ImageDerivatives() {
+    }
+
+    public static String keyOf(String originalKey, Size size) {
+        if (originalKey == null) {
+            return null;
+        }
+        int slash = originalKey.lastIndexOf('/');
+        int dot = originalKey.lastIndexOf('.');
+        String base = dot > slash ? originalKey.substring(0, dot) : originalKey;
+        return base + "_" + size.suffix + ".jpg";
+    }
+
+    public static String thumbnailKey(String originalKey) {
+        return keyOf(originalKey, Size.THUMBNAIL);
+    }
+
+    public static String mediumKey(String originalKey) {
+        return keyOf(originalKey, Size.MEDIUM);
+    }
+
+    /**
+     * Thu nhỏ ảnh vừa khung của size (giữ tỉ lệ, không phóng to) rồi nén JPEG
+     */
+    public static byte[] render(BufferedImage source, Size size) throws IOException {
+        double scale = Math.min(1.0, Math.min(
+                (double) size.maxWidth / source.getWidth(),
+                (double) size.maxHeight / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        // JPEG không có kênh alpha: vẽ lên nền trắng để ảnh PNG trong suốt không bị đen
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(width * height / 4);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(target, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.util;
+
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.List;
+
+/*
+ * @description Phân trang theo cursor (keyset) trên (cột sort, id): không dùng OFFSET và không chạy COUNT(*).
+ * Cursor là chuỗi base64 mờ chứa phạm vi lọc, cột sort, chiều sort, giá trị sort và id của dòng cuối trang trước.
+ * @author: Huu Thai
+ * @date:
+ * @version: 1.0
+ */
+public final class KeysetPagination {
+    private static final String ID = "id";
+
+    private KeysetPagination() {
+    }
+
+    public record Slice<T>(List<T> content, String nextCursor) {
+    }
+
+    private record Cursor(String scope, String property, Sort.Direction direction, Long id, String value) {
+    }
+
+    /**
+     * Lấy một trang kế tiếp sau cursor (cursor rỗng = trang đầu), vẫn áp dụng Specification lọc sẵn có.
+     * Chỉ dùng thuộc tính sort đầu tiên của pageable, id được thêm vào làm khóa phụ.
+     */
+    public static <T> Slice<T> fetch(JpaSpecificationExecutor<T> repository, Specification<T> specification,
+                                     Pageable pageable, String cursor) {
+        return fetch(repository, specification, pageable, cursor, "");
+    }
+
+    /**
+     * Như trên, kèm scope mô tả bộ lọc của request (VD trạng thái, từ khóa). Scope được ghi vào cursor:
+     * cursor của bộ lọc này không dùng được cho bộ lọc khác, vì vị trí trong danh sách đã đổi.
+     */
+    public static <T> Slice<T> fetch(JpaSpecificationExecutor<T> repository, Specification<T> specification,
+                                     Pageable pageable, String cursor, String scope) {
+        Sort.Order order = pageable.getSort().stream().findFirst().orElse(Sort.Order.asc(ID));
+        Cursor decoded = decode(cursor);
+        if (decoded != null && (!decoded.property().equals(order.getProperty())
+                || decoded.direction() != order.getDirection())) {
+            throw new IllegalArgumentException("Cursor không khớp với tham số sort");
+        }
+        if (decoded != null && !decoded.scope().equals(scope)) {
+            throw new IllegalArgumentException("Cursor không khớp với bộ lọc");
+        }
+
+        Specification<T> spec = specification;
+        if (decoded != null) {
+            Specification<T> after = after(decoded);
+            spec = spec == null ? after : spec.and(after);
+        }
+        if (spec == null) {
+            spec = (root, query, cb) -> cb.conjunction();
+        }
+
+        Sort sort = ID.equals(order.getProperty())
+                ? Sort.by(order)
+                : Sort.by(order, new Sort.Order(order.getDirection(), ID));
+        int size = pageable.getPageSize();
+        List<T> rows = repository.<T, List<T>>findBy(spec, q -> q.sortBy(sort).limit(size + 1).all());
+
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? encode(scope, order, content.get(content.size() - 1)) : null;
+        return new Slice<>(content, nextCursor);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Specification<T> after(Cursor cursor) {
+        return (root, query, cb) -> {
+            Path<Comparable> key = path(root, cursor.property());
+            Path<Long> id = root.get(ID);
+            boolean asc = cursor.direction().isAscending();
+            Predicate idAfter = asc ? cb.greaterThan(id, cursor.id()) : cb.lessThan(id, cursor.id());
+
+            // MariaDB xếp NULL đầu tiên khi ASC và cuối cùng khi DESC
+            if (cursor.value() == null) {
+                Predicate sameNull = cb.and(cb.isNull(key), idAfter);
+                return asc ? cb.or(sameNull, cb.isNotNull(key)) : sameNull;
+            }
+            Comparable value = convert(cursor.value(), key.getJavaType());
+            Predicate beyond = asc ? cb.greaterThan(key, value) : cb.lessThan(key, value);
+            Predicate tie = cb.and(cb.equal(key, value), idAfter);
+            Predicate next = cb.or(beyond, tie);
+            return asc ? next : cb.or(next, cb.isNull(key));
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <Y> Path<Y> path(Root<?> root, String property) {
+        Path<?> path = root;
+        for (String part : property.split("\\.")) {
+            path = path.get(part);
+        }
+        return (Path<Y>) path;
+    }
+
+    private static String encode(String scope, Sort.Order order, Object last) {
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(last);
+        Object id = wrapper.getPropertyValue(ID);
+        Object value = wrapper.getPropertyValue(order.getProperty());
+        // Scope do người dùng nhập có thể chứa xuống dòng nên được mã hóa riêng
+        String raw = Base64.getUrlEncoder().withoutPadding().encodeToString(scope.getBytes(StandardCharsets.UTF_8))
+                + "\n" + order.getProperty() + "\n" + order.getDirection().name() + "\n" + id + "\n"
+                + (value == null ? "" : "=" + (value instanceof Enum<?> e ? e.name() : value.toString()));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", 5);
+            String scope = new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8);
+            String value = parts[4].isEmpty() ? null : parts[4].substring(1);
+            return new Cursor(scope, parts[1], Sort.Direction.valueOf(parts[2]), Long.valueOf(parts[3]), value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor không hợp lệ");
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparable convert(String raw, Class<?> type) {
+        if (type == String.class) return raw;
+        if (type == Long.class || type == long.class) return Long.valueOf(raw);
+        if (type == Integer.class || type == int.class) return Integer.valueOf(raw);
+        if (type == Double.class || type == double.class) return Double.valueOf(raw);
+        if (type == Float.class || type == float.class) return Float.valueOf(raw);
+        if (type == Boolean.class || type == boolean.class) return Boolean.valueOf(raw);
+        if (type == BigDecimal.class) return new BigDecimal(raw);
+        if (type == OffsetDateTime.class) return OffsetDateTime.parse(raw);
+        if (type == LocalDateTime.class) return LocalDateTime.parse(raw);
+        if (type == LocalDate.class) return LocalDate.parse(raw);
+        if (type == Instant.class) return Instant.parse(raw);
+        if (type.isEnum()) return Enum.valueOf((Class<Enum>) type, raw);
+        throw new IllegalArgumentException("Không hỗ trợ phân trang cursor theo kiểu " + type.getSimpleName());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.util;
+
+import java.util.Arrays;
+
+/*
+ * @description Bảng băm long -> int địa chỉ mở (linear probing), không boxing key/value.
+ * Dùng cho ma trận đồng mua thưa, nơi mỗi sách có thể có hàng nghìn cặp. Không thread-safe.
+ * @author: Nguyen Tan Nghi
+ * @version: 1.0
+ */
+public final class LongIntHashMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+
+    public LongIntHashMap() {
+        this(8);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == EMPTY) {
+                return 0;
+            }
+            if (k == key) {
+                return values[i];
+            }
+        }
+    }
+
+    /**
+     * Cộng delta vào giá trị hiện có (0 nếu chưa có key)
+     */
+    public void addTo(long key, int delta) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key không hợp lệ");
+        }
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                values[i] += delta;
+                return;
+            }
+            if (k == EMPTY) {
+                keys[i] = key;
+                values[i] = delta;
+                if (++size >= resizeAt) {
+                    rehash(keys.length << 1);
+                }
+                return;
+            }
+        }
+    }
+
+    public void addAll(LongIntHashMap other) {
+        other.forEach(this::addTo);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(Consumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return tối đa k key có giá trị lớn nhất, giá trị bằng nhau thì key nhỏ trước
+     */
+    public long[] topKeys(int k) {
+        int n = Math.min(k, size);
+        if (n <= 0) {
+            return new long[0];
+        }
+        long[] topKeys = new long[n];
+        int[] topValues = new int[n];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            if (key == EMPTY || values[i] <= 0) {
+                continue;
+            }
+            int value = values[i];
+            if (count == n && !better(value, key, topValues[n - 1], topKeys[n - 1])) {
+                continue;
+            }
+            // Chèn vào mảng đã sắp xếp giảm dần (k nhỏ nên chèn tuyến tính là đủ)
+            int pos = count < n ? count++ : n - 1;
+            while (pos > 0 && better(value, key, topValues[pos - 1], topKeys[pos - 1])) {
+                topValues[pos] = topValues[pos - 1];
+                topKeys[pos] = topKeys[pos - 1];
+                pos--;
+            }
+            topValues[pos] = value;
+            topKeys[pos] = key;
+        }
+        return count == n ? topKeys : Arrays.copyOf(topKeys, count);
+    }
+
+    private static boolean better(int value, long key, int otherValue, long otherKey) {
+        return value > otherValue || (value == otherValue && key < otherKey);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key == EMPTY) {
+                continue;
+            }
+            int i = mix(key) & mask;
+            while (keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = oldValues[j];
+            size++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    // Trộn bit để id tuần tự không dồn vào các ô liền nhau
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(long key, int value);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/*
+ * @description Sinh mã đơn kiểu Snowflake: ORD-yyyyMMddHHmmss-NNSSSSS (NN: node id, SSSSS: số thứ tự trong
+ * giây). Trạng thái (giây, số thứ tự) nằm trong một AtomicLong cập nhật bằng CAS nên không khóa và không
+ * trùng trên cùng node. Hết 100000 mã trong một giây hoặc đồng hồ lùi thì mượn giây kế tiếp, mã vẫn tăng dần.
+ * Phần ngày giờ chỉ được tính lại mỗi giây, mỗi mã chỉ cấp phát đúng một String.
+ * Mỗi instance phải có order.code.node-id riêng (không có giá trị mặc định: thiếu cấu hình thì không khởi động
+ * được, tránh mọi instance cùng là node 0 rồi sinh trùng mã); khởi động lại mất vài giây nên không cấp lại mã cũ.
+ * @author: Huu Thai
+ * @date:
+ * @version: 1.0
+ */
+@Slf4j
+@Component
+public class OrderCodeGenerator {
+    private static final int SEQUENCE_BITS = 17;
+    private static final long SEQUENCE_LIMIT = 100_000;
+    private static final String PREFIX = "ORD-";
+    // ORD- + 14 chữ số thời gian + "-" + 2 chữ số node + 5 chữ số thứ tự
+    private static final int LENGTH = PREFIX.length() + 14 + 1 + 2 + 5;
+
+    private final AtomicLong state = new AtomicLong();
+    private final int nodeId;
+    private final ZoneId zone;
+    private final LongSupplier clockMillis;
+    private volatile Stamp stamp = new Stamp(-1, new char[14]);
+
+    private record Stamp(long second, char[] digits) {
+    }
+
+    @Autowired
+    public OrderCodeGenerator(@Value("${order.code.node-id}") int nodeId) {
+        this(nodeId, ZoneId.systemDefault(), System::currentTimeMillis);
+    }
+
+    /**
+     * Cho test điều khiển đồng hồ (mili giây epoch)
+     */
+    OrderCodeGenerator(int nodeId, ZoneId zone, LongSupplier clockMillis) {
+        if (nodeId < 0 || nodeId > 99) {
+            throw new IllegalArgumentException("order.code.node-id phải nằm trong khoảng 0-99");
+        }
+        this.nodeId = nodeId;
+        this.zone = zone;
+        this.clockMillis = clockMillis;
+        log.info("[OrderCode] Node id {}", nodeId);
+    }
+
+    public String next() {
+        long now = this.clockMillis.getAsLong() / 1000;
+        long current;
+        long next;
+        do {
+            current = this.state.get();
+            long second = current >>> SEQUENCE_BITS;
+            long sequence = current & ((1L << SEQUENCE_BITS) - 1);
+            if (now > second) {
+                next = now << SEQUENCE_BITS;
+            } else if (sequence + 1 < SEQUENCE_LIMIT) {
+                next = current + 1;
+            } else {
+                next = (second + 1) << SEQUENCE_BITS;
+            }
+        } while (!this.state.compareAndSet(current, next));
+        return format(next >>> SEQUENCE_BITS, next & ((1L << SEQUENCE_BITS) - 1));
+    }
+
+    private String format(long second, long sequence) {
+        char[] time = stampOf(second);
+        char[] code = new char[LENGTH];
+        PREFIX.getChars(0, PREFIX.length(), code, 0);
+        int offset = PREFIX.length();
+        System.arraycopy(time, 0, code, offset, time.length);
+        offset += time.length;
+        code[offset++] = '-';
+        writeDigits(code, offset, this.nodeId, 2);
+        writeDigits(code, offset + 2, sequence, 5);
+        return new String(code);
+    }
+
+    private char[] stampOf(long second) {
+        Stamp current = this.stamp;
+        if (current.second() == second) {
+            return current.digits();
+        }
+        ZoneOffset offset = this.zone.getRules().getOffset(Instant.ofEpochSecond(second));
+        LocalDateTime time = LocalDateTime.ofEpochSecond(second, 0, offset);
+        char[] digits = new char[14];
+        writeDigits(digits, 0, time.getYear(), 4);
+        writeDigits(digits, 4, time.getMonthValue(), 2);
+        writeDigits(digits, 6, time.getDayOfMonth(), 2);
+        writeDigits(digits, 8, time.getHour(), 2);
+        writeDigits(digits, 10, time.getMinute(), 2);
+        writeDigits(digits, 12, time.getSecond(), 2);
+        // Các luồng có thể cùng tính lại một giây, kết quả giống nhau nên ghi đè không sao
+        this.stamp = new Stamp(second, digits);
+        return digits;
+    }
+
+    private static void writeDigits(char[] buffer, int offset, long value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -4,10 +4,11 @@
  */
 package iuh.fit.edu.util;
 
-import iuh.fit.edu.entity.Order;
+import iuh.fit.edu.service.OrderCancellationService;
 import iuh.fit.edu.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -15,7 +16,8 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 
 /*
- * @description
+ * @description Lưới an toàn cho OrderExpiryService: quét DB thưa để hủy các đơn VNPay hết hạn bị lọt khỏi
+ * hàng đợi trong bộ nhớ (lô hủy bị lỗi, đơn tạo trên instance khác)
  * @author: Huu Thai
  * @date:
  * @version: 1.0
@@ -26,20 +28,22 @@ import java.util.List;
 @Component
 public class OrderScheduled {
     private final OrderService orderService;
+    private final OrderCancellationService orderCancellationService;
 
+    @Value("${order.expiry.batch-size:200}")
+    private int batchSize;
 
-    @Scheduled(fixedRate = 5000, initialDelay = 0)
+    @Scheduled(fixedDelayString = "${order.expiry.sweep-ms:30000}", initialDelayString = "${order.expiry.sweep-ms:30000}")
     public void cancelExpiredOrders(){
-        List<Order> orders = this.orderService.getExpiredOrders();
-        if(!orders.isEmpty()){
-            log.info("Tìm thấy {} đơn hàng VNPAY hết hạn. Đang tiến hành hủy ....", orders.size());
-            for(Order order : orders){
+        List<Long> orderIds = this.orderService.getExpiredOrderIds();
+        if(!orderIds.isEmpty()){
+            log.info("Tìm thấy {} đơn hàng VNPAY hết hạn. Đang tiến hành hủy ....", orderIds.size());
+            for (int from = 0; from < orderIds.size(); from += this.batchSize) {
+                List<Long> batch = orderIds.subList(from, Math.min(from + this.batchSize, orderIds.size()));
                 try {
-                    log.info("Đang hủy đơn hàng: {}", order.getOrderCode());
-                    this.orderService.cancelOrder(order.getOrderCode());
-                    log.info("Hủy đơn hàng {} thành công", order.getOrderCode());
+                    this.orderCancellationService.expireOrders(batch);
                 }catch (Exception e){
-                    log.error("Có lỗi xảy ra trong qúa trình hủy đơn hàng {}", order.getOrderCode(), e.getMessage());
+                    log.error("Có lỗi xảy ra trong qúa trình hủy {} đơn hàng: {}", batch.size(), e.getMessage());
                 }
             }
         }
@@ -0,0 +1,100 @@
+/*
+ * @ (#) .java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+ * @description Bộ đếm không âm chia thành nhiều ngăn (stripe), mỗi ngăn nằm trên một cache line riêng.
+ * Luồng lấy hàng từ ngăn "nhà" trước rồi mới sang ngăn khác nên nhiều luồng cùng mua một sách ít khi CAS
+ * trên cùng một ô nhớ. Không bao giờ cho lấy quá tổng đang có; khi hàng còn ít và nằm rải rác, hai luồng
+ * tranh nhau có thể cùng thất bại dù tổng vẫn đủ (chỉ bán thiếu tạm thời, không bán vượt).
+ * @author: Nguyen Tan Nghi
+ * @version: 1.0
+ */
+public final class StripedCounter {
+    // 16 int = 64 byte: mỗi ngăn một cache line, tránh false sharing
+    private static final int PADDING = 16;
+
+    private final AtomicIntegerArray cells;
+    private final int stripes;
+
+    public StripedCounter(int stripes) {
+        this.stripes = Math.max(1, stripes);
+        this.cells = new AtomicIntegerArray(this.stripes * PADDING);
+    }
+
+    public boolean tryAcquire(int amount) {
+        if (amount <= 0) {
+            return true;
+        }
+        int home = home();
+        int remaining = amount;
+        for (int i = 0; i < this.stripes && remaining > 0; i++) {
+            int index = ((home + i) % this.stripes) * PADDING;
+            while (remaining > 0) {
+                int current = this.cells.get(index);
+                if (current <= 0) {
+                    break;
+                }
+                int take = Math.min(current, remaining);
+                if (this.cells.compareAndSet(index, current, current - take)) {
+                    remaining -= take;
+                }
+            }
+        }
+        if (remaining > 0) {
+            // Không đủ: trả lại phần đã lấy
+            release(amount - remaining);
+            return false;
+        }
+        return true;
+    }
+
+    public void release(int amount) {
+        if (amount > 0) {
+            this.cells.addAndGet(home() * PADDING, amount);
+        }
+    }
+
+    /**
+     * Chia đều amount vào các ngăn, dùng khi nạp tồn kho ban đầu
+     */
+    public void fill(int amount) {
+        if (amount <= 0) {
+            return;
+        }
+        int share = amount / this.stripes;
+        int extra = amount % this.stripes;
+        for (int i = 0; i < this.stripes; i++) {
+            this.cells.addAndGet(i * PADDING, share + (i < extra ? 1 : 0));
+        }
+    }
+
+    /**
+     * Lấy hết hàng ra khỏi bộ đếm, trả về số đã lấy
+     */
+    public int drain() {
+        int drained = 0;
+        for (int i = 0; i < this.stripes; i++) {
+            drained += this.cells.getAndSet(i * PADDING, 0);
+        }
+        return drained;
+    }
+
+    public int sum() {
+        int sum = 0;
+        for (int i = 0; i < this.stripes; i++) {
+            sum += this.cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private int home() {
+        // Virtual thread không có id ổn định theo CPU, chọn ngẫu nhiên cũng phân tán đều
+        return ThreadLocalRandom.current().nextInt(this.stripes);
+    }
+}
@@ -0,0 +1,33 @@
+-- Chạy một lần, lúc dừng ứng dụng, trước khi triển khai bản có Book.image @OrderColumn(name = "image_order").
+-- Hibernate không nạp được danh sách có image_order null, nên mọi dòng cũ phải được đánh số trước.
+-- Bảng cũ không có khóa cho từng dòng, vì vậy chép sang bảng mới đã đánh số rồi đổi tên cả hai trong một lệnh.
+
+-- Bước 1: ghi lại thứ tự đọc ra trước đây (thứ tự chèn) để ảnh đại diện của từng sách không đổi
+CREATE TABLE book_images_seq (
+    seq        BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    book_id    BIGINT       NOT NULL,
+    image_path VARCHAR(255) NULL
+);
+
+INSERT INTO book_images_seq (book_id, image_path)
+SELECT book_id, image_path
+FROM book_images;
+
+-- Bước 2: đánh số từ 0 trong từng sách
+CREATE TABLE book_images_new (
+    book_id     BIGINT       NOT NULL,
+    image_order INT          NOT NULL,
+    image_path  VARCHAR(255) NULL,
+    PRIMARY KEY (book_id, image_order),
+    CONSTRAINT fk_book_images_book FOREIGN KEY (book_id) REFERENCES books (id)
+);
+
+INSERT INTO book_images_new (book_id, image_order, image_path)
+SELECT book_id, ROW_NUMBER() OVER (PARTITION BY book_id ORDER BY seq) - 1, image_path
+FROM book_images_seq;
+
+RENAME TABLE book_images TO book_images_old, book_images_new TO book_images;
+DROP TABLE book_images_seq;
+
+-- Kiểm tra ảnh đại diện trên vài sách rồi mới xóa bảng cũ:
+-- DROP TABLE book_images_old;
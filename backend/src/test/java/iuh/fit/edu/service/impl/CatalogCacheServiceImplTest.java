@@ -0,0 +1,84 @@
+package iuh.fit.edu.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.edu.dto.response.ResultPaginationDTO;
+import iuh.fit.edu.dto.response.cache.CatalogPageKey;
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
+import iuh.fit.edu.event.BookChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogCacheServiceImplTest {
+    private final CatalogCacheServiceImpl cache = new CatalogCacheServiceImpl(32, 32, 32, 30, new ObjectMapper());
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void stockChangeEvictsOnlyPagesShowingTheBook() {
+        CatalogPageKey first = CatalogPageKey.of("summary", "", PageRequest.of(0, 2));
+        CatalogPageKey second = CatalogPageKey.of("summary", "", PageRequest.of(1, 2));
+        load(first, 1L, 2L);
+        load(second, 3L, 4L);
+
+        this.cache.onBookChanged(BookChangedEvent.stock(List.of(3L)));
+
+        load(first, 1L, 2L);
+        load(second, 3L, 4L);
+        assertEquals(3, this.loads.get());
+    }
+
+    @Test
+    void stockChangeEvictsPagesFilteredOrSortedByQuantity() {
+        CatalogPageKey sorted = CatalogPageKey.of("books", "", PageRequest.of(0, 2, Sort.by("quantity")));
+        CatalogPageKey filtered = CatalogPageKey.of("books", "quantity > 0", PageRequest.of(0, 2));
+        load(sorted, 1L, 2L);
+        load(filtered, 1L, 2L);
+
+        this.cache.onBookChanged(BookChangedEvent.stock(List.of(9L)));
+
+        load(sorted, 1L, 2L);
+        load(filtered, 1L, 2L);
+        assertEquals(4, this.loads.get());
+    }
+
+    @Test
+    void quantityInsideFilterTextDoesNotMakePageStockDependent() {
+        assertFalse(CatalogPageKey.of("books", "title ~ '*quantity*'", PageRequest.of(0, 10)).stockDependent());
+        assertFalse(CatalogPageKey.of("books", "quantitySold > 0", PageRequest.of(0, 10)).stockDependent());
+        assertTrue(CatalogPageKey.of("books", "price < 100000 and quantity > 0", PageRequest.of(0, 10)).stockDependent());
+        assertTrue(CatalogPageKey.of("books", "", PageRequest.of(0, 10, Sort.by("quantity").descending())).stockDependent());
+    }
+
+    @Test
+    void otherChangesEvictEveryPage() {
+        CatalogPageKey first = CatalogPageKey.of("summary", "", PageRequest.of(0, 2));
+        CatalogPageKey second = CatalogPageKey.of("summary", "", PageRequest.of(1, 2));
+        load(first, 1L, 2L);
+        load(second, 3L, 4L);
+
+        this.cache.onBookChanged(BookChangedEvent.of(9L));
+
+        load(first, 1L, 2L);
+        load(second, 3L, 4L);
+        assertEquals(4, this.loads.get());
+    }
+
+    private void load(CatalogPageKey key, Long... ids) {
+        this.cache.getPage(key, () -> {
+            this.loads.incrementAndGet();
+            ResultPaginationDTO page = new ResultPaginationDTO();
+            page.setResult(Arrays.stream(ids).map(id -> {
+                BookSummaryResponse summary = new BookSummaryResponse();
+                summary.setId(id);
+                return summary;
+            }).toList());
+            return page;
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.response.summary.BookSummaryResponse;
+import iuh.fit.edu.event.OrderPlacedEvent;
+import iuh.fit.edu.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.anyCollection;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CoPurchaseServiceImplTest {
+    @Mock
+    private DataSource dataSource;
+    @Mock
+    private BookRepository bookRepository;
+    private CoPurchaseServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        // Mọi sách đều đang bán
+        when(this.bookRepository.findIdsByIdInAndStatusIn(anyCollection(), anyCollection()))
+                .thenAnswer(invocation -> List.copyOf(invocation.<Collection<Long>>getArgument(0)));
+        when(this.bookRepository.findSummariesByIds(anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).stream().map(id -> {
+                    BookSummaryResponse summary = new BookSummaryResponse();
+                    summary.setId(id);
+                    return summary;
+                }).toList());
+        this.service = new CoPurchaseServiceImpl(this.dataSource, this.bookRepository, 1000);
+    }
+
+    @Test
+    void replayedOrderEventIsCountedOnce() {
+        this.service.onOrderPlaced(new OrderPlacedEvent(1L, List.of(10L, 20L)));
+        this.service.onOrderPlaced(new OrderPlacedEvent(2L, List.of(10L, 30L)));
+        this.service.onOrderPlaced(new OrderPlacedEvent(3L, List.of(10L, 30L)));
+        // Callback thanh toán của đơn 1 tới thêm hai lần
+        this.service.onOrderPlaced(new OrderPlacedEvent(1L, List.of(10L, 20L)));
+        this.service.onOrderPlaced(new OrderPlacedEvent(1L, List.of(10L, 20L)));
+
+        assertEquals(List.of(30L, 20L), relatedIds(10L));
+    }
+
+    @Test
+    void distinctOrdersWithSameBasketAreAllCounted() {
+        this.service.onOrderPlaced(new OrderPlacedEvent(1L, List.of(10L, 30L)));
+        this.service.onOrderPlaced(new OrderPlacedEvent(2L, List.of(10L, 20L)));
+        this.service.onOrderPlaced(new OrderPlacedEvent(3L, List.of(10L, 20L)));
+
+        assertEquals(List.of(20L, 30L), relatedIds(10L));
+    }
+
+    private List<Long> relatedIds(Long bookId) {
+        return this.service.getRelatedBooks(bookId, 10).stream().map(BookSummaryResponse::getId).toList();
+    }
+}
@@ -0,0 +1,318 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.response.order.OrderEmailView;
+import iuh.fit.edu.entity.EmailOutbox;
+import iuh.fit.edu.entity.Order;
+import iuh.fit.edu.entity.constant.EmailOutboxStatus;
+import iuh.fit.edu.entity.constant.OrderStatus;
+import iuh.fit.edu.entity.constant.PaymentMethod;
+import iuh.fit.edu.repository.BookRepository;
+import iuh.fit.edu.repository.EmailOutboxRepository;
+import iuh.fit.edu.repository.OrderDetailRepository;
+import iuh.fit.edu.repository.OrderRepository;
+import iuh.fit.edu.support.FakeTransactionManager;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Đường gửi thật của outbox: render template order-confirm.html bằng Thymeleaf, gửi qua JavaMailSender
+ * (chặn ở doSend thay cho SMTP), cập nhật trạng thái dòng outbox.
+ */
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxServiceImplTest {
+    private final Map<Long, EmailOutbox> outbox = new LinkedHashMap<>();
+    private final CapturingMailSender mailSender = new CapturingMailSender();
+
+    @Mock
+    private EmailOutboxRepository outboxRepository;
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private OrderDetailRepository orderDetailRepository;
+    @Mock
+    private BookRepository bookRepository;
+    private EmailOutboxServiceImpl service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // Bảng email_outbox trong bộ nhớ, worker đọc / ghi từ nhiều luồng
+        when(this.outboxRepository.existsByOrderIdAndTemplateName(any(), any())).thenAnswer(invocation -> {
+            synchronized (this) {
+                return this.outbox.values().stream().anyMatch(email -> email.getOrderId()
+                        .equals(invocation.getArgument(0)) && email.getTemplateName().equals(invocation.getArgument(1)));
+            }
+        });
+        when(this.outboxRepository.save(any(EmailOutbox.class))).thenAnswer(invocation -> {
+            EmailOutbox email = invocation.getArgument(0);
+            synchronized (this) {
+                email.setId((long) this.outbox.size() + 1);
+                this.outbox.put(email.getId(), email);
+            }
+            return email;
+        });
+        when(this.outboxRepository.findDueForUpdate(anyCollection(), any(), any())).thenAnswer(invocation -> {
+            Collection<EmailOutboxStatus> statuses = invocation.getArgument(0);
+            OffsetDateTime now = invocation.getArgument(1);
+            synchronized (this) {
+                return this.outbox.values().stream()
+                        .filter(email -> statuses.contains(email.getStatus()))
+                        .filter(email -> !email.getNextAttemptAt().isAfter(now))
+                        .toList();
+            }
+        });
+        when(this.outboxRepository.claim(anyCollection(), any(), any())).thenAnswer(invocation -> {
+            synchronized (this) {
+                invocation.<Collection<Long>>getArgument(0).forEach(id -> {
+                    this.outbox.get(id).setStatus(invocation.getArgument(1));
+                    this.outbox.get(id).setNextAttemptAt(invocation.getArgument(2));
+                });
+            }
+            return 1;
+        });
+        when(this.outboxRepository.markSent(anyCollection(), any(), any())).thenAnswer(invocation -> {
+            synchronized (this) {
+                invocation.<Collection<Long>>getArgument(0).forEach(id -> {
+                    this.outbox.get(id).setStatus(invocation.getArgument(1));
+                    this.outbox.get(id).setSentAt(invocation.getArgument(2));
+                });
+            }
+            return 1;
+        });
+        when(this.orderRepository.findEmailHeadersByIdIn(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<Long>>getArgument(0).stream().map(EmailOutboxServiceImplTest::header).toList());
+        when(this.orderDetailRepository.findEmailLinesByOrderIdIn(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<Long>>getArgument(0).stream().map(EmailOutboxServiceImplTest::line).toList());
+        when(this.bookRepository.findFirstImageKeysByIdIn(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "cover-1.jpg"}));
+
+        this.service = new EmailOutboxServiceImpl(this.outboxRepository, this.orderRepository,
+                this.orderDetailRepository, this.bookRepository,
+                new EmailServiceImpl(this.mailSender, templateEngine(), "https://cdn.example.com/"),
+                this.mailSender, new TransactionTemplate(new FakeTransactionManager()),
+                50, 2, 6, 30_000, 3_600_000, 300_000);
+    }
+
+    @AfterEach
+    void shutdown() {
+        this.service.shutdown();
+    }
+
+    @Test
+    void sendsQueuedOrderEmailThroughMailSender() throws Exception {
+        this.service.enqueueOrderEmail(order(1L, "an@example.com"), "Đặt hàng thành công #ORD1", "order-confirm.html");
+
+        await(() -> status(1L) == EmailOutboxStatus.SENT);
+        assertEquals(1, this.mailSender.sent.size());
+        MimeMessage message = this.mailSender.sent.get(0);
+        assertEquals("Đặt hàng thành công #ORD1", message.getSubject());
+        assertEquals("an@example.com", message.getAllRecipients()[0].toString());
+        String html = (String) message.getContent();
+        assertTrue(html.contains("ORD1"));
+        assertTrue(html.contains("Lập trình Java"));
+        assertTrue(html.contains("120.000 đ"));
+        assertTrue(html.contains("https://cdn.example.com/cover-1.jpg"));
+        assertEquals(1, this.service.getStats().getSent());
+    }
+
+    @Test
+    void replayedConfirmationDoesNotQueueSecondEmail() throws Exception {
+        Order order = order(1L, "an@example.com");
+        this.service.enqueueOrderEmail(order, "Đặt hàng thành công #ORD1", "order-confirm.html");
+        this.service.enqueueOrderEmail(order, "Đặt hàng thành công #ORD1", "order-confirm.html");
+
+        await(() -> status(1L) == EmailOutboxStatus.SENT);
+        assertEquals(1, rows().size());
+        assertEquals(1, this.mailSender.sent.size());
+    }
+
+    @Test
+    void failedRecipientIsRescheduledOthersAreSent() throws Exception {
+        this.mailSender.rejected.add("bad@example.com");
+        when(this.outboxRepository.markFailed(any(), any(), anyInt(), any(), any())).thenAnswer(invocation -> {
+            synchronized (this) {
+                EmailOutbox email = this.outbox.get(invocation.<Long>getArgument(0));
+                email.setStatus(invocation.getArgument(1));
+                email.setAttempts(invocation.getArgument(2));
+                email.setNextAttemptAt(invocation.getArgument(3));
+                email.setLastError(invocation.getArgument(4));
+            }
+            return 1;
+        });
+        this.service.enqueueOrderEmail(order(1L, "an@example.com"), "Đơn #ORD1", "order-confirm.html");
+        this.service.enqueueOrderEmail(order(2L, "bad@example.com"), "Đơn #ORD2", "order-confirm.html");
+
+        // Bộ đếm retried tăng sau khi markFailed ghi xong dòng outbox
+        await(() -> status(1L) == EmailOutboxStatus.SENT && this.service.getStats().getRetried() == 1);
+        EmailOutbox failed = row(2L);
+        assertEquals(1, failed.getAttempts());
+        assertEquals(EmailOutboxStatus.PENDING, failed.getStatus());
+        assertTrue(failed.getNextAttemptAt().isAfter(OffsetDateTime.now().plusSeconds(20)));
+        assertTrue(failed.getLastError().contains("bad@example.com"));
+    }
+
+    private static SpringTemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+
+    private static Order order(Long id, String email) {
+        Order order = new Order();
+        order.setId(id);
+        order.setOrderCode("ORD" + id);
+        order.setReceiverEmail(email);
+        return order;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Hết thời gian chờ outbox");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private synchronized List<EmailOutbox> rows() {
+        return new ArrayList<>(this.outbox.values());
+    }
+
+    private synchronized EmailOutbox row(Long orderId) {
+        return this.outbox.values().stream()
+                .filter(email -> email.getOrderId().equals(orderId))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private synchronized EmailOutboxStatus status(Long orderId) {
+        return row(orderId).getStatus();
+    }
+
+    private static OrderEmailView.Header header(Long id) {
+        return new OrderEmailView.Header() {
+            public Long getId() {
+                return id;
+            }
+
+            public String getOrderCode() {
+                return "ORD" + id;
+            }
+
+            public String getReceiverName() {
+                return "Nguyễn Văn An";
+            }
+
+            public String getReceiverPhone() {
+                return "0912345678";
+            }
+
+            public String getReceiverAddress() {
+                return "12 Nguyễn Văn Bảo, Gò Vấp, TP.HCM";
+            }
+
+            public String getReceiverEmail() {
+                return "an@example.com";
+            }
+
+            public String getNote() {
+                return null;
+            }
+
+            public OffsetDateTime getOrderDate() {
+                return OffsetDateTime.now();
+            }
+
+            public PaymentMethod getPaymentMethod() {
+                return PaymentMethod.COD;
+            }
+
+            public OrderStatus getStatus() {
+                return OrderStatus.PENDING;
+            }
+
+            public double getTotalPrice() {
+                return 240_000;
+            }
+        };
+    }
+
+    private static OrderEmailView.Line line(Long orderId) {
+        return new OrderEmailView.Line() {
+            public Long getOrderId() {
+                return orderId;
+            }
+
+            public Long getBookId() {
+                return 1L;
+            }
+
+            public String getTitle() {
+                return "Lập trình Java";
+            }
+
+            public int getQuantity() {
+                return 2;
+            }
+
+            public double getPrice() {
+                return 120_000;
+            }
+        };
+    }
+
+    /**
+     * Giữ lại message thay vì mở kết nối SMTP; người nhận trong rejected bị từ chối như server thật
+     */
+    private static class CapturingMailSender extends JavaMailSenderImpl {
+        private final List<MimeMessage> sent = new CopyOnWriteArrayList<>();
+        private final Set<String> rejected = new HashSet<>();
+
+        @Override
+        protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            for (MimeMessage message : mimeMessages) {
+                try {
+                    Address recipient = message.getAllRecipients()[0];
+                    if (this.rejected.contains(recipient.toString())) {
+                        failed.put(message, new MessagingException("550 Mailbox unavailable: " + recipient));
+                    } else {
+                        this.sent.add(message);
+                    }
+                } catch (MessagingException e) {
+                    failed.put(message, e);
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new MailSendException(failed);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.response.order.OrderEmailView;
+import iuh.fit.edu.entity.constant.OrderStatus;
+import iuh.fit.edu.entity.constant.PaymentMethod;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailServiceImplTest {
+    private static final String TEMPLATE = "order-confirm.html";
+
+    private final SpringTemplateEngine templateEngine = templateEngine();
+    private final EmailServiceImpl emailService =
+            new EmailServiceImpl(new JavaMailSenderImpl(), this.templateEngine, "https://cdn.example.com/");
+
+    @Test
+    void reusedBufferDoesNotLeakPreviousOrder() {
+        String large = this.emailService.renderOrderTemplate(TEMPLATE, order(100));
+        String small = this.emailService.renderOrderTemplate(TEMPLATE, order(1));
+
+        assertTrue(large.contains("Sách số 99"));
+        assertFalse(small.contains("Sách số 2"));
+        assertEquals(renderWithFreshContext(order(1)), small);
+    }
+
+    private String renderWithFreshContext(OrderEmailView order) {
+        Context context = new Context();
+        context.setVariable("order", order);
+        context.setVariable("imageBaseUrl", "https://cdn.example.com/");
+        return this.templateEngine.process(TEMPLATE, context);
+    }
+
+    private static SpringTemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+
+    private static OrderEmailView order(int lines) {
+        List<OrderEmailView.Item> items = new ArrayList<>(lines);
+        double total = 0;
+        for (int i = 1; i <= lines; i++) {
+            double price = 50_000 + i * 1_000;
+            items.add(OrderEmailView.Item.of("Sách số " + i, "books/" + i + ".jpg", 1 + i % 3, price));
+            total += price * (1 + i % 3);
+        }
+        double totalPrice = total;
+        return OrderEmailView.of(new OrderEmailView.Header() {
+            public Long getId() {
+                return 1L;
+            }
+
+            public String getOrderCode() {
+                return "ORD1";
+            }
+
+            public String getReceiverName() {
+                return "Nguyễn Văn An";
+            }
+
+            public String getReceiverPhone() {
+                return "0912345678";
+            }
+
+            public String getReceiverAddress() {
+                return "12 Nguyễn Văn Bảo, Gò Vấp, TP.HCM";
+            }
+
+            public String getReceiverEmail() {
+                return "an@example.com";
+            }
+
+            public String getNote() {
+                return "Giao giờ hành chính";
+            }
+
+            public OffsetDateTime getOrderDate() {
+                return OffsetDateTime.parse("2025-01-15T09:30:00+07:00");
+            }
+
+            public PaymentMethod getPaymentMethod() {
+                return PaymentMethod.VNPAY;
+            }
+
+            public OrderStatus getStatus() {
+                return OrderStatus.PENDING;
+            }
+
+            public double getTotalPrice() {
+                return totalPrice;
+            }
+        }, items);
+    }
+}
@@ -0,0 +1,93 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.response.file.ResPresignedUploadDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileServiceImplTest {
+    private final Path root;
+    private final FileServiceImpl fileService;
+
+    FileServiceImplTest() throws Exception {
+        this.root = Files.createTempDirectory("files-");
+        this.fileService = new FileServiceImpl(this.root.toUri().toString(), "http://localhost:8080/files/",
+                "test-secret", 10, event -> {
+        });
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        FileSystemUtils.deleteRecursively(this.root);
+    }
+
+    @Test
+    void signedUrlAcceptsExactlyTheSignedUpload() throws IOException {
+        ResPresignedUploadDTO upload = this.fileService.presignUpload("books/7", "bìa sách.png", "image/png", 4);
+        Map<String, String> query = UriComponentsBuilder.fromUriString(upload.getUrl()).build()
+                .getQueryParams().toSingleValueMap();
+        long expires = Long.parseLong(query.get("expires"));
+        String signature = query.get("signature");
+
+        assertEquals("PUT", upload.getMethod());
+        assertTrue(upload.getKey().startsWith("books/7/") && upload.getKey().endsWith("-b_a_s_ch.png"));
+        assertTrue(this.fileService.verifyUpload(upload.getKey(), "image/png", 4, expires, signature));
+        assertFalse(this.fileService.verifyUpload(upload.getKey(), "image/png", 5, expires, signature));
+        assertFalse(this.fileService.verifyUpload(upload.getKey(), "image/gif", 4, expires, signature));
+        assertFalse(this.fileService.verifyUpload("books/8/other.png", "image/png", 4, expires, signature));
+        assertFalse(this.fileService.verifyUpload(upload.getKey(), "image/png", 4, expires + 60, signature));
+
+        this.fileService.storeUpload(upload.getKey(), new ByteArrayInputStream(new byte[]{1, 2, 3, 4}), 4);
+        assertEquals(4, this.fileService.getObjectInfo(upload.getKey()).size());
+        assertEquals("image/png", this.fileService.getObjectInfo(upload.getKey()).contentType());
+    }
+
+    @Test
+    void expiredUrlIsRejected() throws InterruptedException {
+        FileServiceImpl expiring = newService(0);
+        ResPresignedUploadDTO upload = expiring.presignUpload("books/7", "a.png", "image/png", 4);
+        String signature = UriComponentsBuilder.fromUriString(upload.getUrl()).build()
+                .getQueryParams().getFirst("signature");
+        long expires = upload.getExpiresAt().getEpochSecond();
+        while (Instant.now().getEpochSecond() <= expires) {
+            Thread.sleep(50);
+        }
+
+        assertFalse(expiring.verifyUpload(upload.getKey(), "image/png", 4, expires, signature));
+    }
+
+    @Test
+    void bodyOfOtherSizeIsNotStored() {
+        assertThrows(IllegalArgumentException.class, () -> this.fileService.storeUpload("books/7/a.png",
+                new ByteArrayInputStream(new byte[10]), 4));
+        assertThrows(IllegalArgumentException.class, () -> this.fileService.storeUpload("books/7/a.png",
+                new ByteArrayInputStream(new byte[2]), 4));
+        assertFalse(this.fileService.exists("books/7/a.png"));
+    }
+
+    @Test
+    void extensionMustMatchContentType() {
+        assertThrows(IllegalArgumentException.class,
+                () -> this.fileService.presignUpload("books/7", "a.png", "image/jpeg", 4));
+    }
+
+    private FileServiceImpl newService(long expireMinutes) {
+        try {
+            return new FileServiceImpl(this.root.toUri().toString(), "http://localhost:8080/files/",
+                    "test-secret", expireMinutes, event -> {
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.dto.request.order.OrderItemRequest;
+import iuh.fit.edu.dto.request.order.OrderRequest;
+import iuh.fit.edu.entity.Address;
+import iuh.fit.edu.entity.Book;
+import iuh.fit.edu.entity.User;
+import iuh.fit.edu.entity.constant.PaymentMethod;
+import iuh.fit.edu.exception.InsufficientStockException;
+import iuh.fit.edu.mapper.OrderMapper;
+import iuh.fit.edu.repository.BookRepository;
+import iuh.fit.edu.repository.OrderDetailRepository;
+import iuh.fit.edu.repository.OrderRepository;
+import iuh.fit.edu.repository.UserRepository;
+import iuh.fit.edu.service.EmailOutboxService;
+import iuh.fit.edu.service.OrderCancellationService;
+import iuh.fit.edu.service.PaymentService;
+import iuh.fit.edu.service.StockLedgerService;
+import iuh.fit.edu.util.OrderCodeGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Phần trừ kho của createOrder với repository giả: gộp dòng trùng, báo mọi dòng thiếu hàng, id truyền xuống
+ * repository theo thứ tự tăng dần và sách đã khóa được nạp lại sau câu UPDATE. Khóa dòng và câu UPDATE CASE
+ * chạy trên MariaDB, test này không kiểm tra bán vượt hay deadlock ở tầng DB.
+ */
+@ExtendWith(MockitoExtension.class)
+class OrderServiceImplTest {
+    private final Map<Long, Integer> stock = new HashMap<>();
+
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private BookRepository bookRepository;
+    @Mock
+    private OrderDetailRepository orderDetailRepository;
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private PaymentService paymentService;
+    @Mock
+    private EmailOutboxService emailOutboxService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private StockLedgerService stockLedgerService;
+    @Mock
+    private OrderCancellationService orderCancellationService;
+    @Captor
+    private ArgumentCaptor<Collection<Long>> lockedIds;
+    @Captor
+    private ArgumentCaptor<SortedMap<Long, Integer>> reserved;
+    @Captor
+    private ArgumentCaptor<Collection<Book>> refreshed;
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail("an@example.com");
+        user.setAddress(new Address());
+        when(this.userRepository.findByEmail("an@example.com")).thenReturn(user);
+        when(this.bookRepository.findAllByIdInForUpdate(anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).stream()
+                        .filter(this.stock::containsKey)
+                        .map(this::row)
+                        .toList());
+        this.orderService = new OrderServiceImpl(this.orderRepository, this.userRepository, this.bookRepository,
+                this.orderDetailRepository, this.orderMapper, this.paymentService, this.emailOutboxService,
+                this.eventPublisher, this.stockLedgerService, this.orderCancellationService, new OrderCodeGenerator(0));
+    }
+
+    @Test
+    void shortageReportsEveryShortLineAndReservesNothing() {
+        this.stock.put(1L, 5);
+        this.stock.put(2L, 1);
+        this.stock.put(3L, 10);
+
+        InsufficientStockException e = assertThrows(InsufficientStockException.class,
+                () -> placeOrder(List.of(item(3L, 2), item(2L, 1), item(1L, 4), item(2L, 1), item(1L, 2))));
+
+        assertEquals(List.of(new InsufficientStockException.Shortage(1L, "Sách 1", 6, 5),
+                        new InsufficientStockException.Shortage(2L, "Sách 2", 2, 1)),
+                e.getShortages());
+        verify(this.bookRepository, never()).reserveStock(any());
+    }
+
+    @Test
+    void duplicateLinesAreMergedAndReservedInIdOrder() {
+        this.stock.put(1L, 5);
+        this.stock.put(2L, 5);
+        reserveSucceeds();
+
+        placeOrder(List.of(item(2L, 1), item(1L, 2), item(2L, 3)));
+
+        // Mọi đơn khóa và trừ theo id tăng dần, bất kể thứ tự dòng trong đơn
+        verify(this.bookRepository).findAllByIdInForUpdate(this.lockedIds.capture());
+        assertEquals(List.of(1L, 2L), new ArrayList<>(this.lockedIds.getValue()));
+        verify(this.bookRepository).reserveStock(this.reserved.capture());
+        assertEquals(List.of(Map.entry(1L, 2), Map.entry(2L, 4)), new ArrayList<>(this.reserved.getValue().entrySet()));
+    }
+
+    @Test
+    void lockedBooksAreRefreshedAfterReserving() {
+        this.stock.put(1L, 5);
+        this.stock.put(2L, 5);
+        reserveSucceeds();
+
+        placeOrder(List.of(item(2L, 1), item(1L, 2)));
+
+        verify(this.bookRepository).refreshAll(this.refreshed.capture());
+        assertEquals(List.of(1L, 2L), this.refreshed.getValue().stream().map(Book::getId).sorted().toList());
+    }
+
+    // Câu UPDATE trừ được mọi dòng
+    private void reserveSucceeds() {
+        when(this.bookRepository.reserveStock(any()))
+                .thenAnswer(invocation -> invocation.<SortedMap<Long, Integer>>getArgument(0).size());
+    }
+
+    private void placeOrder(List<OrderItemRequest> items) {
+        OrderRequest request = new OrderRequest();
+        request.setReceiverName("Nguyễn Văn An");
+        request.setReceiverPhone("0912345678");
+        request.setReceiverAddress("12 Nguyễn Văn Bảo, Gò Vấp, TP.HCM");
+        request.setReceiverEmail("an@example.com");
+        request.setPaymentMethod(PaymentMethod.COD);
+        request.setItems(items);
+        this.orderService.createOrder("an@example.com", request, null);
+    }
+
+    private static OrderItemRequest item(Long bookId, int quantity) {
+        OrderItemRequest item = new OrderItemRequest();
+        item.setBookId(bookId);
+        item.setQuantity(quantity);
+        item.setPrice(100_000.0);
+        return item;
+    }
+
+    private Book row(Long bookId) {
+        Book book = new Book();
+        book.setId(bookId);
+        book.setTitle("Sách " + bookId);
+        book.setQuantity(this.stock.get(bookId));
+        return book;
+    }
+}
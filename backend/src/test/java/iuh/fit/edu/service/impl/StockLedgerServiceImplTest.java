@@ -0,0 +1,459 @@
+package iuh.fit.edu.service.impl;
+
+import iuh.fit.edu.entity.Book;
+import iuh.fit.edu.entity.StockGrant;
+import iuh.fit.edu.entity.StockJournal;
+import iuh.fit.edu.exception.StockBusyException;
+import iuh.fit.edu.repository.BookRepository;
+import iuh.fit.edu.repository.StockGrantRepository;
+import iuh.fit.edu.repository.StockJournalRepository;
+import iuh.fit.edu.support.FakeTransactionManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Hai node dùng chung một "DB" trong bộ nhớ: khóa dòng sách giữ tới hết transaction, nhật ký của transaction
+ * rollback bị bỏ, như MariaDB. Kiểm tra tổng số bán qua mọi node không vượt tồn kho.
+ */
+@ExtendWith(MockitoExtension.class)
+// "DB" giả trả lời mọi truy vấn của dịch vụ, không phải test nào cũng đi qua mọi truy vấn
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StockLedgerServiceImplTest {
+    private static final long BOOK_ID = 1L;
+    private static final int THREADS = 32;
+    private static final ApplicationEventPublisher NO_EVENTS = event -> {
+    };
+
+    @Mock
+    private BookRepository bookRepository;
+    @Mock
+    private StockGrantRepository grantRepository;
+    @Mock
+    private StockJournalRepository journalRepository;
+
+    private InMemoryStock stock(int quantity) {
+        return new InMemoryStock(quantity).answer(this.bookRepository, this.grantRepository, this.journalRepository);
+    }
+
+    @Test
+    void twoNodesNeverOversellHotBook() throws Exception {
+        InMemoryStock db = stock(1000);
+        StockLedgerServiceImpl first = db.node(1, 60_000);
+        StockLedgerServiceImpl second = db.node(2, 60_000);
+        AtomicInteger sold = new AtomicInteger();
+
+        try (Maintenance ignored = new Maintenance(first, second)) {
+            runConcurrently(index -> {
+                StockLedgerServiceImpl node = index % 2 == 0 ? first : second;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 400; i++) {
+                    int quantity = 1 + random.nextInt(3);
+                    boolean rollback = random.nextInt(10) == 0;
+                    if (db.order(node, quantity, rollback)) {
+                        sold.addAndGet(quantity);
+                    }
+                }
+            });
+        }
+        first.flush();
+        second.flush();
+
+        assertTrue(sold.get() <= 1000, "Bán vượt: " + sold.get());
+        assertEquals(1000 - sold.get(), db.quantity());
+        assertTrue(db.minQuantity() >= 0, "Tồn kho bị âm: " + db.minQuantity());
+        assertTrue(db.minFree() >= 0, "Phần đã chia vượt tồn kho: " + db.minFree());
+    }
+
+    @Test
+    void reclaimsGrantOfStoppedNode() throws Exception {
+        InMemoryStock db = stock(200);
+        StockLedgerServiceImpl survivor = db.node(1, 300);
+        StockLedgerServiceImpl stopped = db.node(2, 300);
+
+        // Node 2 bán vài đơn rồi dừng, không ghi dồn và không gia hạn nữa
+        for (int i = 0; i < 5; i++) {
+            assertTrue(db.order(stopped, 2, false));
+        }
+        assertEquals(190, db.quantity() + db.pendingJournal(2));
+
+        int sold = 10;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try (Maintenance ignored = new Maintenance(survivor)) {
+            while (sold < 200 && System.nanoTime() < deadline) {
+                if (db.order(survivor, 1, false)) {
+                    sold++;
+                } else {
+                    Thread.sleep(5);
+                }
+            }
+        }
+        survivor.flush();
+
+        assertEquals(200, sold);
+        assertEquals(0, db.quantity());
+        assertEquals(0, db.pendingJournal(2));
+        assertEquals(0, db.granted(2));
+    }
+
+    @Test
+    void coldPathOnlySeesUngrantedStock() throws Exception {
+        InMemoryStock db = stock(100);
+        StockLedgerServiceImpl node = db.node(1, 60_000);
+
+        assertTrue(db.order(node, 1, false));
+        // Node đã nhận grant-size (50) nên chỉ còn 50 cho đường DB, dù books.quantity vẫn là 100 trước khi ghi dồn
+        assertEquals(100, db.quantity());
+        assertEquals(50, db.quantity() - db.grantedTotal());
+        node.flush();
+        assertEquals(99, db.quantity());
+        assertEquals(49, db.granted(1));
+        assertEquals(50, db.quantity() - db.grantedTotal());
+    }
+
+    @Test
+    void expiredLeaseAsksClientToRetry() throws Exception {
+        InMemoryStock db = stock(100);
+        StockLedgerServiceImpl node = db.node(1, 200);
+
+        // Không gia hạn quá nửa lease thì node ngừng bán phần của mình, client nhận 503 và thử lại
+        Thread.sleep(300);
+        StockBusyException e = assertThrows(StockBusyException.class, () -> db.order(node, 1, false));
+        assertEquals(1, e.getRetryAfterSeconds());
+        assertEquals(100, db.quantity());
+    }
+
+    private static void runConcurrently(IntTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface IntTask {
+        void run(int index) throws Exception;
+    }
+
+    /**
+     * Chạy scheduledFlush của các node liên tục như @Scheduled
+     */
+    private static final class Maintenance implements AutoCloseable {
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final Thread thread;
+
+        private Maintenance(StockLedgerServiceImpl... nodes) {
+            this.thread = new Thread(() -> {
+                while (this.running.get()) {
+                    for (StockLedgerServiceImpl node : nodes) {
+                        node.scheduledFlush();
+                    }
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            this.thread.start();
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            this.running.set(false);
+            this.thread.join();
+        }
+    }
+
+    private static final class InMemoryStock {
+        private final ReentrantLock bookLock = new ReentrantLock();
+        private final Map<String, StockGrant> grants = new HashMap<>();
+        private final List<StockJournal> journal = new ArrayList<>();
+        private final AtomicLong journalIds = new AtomicLong();
+        private final FakeTransactionManager transactionManager = new FakeTransactionManager();
+        private BookRepository bookRepository;
+        private StockGrantRepository grantRepository;
+        private StockJournalRepository journalRepository;
+        private int quantity;
+        private int minQuantity;
+        private int minFree;
+
+        private InMemoryStock(int quantity) {
+            this.quantity = quantity;
+            this.minQuantity = quantity;
+            this.minFree = quantity;
+        }
+
+        private StockLedgerServiceImpl node(int nodeId, long leaseMillis) {
+            StockLedgerServiceImpl node = new StockLedgerServiceImpl(this.bookRepository, this.journalRepository,
+                    this.grantRepository, new TransactionTemplate(this.transactionManager), NO_EVENTS, nodeId, 8, 5000, 50, leaseMillis, 5000);
+            node.afterSingletonsInstantiated();
+            return node;
+        }
+
+        /**
+         * Một đơn chỉ có sách hot, commit hoặc rollback
+         */
+        private boolean order(StockLedgerServiceImpl node, int quantity, boolean rollback) {
+            Boolean placed = new TransactionTemplate(this.transactionManager).execute(status -> {
+                Map<Long, Integer> shortages = node.reserve(new TreeMap<>(Map.of(BOOK_ID, quantity)), "ORD");
+                if (!shortages.isEmpty()) {
+                    return false;
+                }
+                if (rollback) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
+            return Boolean.TRUE.equals(placed);
+        }
+
+        private synchronized int quantity() {
+            return this.quantity;
+        }
+
+        private synchronized int minQuantity() {
+            return this.minQuantity;
+        }
+
+        private synchronized int minFree() {
+            return this.minFree;
+        }
+
+        private synchronized int grantedTotal() {
+            return this.grants.values().stream().mapToInt(StockGrant::getQuantity).sum();
+        }
+
+        private synchronized int granted(int nodeId) {
+            StockGrant grant = this.grants.get(grantKey(BOOK_ID, nodeId));
+            return grant == null ? 0 : grant.getQuantity();
+        }
+
+        private synchronized int pendingJournal(int nodeId) {
+            return this.journal.stream()
+                    .filter(entry -> Objects.equals(entry.getNodeId(), nodeId))
+                    .mapToInt(StockJournal::getDelta)
+                    .sum();
+        }
+
+        private synchronized void check() {
+            this.minQuantity = Math.min(this.minQuantity, this.quantity);
+            this.minFree = Math.min(this.minFree, this.quantity - grantedTotal());
+        }
+
+        // Khóa dòng sách tới khi transaction hiện tại kết thúc, như SELECT ... FOR UPDATE / UPDATE
+        private void lockBook() {
+            if (this.bookLock.isHeldByCurrentThread()) {
+                return;
+            }
+            this.bookLock.lock();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    InMemoryStock.this.bookLock.unlock();
+                }
+            });
+        }
+
+        // Các repository mock của test trả lời như bảng books, stock_grants, stock_journal trên "DB" này
+        @SuppressWarnings("unchecked")
+        private InMemoryStock answer(BookRepository bookRepository, StockGrantRepository grantRepository,
+                                     StockJournalRepository journalRepository) {
+            this.bookRepository = bookRepository;
+            this.grantRepository = grantRepository;
+            this.journalRepository = journalRepository;
+
+            when(bookRepository.findHotSkuIds()).thenReturn(List.of(BOOK_ID));
+            when(bookRepository.findAllByIdInForUpdate(anyCollection())).thenAnswer(invocation -> {
+                lockBook();
+                Book book = new Book();
+                book.setId(BOOK_ID);
+                book.setHotSku(true);
+                book.setQuantity(quantity());
+                return List.of(book);
+            });
+            when(bookRepository.applyStockDeltas(any())).thenAnswer(invocation -> {
+                Map<Long, Integer> deltas = invocation.getArgument(0);
+                if (!deltas.isEmpty()) {
+                    lockBook();
+                }
+                synchronized (this) {
+                    this.quantity += deltas.getOrDefault(BOOK_ID, 0);
+                }
+                return deltas.size();
+            });
+            when(bookRepository.updateHotSku(any(), anyBoolean())).thenReturn(1);
+
+            when(grantRepository.findByBookIdAndNodeId(any(), anyInt())).thenAnswer(invocation -> {
+                synchronized (this) {
+                    return Optional.ofNullable(this.grants.get(grantKey(invocation.getArgument(0), invocation.getArgument(1))))
+                            .map(InMemoryStock::copy);
+                }
+            });
+            when(grantRepository.findAllByNodeId(anyInt())).thenAnswer(invocation -> {
+                int nodeId = invocation.getArgument(0);
+                synchronized (this) {
+                    return this.grants.values().stream()
+                            .filter(grant -> grant.getNodeId() == nodeId)
+                            .map(InMemoryStock::copy)
+                            .toList();
+                }
+            });
+            when(grantRepository.sumQuantityByBookId(any())).thenAnswer(invocation -> (long) grantedTotal());
+            when(grantRepository.save(any(StockGrant.class))).thenAnswer(invocation -> {
+                StockGrant grant = copy(invocation.getArgument(0));
+                synchronized (this) {
+                    this.grants.put(grantKey(grant.getBookId(), grant.getNodeId()), grant);
+                    check();
+                }
+                return grant;
+            });
+            when(grantRepository.addQuantity(any(), anyInt(), anyInt())).thenAnswer(invocation -> {
+                synchronized (this) {
+                    StockGrant grant = this.grants.get(grantKey(invocation.getArgument(0), invocation.getArgument(1)));
+                    if (grant != null) {
+                        grant.setQuantity(grant.getQuantity() + invocation.<Integer>getArgument(2));
+                    }
+                    check();
+                    return grant == null ? 0 : 1;
+                }
+            });
+            when(grantRepository.renewLease(anyInt(), any())).thenAnswer(invocation -> {
+                int nodeId = invocation.getArgument(0);
+                synchronized (this) {
+                    this.grants.values().stream()
+                            .filter(grant -> grant.getNodeId() == nodeId)
+                            .forEach(grant -> grant.setLeaseUntil(invocation.getArgument(1)));
+                }
+                return 1;
+            });
+            when(grantRepository.findExpiredNodeIds(anyInt(), any())).thenAnswer(invocation -> {
+                int nodeId = invocation.getArgument(0);
+                OffsetDateTime before = invocation.getArgument(1);
+                Map<Integer, OffsetDateTime> latest = new HashMap<>();
+                synchronized (this) {
+                    this.grants.values().forEach(grant -> latest.merge(grant.getNodeId(), grant.getLeaseUntil(),
+                            (a, b) -> a.isAfter(b) ? a : b));
+                }
+                return latest.entrySet().stream()
+                        .filter(entry -> entry.getKey() != nodeId)
+                        .filter(entry -> entry.getValue().isBefore(before))
+                        .map(Map.Entry::getKey)
+                        .toList();
+            });
+            when(grantRepository.findOverAllocatedBookIds(anyInt())).thenAnswer(invocation -> {
+                synchronized (this) {
+                    return this.quantity < grantedTotal()
+                            && this.grants.containsKey(grantKey(BOOK_ID, invocation.getArgument(0)))
+                            ? List.of(BOOK_ID) : List.of();
+                }
+            });
+            when(grantRepository.deleteByBookIdAndNodeId(any(), anyInt())).thenAnswer(invocation -> {
+                synchronized (this) {
+                    return this.grants.remove(grantKey(invocation.getArgument(0), invocation.getArgument(1))) == null ? 0 : 1;
+                }
+            });
+            when(grantRepository.deleteAllByNodeId(anyInt())).thenAnswer(invocation -> {
+                int nodeId = invocation.getArgument(0);
+                synchronized (this) {
+                    this.grants.values().removeIf(grant -> grant.getNodeId() == nodeId);
+                }
+                return 1;
+            });
+            when(grantRepository.deleteExpiredByNodeId(anyInt(), any())).thenAnswer(invocation -> {
+                int nodeId = invocation.getArgument(0);
+                OffsetDateTime before = invocation.getArgument(1);
+                synchronized (this) {
+                    this.grants.values().removeIf(grant -> grant.getNodeId() == nodeId
+                            && grant.getLeaseUntil().isBefore(before));
+                }
+                return 1;
+            });
+
+            when(journalRepository.saveAll(anyList())).thenAnswer(invocation -> {
+                List<StockJournal> entries = new ArrayList<>(invocation.<Collection<StockJournal>>getArgument(0));
+                entries.forEach(entry -> entry.setId(this.journalIds.incrementAndGet()));
+                // Dòng nhật ký chỉ thấy được sau khi transaction của đơn commit
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == STATUS_COMMITTED) {
+                            synchronized (InMemoryStock.this) {
+                                InMemoryStock.this.journal.addAll(entries);
+                            }
+                        }
+                    }
+                });
+                return entries;
+            });
+            when(journalRepository.findAllByNodeIdOrderByIdAsc(any(), any()))
+                    .thenAnswer(invocation -> pending(invocation.getArgument(0), invocation.getArgument(1)));
+            when(journalRepository.findAllByNodeIdIsNullOrderByIdAsc(any()))
+                    .thenAnswer(invocation -> pending(null, invocation.getArgument(0)));
+            doAnswer(invocation -> {
+                Set<Object> ids = new HashSet<>();
+                invocation.<Iterable<?>>getArgument(0).forEach(ids::add);
+                synchronized (this) {
+                    this.journal.removeIf(entry -> ids.contains(entry.getId()));
+                }
+                return null;
+            }).when(journalRepository).deleteAllByIdInBatch(any());
+            return this;
+        }
+
+        private synchronized List<StockJournal> pending(Integer nodeId, Pageable page) {
+            return this.journal.stream()
+                    .filter(entry -> Objects.equals(entry.getNodeId(), nodeId))
+                    .limit(page.getPageSize())
+                    .toList();
+        }
+
+        private static String grantKey(Object bookId, Object nodeId) {
+            return bookId + ":" + nodeId;
+        }
+
+        private static StockGrant copy(StockGrant source) {
+            StockGrant grant = new StockGrant();
+            grant.setId(source.getId());
+            grant.setBookId(source.getBookId());
+            grant.setNodeId(source.getNodeId());
+            grant.setQuantity(source.getQuantity());
+            grant.setLeaseUntil(source.getLeaseUntil());
+            return grant;
+        }
+    }
+}
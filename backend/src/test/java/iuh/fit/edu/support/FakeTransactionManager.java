@@ -0,0 +1,59 @@
+package iuh.fit.edu.support;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+/**
+ * Transaction giả chỉ để chạy TransactionSynchronization; hỗ trợ REQUIRES_NEW bằng cách treo transaction ngoài
+ */
+public class FakeTransactionManager extends AbstractPlatformTransactionManager {
+    private final ThreadLocal<Object> current = new ThreadLocal<>();
+
+    @Override
+    protected Object doGetTransaction() {
+        return new Object[]{this.current.get()};
+    }
+
+    @Override
+    protected boolean isExistingTransaction(Object transaction) {
+        return ((Object[]) transaction)[0] != null;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        Object marker = new Object();
+        ((Object[]) transaction)[0] = marker;
+        this.current.set(marker);
+    }
+
+    @Override
+    protected Object doSuspend(Object transaction) {
+        Object suspended = this.current.get();
+        this.current.remove();
+        ((Object[]) transaction)[0] = null;
+        return suspended;
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) {
+        this.current.set(suspendedResources);
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+    }
+
+    @Override
+    protected void doSetRollbackOnly(DefaultTransactionStatus status) {
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        this.current.remove();
+    }
+}
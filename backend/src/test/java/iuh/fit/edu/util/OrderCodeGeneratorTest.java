@@ -0,0 +1,119 @@
+package iuh.fit.edu.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderCodeGeneratorTest {
+    private static final ZoneId ZONE = ZoneOffset.ofHours(7);
+    // 2025-01-15 09:30:00 +07:00
+    private static final long START_MILLIS = 1_736_908_200_000L;
+
+    private final AtomicLong clock = new AtomicLong(START_MILLIS);
+    private final OrderCodeGenerator generator = new OrderCodeGenerator(7, ZONE, this.clock::get);
+
+    @Test
+    void formatsTimeNodeAndSequence() {
+        assertEquals("ORD-20250115093000-0700000", this.generator.next());
+        assertEquals("ORD-20250115093000-0700001", this.generator.next());
+        this.clock.addAndGet(1_500);
+        assertEquals("ORD-20250115093001-0700000", this.generator.next());
+    }
+
+    @Test
+    void codesIncreaseMonotonically() {
+        String previous = this.generator.next();
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 1_000 == 0) {
+                this.clock.addAndGet(ThreadLocalRandom.current().nextInt(0, 3_000));
+            }
+            String code = this.generator.next();
+            assertTrue(code.compareTo(previous) > 0, previous + " -> " + code);
+            previous = code;
+        }
+    }
+
+    @Test
+    void borrowsNextSecondAfterSequenceRunsOut() {
+        String last = null;
+        for (int i = 0; i < 100_000; i++) {
+            last = this.generator.next();
+        }
+        assertEquals("ORD-20250115093000-0799999", last);
+        assertEquals("ORD-20250115093001-0700000", this.generator.next());
+
+        // Đồng hồ bắt kịp giây đã mượn thì tiếp tục đánh số trong giây đó, không quay về 00000
+        this.clock.addAndGet(1_000);
+        assertEquals("ORD-20250115093001-0700001", this.generator.next());
+        this.clock.addAndGet(1_000);
+        assertEquals("ORD-20250115093002-0700000", this.generator.next());
+    }
+
+    @Test
+    void clockGoingBackwardsKeepsCodesIncreasing() {
+        this.clock.addAndGet(5_000);
+        String beforeJump = this.generator.next();
+        this.clock.addAndGet(-3_000);
+        Set<String> codes = new HashSet<>();
+        String previous = beforeJump;
+        for (int i = 0; i < 1_000; i++) {
+            String code = this.generator.next();
+            assertTrue(code.compareTo(previous) > 0, previous + " -> " + code);
+            assertTrue(code.startsWith("ORD-20250115093005-07"), code);
+            codes.add(code);
+            previous = code;
+        }
+        assertEquals(1_000, codes.size());
+    }
+
+    @Test
+    void uniqueAcrossThreads() throws Exception {
+        OrderCodeGenerator generator = new OrderCodeGenerator(3);
+        int threads = 16;
+        int perThread = 20_000;
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+        List<List<String>> perThreadCodes = runConcurrently(threads, () -> {
+            List<String> generated = new ArrayList<>(perThread);
+            for (int i = 0; i < perThread; i++) {
+                generated.add(generator.next());
+            }
+            return generated;
+        });
+        for (List<String> generated : perThreadCodes) {
+            codes.addAll(generated);
+            // Mỗi luồng thấy mã tăng dần theo thứ tự nó nhận
+            for (int i = 1; i < generated.size(); i++) {
+                assertTrue(generated.get(i).compareTo(generated.get(i - 1)) > 0);
+            }
+        }
+        assertEquals(threads * perThread, codes.size());
+    }
+
+    private static <T> List<T> runConcurrently(int threads, Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package iuh.fit.edu.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedCounterTest {
+    private static final int THREADS = 64;
+
+    @Test
+    void sellsExactlyTheStockUnderContention() throws Exception {
+        StripedCounter counter = new StripedCounter(8);
+        counter.fill(1000);
+        AtomicInteger sold = new AtomicInteger();
+
+        runConcurrently(() -> {
+            while (counter.tryAcquire(1)) {
+                sold.incrementAndGet();
+            }
+        });
+
+        // Không ai trả hàng lại nên ngăn đã rỗng thì rỗng mãi: lấy hụt nghĩa là đã hết thật
+        assertEquals(1000, sold.get());
+        assertEquals(0, counter.sum());
+    }
+
+    @Test
+    void reserveAndRestoreNeverGoBelowZero() throws Exception {
+        int stock = 500;
+        StripedCounter counter = new StripedCounter(8);
+        counter.fill(stock);
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger held = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Integer> negatives = new CopyOnWriteArrayList<>();
+
+        Thread observer = new Thread(() -> {
+            while (running.get()) {
+                int sum = counter.sum();
+                if (sum < 0) {
+                    negatives.add(sum);
+                }
+            }
+        });
+        observer.start();
+        try {
+            runConcurrently(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; i++) {
+                    int amount = 1 + random.nextInt(5);
+                    if (!counter.tryAcquire(amount)) {
+                        continue;
+                    }
+                    held.addAndGet(amount);
+                    // Phần lớn đơn rollback (trả hàng), một ít commit (bán hẳn)
+                    if (random.nextInt(100) < 2) {
+                        sold.addAndGet(amount);
+                    } else {
+                        counter.release(amount);
+                    }
+                    held.addAndGet(-amount);
+                }
+            });
+        } finally {
+            running.set(false);
+            observer.join();
+        }
+
+        assertTrue(negatives.isEmpty(), "Bộ đếm bị âm: " + negatives);
+        assertEquals(0, held.get());
+        assertTrue(sold.get() <= stock, "Bán vượt: " + sold.get());
+        assertEquals(stock, counter.sum() + sold.get());
+    }
+
+    @Test
+    void failedAcquireGivesBackPartialTake() {
+        StripedCounter counter = new StripedCounter(4);
+        counter.fill(3);
+
+        assertFalse(counter.tryAcquire(4));
+        assertEquals(3, counter.sum());
+        assertTrue(counter.tryAcquire(3));
+        assertEquals(0, counter.sum());
+    }
+
+    @Test
+    void drainEmptiesAllStripes() {
+        StripedCounter counter = new StripedCounter(8);
+        counter.fill(13);
+        counter.release(2);
+
+        assertEquals(15, counter.drain());
+        assertEquals(0, counter.sum());
+        assertFalse(counter.tryAcquire(1));
+    }
+
+    private static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -2,6 +2,7 @@ import axiosClient from "./axiosClient";
 import {
     ApiResponse,
     Order,
+    OrderCounts,
     UpdatedOrderResponse,
     PaginatedResponse,
 } from "../types";
@@ -18,9 +19,21 @@ const orderApi = {
             params,
         }),
 
-    // Lấy danh sách đơn hàng theo user
-    fetchOrdersByUser: () =>
-        axiosClient.get<ApiResponse<Order[]>>("/orders/user"),
+    // Lấy danh sách đơn hàng theo user (mới nhất trước, trang sau dùng nextCursor của trang trước)
+    // status/q lọc ở server, cursor chỉ dùng được với đúng status/q đã tạo ra nó
+    fetchOrdersByUser: (params?: {
+        status?: Order["status"];
+        q?: string;
+        size?: number;
+        cursor?: string;
+    }) =>
+        axiosClient.get<ApiResponse<PaginatedResponse<Order>>>("/orders/user", {
+            params,
+        }),
+
+    // Đếm đơn hàng của user theo trạng thái (ALL là tổng)
+    countOrdersByUser: () =>
+        axiosClient.get<ApiResponse<OrderCounts>>("/orders/user/counts"),
 
     // Lấy chi tiết đơn hàng
     getOrderDetail: (orderId: number) =>
@@ -21,7 +21,7 @@ const OrdersSearchBar = ({
                 onChange={(e) => onChange(e.target.value)}
                 type="text"
                 className="block w-full rounded-lg border border-gray-300 bg-white py-2.5 pl-10 pr-10 text-sm text-gray-900 placeholder-gray-400 shadow-sm focus:border-blue-600 focus:outline-none focus:ring-2 focus:ring-blue-100"
-                placeholder="Tìm kiếm theo mã đơn, ngày đặt (dd/mm/yyyy), trạng thái..."
+                placeholder="Tìm kiếm theo mã đơn hoặc ngày đặt (dd/mm/yyyy)..."
             />
             {value && (
                 <button
@@ -2,11 +2,15 @@
 import {
     createSlice,
     createAsyncThunk,
-    createSelector,
     PayloadAction,
 } from "@reduxjs/toolkit";
 import orderApi from "../../api/orderApi";
-import { Order, PaginatedResponse, UpdatedOrderResponse } from "../../types";
+import {
+    Order,
+    OrderCounts,
+    PaginatedResponse,
+    UpdatedOrderResponse,
+} from "../../types";
 
 // ===== ASYNC THUNKS =====
 
@@ -32,14 +36,40 @@ export const fetchAllOrders = createAsyncThunk<
     }
 });
 
-// Lấy đơn hàng của user hiện tại
+// Lấy một trang đơn hàng của user hiện tại (lọc ở server)
+// Không có cursor = trang đầu (thay danh sách), có cursor = trang kế tiếp (nối vào danh sách)
 export const fetchUserOrders = createAsyncThunk<
-    Order[],
+    { orders: Order[]; nextCursor: string | null },
+    | {
+          status?: Order["status"];
+          q?: string;
+          size?: number;
+          cursor?: string;
+      }
+    | undefined,
+    { rejectValue: string }
+>("order/fetchUserOrders", async (params, thunkAPI) => {
+    try {
+        const res = await orderApi.fetchOrdersByUser(params);
+        return {
+            orders: res.data.data.result,
+            nextCursor: res.data.data.meta.nextCursor ?? null,
+        };
+    } catch (err: any) {
+        return thunkAPI.rejectWithValue(
+            err.response?.data?.message || err.message
+        );
+    }
+});
+
+// Đếm đơn hàng của user hiện tại theo trạng thái
+export const fetchUserOrderCounts = createAsyncThunk<
+    OrderCounts,
     void,
     { rejectValue: string }
->("order/fetchUserOrders", async (_, thunkAPI) => {
+>("order/fetchUserOrderCounts", async (_, thunkAPI) => {
     try {
-        const res = await orderApi.fetchOrdersByUser();
+        const res = await orderApi.countOrdersByUser();
         return res.data.data;
     } catch (err: any) {
         return thunkAPI.rejectWithValue(
@@ -108,8 +138,12 @@ interface OrderSliceState {
         total: number;
     } | null;
 
-    // Đơn hàng của user
+    // Đơn hàng của user (các trang đã tải) và cursor trang kế tiếp
     userOrders: Order[];
+    userOrdersNextCursor: string | null;
+
+    // Số đơn của user theo trạng thái do server đếm
+    userOrderCounts: OrderCounts | null;
 
     // Chi tiết đơn hàng đang xem
     currentOrder: Order | null;
@@ -126,6 +160,8 @@ const initialState: OrderSliceState = {
     orders: [],
     ordersMeta: null,
     userOrders: [],
+    userOrdersNextCursor: null,
+    userOrderCounts: null,
     currentOrder: null,
     status: "idle",
     fetchingOrderId: null,
@@ -198,7 +234,10 @@ const orderSlice = createSlice({
             })
             .addCase(fetchUserOrders.fulfilled, (state, action) => {
                 state.status = "succeeded";
-                state.userOrders = action.payload;
+                state.userOrders = action.meta.arg?.cursor
+                    ? [...state.userOrders, ...action.payload.orders]
+                    : action.payload.orders;
+                state.userOrdersNextCursor = action.payload.nextCursor;
             })
             .addCase(fetchUserOrders.rejected, (state, action) => {
                 state.status = "failed";
@@ -206,6 +245,11 @@ const orderSlice = createSlice({
                     action.payload || "Không thể tải đơn hàng của bạn";
             })
 
+            // ===== FETCH USER ORDER COUNTS =====
+            .addCase(fetchUserOrderCounts.fulfilled, (state, action) => {
+                state.userOrderCounts = action.payload;
+            })
+
             // ===== FETCH ORDER BY ID =====
             .addCase(fetchOrderById.pending, (state, action) => {
                 state.fetchingOrderId = action.meta.arg;
@@ -231,9 +275,13 @@ const orderSlice = createSlice({
                     order.status = status;
                 }
 
-                // Update trong userOrders
+                // Update trong userOrders, chuyển đơn sang đúng ô đếm
                 const userOrder = state.userOrders.find((o) => o.id === id);
                 if (userOrder) {
+                    if (state.userOrderCounts && userOrder.status !== status) {
+                        state.userOrderCounts[userOrder.status] -= 1;
+                        state.userOrderCounts[status] += 1;
+                    }
                     userOrder.status = status;
                 }
 
@@ -312,29 +360,13 @@ export const selectOrderError = (state: { order: OrderSliceState }) =>
 export const selectFetchingOrderId = (state: { order: OrderSliceState }) =>
     state.order.fetchingOrderId;
 
-// Selector lọc orders theo status
-export const selectOrdersByStatus = createSelector(
-    [selectUserOrders, (_: any, status: Order["status"] | "ALL") => status],
-    (orders, status) => {
-        if (status === "ALL") return orders;
-        return orders.filter((order) => order.status === status);
-    }
-);
+// Selector lấy cursor trang kế tiếp của user orders (null = đã tải hết)
+export const selectUserOrdersNextCursor = (state: { order: OrderSliceState }) =>
+    state.order.userOrdersNextCursor;
 
-// Selector đếm số lượng orders theo status
-export const selectOrderCountByStatus = createSelector(
-    [selectUserOrders],
-    (orders) => {
-        return {
-            ALL: orders.length,
-            PENDING: orders.filter((o) => o.status === "PENDING").length,
-            PROCESSING: orders.filter((o) => o.status === "PROCESSING").length,
-            SHIPPING: orders.filter((o) => o.status === "SHIPPING").length,
-            DELIVERED: orders.filter((o) => o.status === "DELIVERED").length,
-            CANCELLED: orders.filter((o) => o.status === "CANCELLED").length,
-        };
-    }
-);
+// Selector lấy số lượng orders theo status (server đếm trên toàn bộ đơn, không chỉ các trang đã tải)
+export const selectOrderCountByStatus = (state: { order: OrderSliceState }) =>
+    state.order.userOrderCounts;
 
 // ===== EXPORT REDUCER =====
 export default orderSlice.reducer;
@@ -1,5 +1,5 @@
-import { useState, useEffect, useCallback } from "react";
-import { Order } from "../../types";
+import { useState, useEffect, useCallback, useRef } from "react";
+import { Order, OrderCounts } from "../../types";
 import orderApi from "../../api/orderApi";
 import paymentApi from "../../api/paymentApi";
 import toast from "react-hot-toast";
@@ -7,29 +7,47 @@ import toast from "react-hot-toast";
 // Type cho các tab trạng thái đơn hàng
 type OrderStatus = "ALL" | Order["status"];
 
+// Số đơn hàng mỗi lần tải
+const PAGE_SIZE = 10;
+
+// Thời gian chờ sau lần gõ cuối trước khi tìm kiếm (ms)
+const SEARCH_DEBOUNCE_MS = 300;
+
 /**
  * Custom hook quản lý logic trang đơn hàng
- * Xử lý: lấy danh sách đơn, lọc/tìm kiếm, xem chi tiết, thanh toán lại, hủy đơn
+ * Xử lý: lấy danh sách đơn (lọc/tìm kiếm ở server), xem chi tiết, thanh toán lại, hủy đơn
  * @returns Tất cả state và hàm xử lý cho trang đơn hàng
  */
 export const useOrders = () => {
     // === STATE QUẢN LÝ DANH SÁCH ĐƠN HÀNG ===
 
-    // Danh sách đơn hàng gốc từ API
+    // Danh sách đơn hàng đã tải theo tab và từ khóa hiện tại (server đã lọc)
     const [orders, setOrders] = useState<Order[]>([]);
 
-    // Danh sách đơn hàng sau khi lọc/tìm kiếm
-    const [filteredOrders, setFilteredOrders] = useState<Order[]>([]);
+    // Số đơn theo từng trạng thái do server đếm, null khi chưa tải được
+    const [counts, setCounts] = useState<OrderCounts | null>(null);
 
     // Trạng thái loading khi fetch đơn hàng
     const [loading, setLoading] = useState(true);
 
+    // Cursor của trang kế tiếp, null khi đã tải hết
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
+
+    // Trạng thái loading khi tải thêm trang
+    const [loadingMore, setLoadingMore] = useState(false);
+
     // Tab trạng thái hiện tại đang xem (ALL, PENDING, PROCESSING...)
     const [activeTab, setActiveTab] = useState<OrderStatus>("ALL");
 
     // Từ khóa tìm kiếm
     const [searchQuery, setSearchQuery] = useState<string>("");
 
+    // Từ khóa đã gửi lên server (chờ người dùng ngừng gõ)
+    const [debouncedQuery, setDebouncedQuery] = useState<string>("");
+
+    // Đánh số lần tải trang đầu, bỏ qua phản hồi đến muộn của lần tải cũ
+    const latestRequest = useRef(0);
+
     // === STATE QUẢN LÝ CHI TIẾT ĐƠN HÀNG ===
 
     // ID của đơn hàng đang được mở rộng (xem chi tiết)
@@ -60,142 +78,68 @@ export const useOrders = () => {
     const [isCancelling, setIsCancelling] = useState(false);
 
     /**
-     * Hàm lấy danh sách đơn hàng từ API
-     * Gọi API fetchOrdersByUser để lấy tất cả đơn hàng của user hiện tại
+     * Hàm lấy trang đầu danh sách đơn hàng từ API theo tab và từ khóa hiện tại
+     * Server lọc theo status/q, các trang sau được tải bằng loadMoreOrders
      */
     const fetchOrders = useCallback(async () => {
+        const requestId = ++latestRequest.current;
         try {
             setLoading(true);
-            const response = await orderApi.fetchOrdersByUser();
-            setOrders(response.data.data);
+            const response = await orderApi.fetchOrdersByUser({
+                status: activeTab === "ALL" ? undefined : activeTab,
+                q: debouncedQuery || undefined,
+                size: PAGE_SIZE,
+            });
+            // Bỏ kết quả của tab/từ khóa cũ nếu người dùng đã đổi trong lúc chờ
+            if (requestId !== latestRequest.current) return;
+            setOrders(response.data.data.result);
+            setNextCursor(response.data.data.meta.nextCursor ?? null);
         } catch (error: any) {
-            toast.error("Không thể tải danh sách đơn hàng");
+            if (requestId === latestRequest.current) {
+                toast.error("Không thể tải danh sách đơn hàng");
+            }
         } finally {
-            setLoading(false);
+            if (requestId === latestRequest.current) {
+                setLoading(false);
+            }
+        }
+    }, [activeTab, debouncedQuery]);
+
+    /**
+     * Hàm lấy số đơn theo từng trạng thái từ server (không phụ thuộc số trang đã tải)
+     */
+    const fetchCounts = useCallback(async () => {
+        try {
+            const response = await orderApi.countOrdersByUser();
+            setCounts(response.data.data);
+        } catch (error: any) {
+            setCounts(null);
         }
     }, []);
 
     /**
-     * Hàm lọc và tìm kiếm đơn hàng
-     * Lọc theo:
-     * - Tab trạng thái (ALL, PENDING, PROCESSING...)
-     * - Từ khóa tìm kiếm (mã đơn, ngày đặt, trạng thái)
-     *
-     * Hỗ trợ tìm kiếm tiếng Việt có dấu/không dấu và các từ đồng nghĩa
+     * Hàm tải thêm trang đơn hàng kế tiếp (cùng tab và từ khóa) và nối vào danh sách hiện có
      */
-    const filterOrders = useCallback(() => {
-        /**
-         * Chuẩn hóa chuỗi: viết thường, bỏ dấu tiếng Việt, trim
-         * VD: "Công Nghệ" -> "cong nghe"
-         */
-        const normalize = (s: string) =>
-            s
-                .toLowerCase()
-                .normalize("NFD")
-                .replace(/[\u0300-\u036f]/g, "")
-                .trim();
-
-        /**
-         * Format ngày theo kiểu Việt Nam: dd/mm/yyyy
-         * @param dateStr - Chuỗi ngày ISO hoặc Date string
-         * @returns Chuỗi ngày định dạng dd/mm/yyyy
-         */
-        const formatDateVi = (dateStr: string) => {
-            const d = new Date(dateStr);
-            if (isNaN(d.getTime())) return "";
-            const dd = String(d.getDate()).padStart(2, "0");
-            const mm = String(d.getMonth() + 1).padStart(2, "0");
-            const yyyy = d.getFullYear();
-            return `${dd}/${mm}/${yyyy}`;
-        };
-
-        /**
-         * Bảng từ đồng nghĩa cho các trạng thái đơn hàng
-         * Cho phép tìm kiếm theo nhiều cách gọi khác nhau
-         * VD: "chờ xác nhận", "pending", "đang chuẩn bị" đều khớp với PENDING
-         */
-        const statusSynonyms: Record<Order["status"], string[]> = {
-            PENDING: [
-                "cho xac nhan",
-                "choxacnhan",
-                "pending",
-                "dang chuan bi",
-                "đang chuẩn bị",
-            ].map(normalize),
-            PROCESSING: [
-                "dang xu ly",
-                "dangxuly",
-                "processing",
-                "xu ly",
-                "xuly",
-            ].map(normalize),
-            SHIPPING: [
-                "dang van chuyen",
-                "dangvanchuyen",
-                "shipping",
-                "van chuyen",
-                "vanchuyen",
-            ].map(normalize),
-            DELIVERED: [
-                "da giao",
-                "dagiao",
-                "da van chuyen",
-                "davan chuyen",
-                "davanchuyen",
-                "hoan thanh",
-                "hoanthanh",
-                "delivered",
-            ].map(normalize),
-            CANCELLED: ["da huy", "dahuy", "huy", "cancelled", "canceled"].map(
-                normalize
-            ),
-        };
-
-        // Chuẩn hóa từ khóa tìm kiếm
-        const q = normalize(searchQuery);
-
-        /**
-         * Kiểm tra xem đơn hàng có khớp với từ khóa tìm kiếm không
-         * Kiểm tra theo:
-         * 1. Mã đơn hàng (orderCode)
-         * 2. Ngày đặt hàng (hỗ trợ tìm một phần: dd/mm/yyyy, dd/mm, mm/yyyy)
-         * 3. Trạng thái (trực tiếp hoặc từ đồng nghĩa)
-         */
-        const matchesQuery = (order: Order) => {
-            // Nếu không có từ khóa, hiển tất cả
-            if (!q) return true;
-
-            // Kiểm tra khớp với mã đơn hàng
-            const codeMatch = normalize(order.orderCode).includes(q);
-
-            // Kiểm tra khớp với ngày (hỗ trợ tìm một phần: dd/mm/yyyy, dd/mm, mm/yyyy)
-            const orderDateFormatted = normalize(formatDateVi(order.orderDate));
-            const dateMatch = orderDateFormatted.includes(q);
-
-            // Kiểm tra khớp với trạng thái
-            const statusKey = order.status;
-            // Khớp trực tiếp với key trạng thái (PENDING, PROCESSING...)
-            const directKeyMatch = normalize(statusKey).includes(q);
-            // Khớp với từ đồng nghĩa
-            const synonyms = statusSynonyms[statusKey] || [];
-            const synonymMatch = synonyms.includes(q);
-
-            // Khớp nếu bất kỳ điều kiện nào đúng
-            return codeMatch || dateMatch || directKeyMatch || synonymMatch;
-        };
-
-        // Bước 1: Lọc theo tab trạng thái
-        const byTab =
-            activeTab === "ALL"
-                ? orders // Nếu tab "Tất cả", lấy hết
-                : orders.filter((o) => o.status === activeTab); // Không thì lọc theo trạng thái
-
-        // Bước 2: Lọc theo từ khóa tìm kiếm
-        const result = byTab.filter((o) => matchesQuery(o));
-
-        // Cập nhật danh sách đã lọc
-        setFilteredOrders(result);
-    }, [activeTab, orders, searchQuery]);
+    const loadMoreOrders = useCallback(async () => {
+        if (!nextCursor || loadingMore) return;
+        const requestId = latestRequest.current;
+        try {
+            setLoadingMore(true);
+            const response = await orderApi.fetchOrdersByUser({
+                status: activeTab === "ALL" ? undefined : activeTab,
+                q: debouncedQuery || undefined,
+                size: PAGE_SIZE,
+                cursor: nextCursor,
+            });
+            if (requestId !== latestRequest.current) return;
+            setOrders((prev) => [...prev, ...response.data.data.result]);
+            setNextCursor(response.data.data.meta.nextCursor ?? null);
+        } catch (error: any) {
+            toast.error("Không thể tải thêm đơn hàng");
+        } finally {
+            setLoadingMore(false);
+        }
+    }, [nextCursor, loadingMore, activeTab, debouncedQuery]);
 
     /**
      * Hàm xử lý mở/đóng chi tiết đơn hàng
@@ -264,8 +208,8 @@ export const useOrders = () => {
 
     const handleConfirmExpired = useCallback(async () => {
         setShowExpiredModal(false);
-        await fetchOrders();
-    }, [fetchOrders]);
+        await Promise.all([fetchOrders(), fetchCounts()]);
+    }, [fetchOrders, fetchCounts]);
 
     const handleCancelExpired = useCallback(() => {
         setShowExpiredModal(false);
@@ -290,8 +234,8 @@ export const useOrders = () => {
                 setIsCancelling(true);
                 await orderApi.cancelOrder(orderId);
                 toast.success("Đã hủy đơn hàng thành công");
-                // Refresh danh sách đơn hàng
-                await fetchOrders();
+                // Refresh danh sách đơn hàng và số đơn theo trạng thái
+                await Promise.all([fetchOrders(), fetchCounts()]);
                 handleCloseCancelModal();
             } catch (error: any) {
                 toast.error(
@@ -302,29 +246,37 @@ export const useOrders = () => {
                 setIsCancelling(false);
             }
         },
-        [fetchOrders, handleCloseCancelModal]
+        [fetchOrders, fetchCounts, handleCloseCancelModal]
     );
 
     const getTabCount = useCallback(
-        (status: OrderStatus) => {
-            if (status === "ALL") return orders.length;
-            return orders.filter((order) => order.status === status).length;
-        },
-        [orders]
+        (status: OrderStatus) => counts?.[status] ?? 0,
+        [counts]
     );
 
+    useEffect(() => {
+        const timer = setTimeout(
+            () => setDebouncedQuery(searchQuery.trim()),
+            SEARCH_DEBOUNCE_MS
+        );
+        return () => clearTimeout(timer);
+    }, [searchQuery]);
+
+    // Đổi tab hoặc từ khóa thì tải lại từ trang đầu
     useEffect(() => {
         fetchOrders();
     }, [fetchOrders]);
 
     useEffect(() => {
-        filterOrders();
-    }, [filterOrders]);
+        fetchCounts();
+    }, [fetchCounts]);
 
     return {
         orders,
-        filteredOrders,
         loading,
+        loadingMore,
+        hasMore: nextCursor !== null,
+        loadMoreOrders,
         activeTab,
         searchQuery,
         expandedOrderId,
@@ -451,12 +451,13 @@ export default function BookDetailPage() {
         )
       : ["https://via.placeholder.com/500x600?text=No+Image"];
 
-  const averageRating =
-    book.review && book.review.length > 0
+  const averageRating = book.rating
+    ? book.rating.average
+    : book.review && book.review.length > 0
       ? book.review.reduce((sum, r) => sum + r.rating, 0) / book.review.length
       : 0;
 
-  const reviewCount = book.review?.length || 0;
+  const reviewCount = book.rating ? book.rating.count : book.review?.length || 0;
 
   return (
     <div className="min-h-screen wisbook-gradient-overlay pt-15 px-35">
@@ -41,8 +41,11 @@ const TABS: { key: OrderStatus; label: string; icon: React.ReactNode }[] = [
 
 const OrdersPage = () => {
     const {
-        filteredOrders,
+        orders,
         loading,
+        loadingMore,
+        hasMore,
+        loadMoreOrders,
         activeTab,
         searchQuery,
         expandedOrderId,
@@ -65,18 +68,6 @@ const OrdersPage = () => {
         clearSearch,
     } = useOrders();
 
-    if (loading) {
-        return (
-            <div className="min-h-screen bg-gray-50 py-8 px-6">
-                <div className="max-w-7xl mx-auto">
-                    <div className="flex items-center justify-center h-64">
-                        <div className="animate-spin rounded-full h-12 w-12 border-b-2 border-blue-600"></div>
-                    </div>
-                </div>
-            </div>
-        );
-    }
-
     return (
         <>
             <style>{`
@@ -104,11 +95,12 @@ const OrdersPage = () => {
                                 onClear={clearSearch}
                             />
                             <div className="mt-2 flex items-center justify-between text-sm text-gray-600">
-                                {searchQuery ? (
+                                {searchQuery && !loading ? (
                                     <span>
                                         Tìm thấy{" "}
                                         <span className="font-medium text-gray-900">
-                                            {filteredOrders.length}
+                                            {orders.length}
+                                            {hasMore ? "+" : ""}
                                         </span>{" "}
                                         đơn hàng
                                     </span>
@@ -167,8 +159,13 @@ const OrdersPage = () => {
                     </div>
 
                     {/* Orders List */}
+                    {/* Chỉ thay vùng danh sách khi tải lại để ô tìm kiếm không mất focus */}
                     <div className="space-y-4">
-                        {filteredOrders.length === 0 ? (
+                        {loading ? (
+                            <div className="flex items-center justify-center h-64">
+                                <div className="animate-spin rounded-full h-12 w-12 border-b-2 border-blue-600"></div>
+                            </div>
+                        ) : orders.length === 0 ? (
                             <div className="bg-white rounded-2xl shadow-lg p-12 text-center">
                                 <div className="max-w-md mx-auto">
                                     {searchQuery ? (
@@ -244,7 +241,7 @@ const OrdersPage = () => {
                                 </div>
                             </div>
                         ) : (
-                            filteredOrders.map((order: Order) => (
+                            orders.map((order: Order) => (
                                 <OrderCard
                                     key={order.id}
                                     order={order}
@@ -265,6 +262,18 @@ const OrdersPage = () => {
                                 </OrderCard>
                             ))
                         )}
+
+                        {!loading && hasMore && (
+                            <div className="flex justify-center pt-2">
+                                <button
+                                    onClick={loadMoreOrders}
+                                    disabled={loadingMore}
+                                    className="px-6 py-2 rounded-lg border border-blue-600 text-blue-600 font-medium hover:bg-blue-50 disabled:opacity-50"
+                                >
+                                    {loadingMore ? "Đang tải..." : "Xem thêm đơn hàng"}
+                                </button>
+                            </div>
+                        )}
                     </div>
                 </div>
 
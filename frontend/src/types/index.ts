@@ -13,6 +13,12 @@ export interface Supplier {
     email: string;
 }
 
+export interface RatingSummary {
+    count: number;
+    average: number;
+    histogram: number[];
+}
+
 export interface Review {
     id: number;
     comment: string;
@@ -44,6 +50,7 @@ export interface Book {
     updatedBy?: string;
     quantity: number;
     review?: Review[];
+    rating?: RatingSummary;
     bookImage?: BookImage[];
     category?: Category[];
     supplier?: Supplier;
@@ -126,6 +133,9 @@ export interface Order {
     updateAt: string;
 }
 
+// Số đơn của user theo trạng thái, ALL là tổng
+export type OrderCounts = Record<"ALL" | Order["status"], number>;
+
 export interface UpdatedOrderResponse {
     id: number;
     status: "PENDING" | "PROCESSING" | "SHIPPING" | "DELIVERED" | "CANCELLED";
@@ -177,6 +187,8 @@ export interface PaginationMeta {
     pageSize: number;
     pages: number;
     total: number;
+    // Chỉ có khi phân trang theo cursor, null ở trang cuối
+    nextCursor?: string | null;
 }
 
 export interface PaginatedResponse<T> {